@@ -259,8 +259,9 @@ public class ChanConfiguration implements Chan.Linked {
 		}
 		ChanDatabase.DataKey dataKey = new ChanDatabase.DataKey(boardName, key);
 		synchronized (editData) {
-			Object result = editData.get(dataKey);
-			if (result != null) {
+			// Uncommitted null value means the value will be removed
+			if (editData.containsKey(dataKey)) {
+				Object result = editData.get(dataKey);
 				return result instanceof Boolean ? (boolean) result : defaultValue;
 			}
 		}
@@ -275,8 +276,8 @@ public class ChanConfiguration implements Chan.Linked {
 		}
 		ChanDatabase.DataKey dataKey = new ChanDatabase.DataKey(boardName, key);
 		synchronized (editData) {
-			Object result = editData.get(dataKey);
-			if (result != null) {
+			if (editData.containsKey(dataKey)) {
+				Object result = editData.get(dataKey);
 				return result instanceof Integer ? (int) result : defaultValue;
 			}
 		}
@@ -295,8 +296,8 @@ public class ChanConfiguration implements Chan.Linked {
 		}
 		ChanDatabase.DataKey dataKey = new ChanDatabase.DataKey(boardName, key);
 		synchronized (editData) {
-			Object result = editData.get(dataKey);
-			if (result != null) {
+			if (editData.containsKey(dataKey)) {
+				Object result = editData.get(dataKey);
 				return result instanceof String ? (String) result : defaultValue;
 			}
 		}
@@ -619,14 +619,16 @@ public class ChanPerformer implements Chan.Linked {
 		public final HttpHolder holder;
 		public final long rangeStart;
 		public final long rangeEnd;
+		public final String rangeValidator;
 
 		private ReadContentDirectPreset(int connectTimeout, int readTimeout, HttpHolder holder,
-				long rangeStart, long rangeEnd) {
+				long rangeStart, long rangeEnd, String rangeValidator) {
 			this.holder = holder;
 			this.connectTimeout = connectTimeout;
 			this.readTimeout = readTimeout;
 			this.rangeStart = rangeStart;
 			this.rangeEnd = rangeEnd;
+			this.rangeValidator = rangeValidator;
 		}
 
 		@Override
@@ -653,6 +655,11 @@ public class ChanPerformer implements Chan.Linked {
 		public long getRangeEnd() {
 			return rangeEnd;
 		}
+
+		@Override
+		public String getRangeValidator() {
+			return rangeValidator;
+		}
 	}
 
 	@Public
@@ -667,9 +674,15 @@ public class ChanPerformer implements Chan.Linked {
 
 		public ReadContentData(Uri uri, int connectTimeout, int readTimeout, HttpHolder holder,
 				long rangeStart, long rangeEnd) {
+			this(uri, connectTimeout, readTimeout, holder, rangeStart, rangeEnd, null);
+		}
+
+		public ReadContentData(Uri uri, int connectTimeout, int readTimeout, HttpHolder holder,
+				long rangeStart, long rangeEnd, String rangeValidator) {
 			this.uri = uri;
 			this.holder = holder;
-			direct = new ReadContentDirectPreset(connectTimeout, readTimeout, holder, rangeStart, rangeEnd);
+			direct = new ReadContentDirectPreset(connectTimeout, readTimeout, holder,
+					rangeStart, rangeEnd, rangeValidator);
 		}
 
 		@Override
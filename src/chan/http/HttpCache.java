@@ -0,0 +1,294 @@
+package chan.http;
+
+import android.net.Uri;
+import android.util.Pair;
+import chan.util.StringUtils;
+import com.mishiranu.dashchan.content.CacheManager;
+import com.mishiranu.dashchan.util.Hasher;
+import com.mishiranu.dashchan.util.IOUtils;
+import com.mishiranu.dashchan.util.Logger;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+final class HttpCache {
+	private static final int MAGIC = 0x48435245;
+	private static final int VERSION = 2;
+
+	private static final long MAX_SIZE = 20 * 1024 * 1024;
+	private static final long MAX_ENTRY_SIZE = 4 * 1024 * 1024;
+
+	// Cookies must not be replayed from cache, other headers describe the original transfer
+	private static final HashSet<String> SKIP_HEADERS = new HashSet<>(Arrays.asList("set-cookie", "set-cookie2",
+			"connection", "keep-alive", "proxy-authenticate", "proxy-connection", "te", "trailer",
+			"transfer-encoding", "upgrade", "content-encoding", "content-length"));
+
+	static final class Entry {
+		private final String key;
+		private final File file;
+		public final HttpValidator validator;
+
+		private Entry(String key, File file, HttpValidator validator) {
+			this.key = key;
+			this.file = file;
+			this.validator = validator;
+		}
+	}
+
+	// File names in access order, loaded on first use
+	private LinkedHashMap<String, Long> files;
+	private File directory;
+	private long size;
+
+	private int hitCount;
+	private int missCount;
+
+	// Requests with own validator handle 304 responses themselves
+	static boolean isSupported(HttpRequest request) {
+		return request.requestMethod == HttpRequest.RequestMethod.GET && request.requestEntity == null &&
+				request.validator == null && request.successOnly && request.outputListener == null &&
+				request.rangeStart < 0 && request.rangeEnd < 0 && !request.streamed;
+	}
+
+	static String getKey(String chanName, Uri uri, List<Pair<String, String>> headers,
+			CookieBuilder cookieBuilder) {
+		// Response may depend on cookies and headers, e.g. when user is logged in
+		StringBuilder builder = new StringBuilder();
+		builder.append(chanName).append('\n').append(uri).append('\n');
+		builder.append(cookieBuilder != null ? cookieBuilder.build() : "");
+		if (headers != null) {
+			for (Pair<String, String> header : headers) {
+				builder.append('\n').append(header.first).append(": ").append(header.second);
+			}
+		}
+		return builder.toString();
+	}
+
+	private static String getFileName(String key) {
+		return StringUtils.formatHex(Hasher.getInstanceSha256().calculate(key));
+	}
+
+	private LinkedHashMap<String, Long> obtainFiles() {
+		if (files == null) {
+			files = new LinkedHashMap<>(16, 0.75f, true);
+			directory = CacheManager.getInstance().getInternalCacheFile("http");
+			if (directory != null) {
+				directory.mkdirs();
+				File[] list = directory.listFiles();
+				if (list != null) {
+					Arrays.sort(list, IOUtils.SORT_BY_DATE);
+					for (File file : list) {
+						long length = file.length();
+						files.put(file.getName(), length);
+						size += length;
+					}
+				}
+			}
+		}
+		return files;
+	}
+
+	Entry get(String key) {
+		String fileName = getFileName(key);
+		File file;
+		synchronized (this) {
+			if (obtainFiles().get(fileName) == null) {
+				missCount++;
+				return null;
+			}
+			file = new File(directory, fileName);
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readInt() == MAGIC && input.readInt() == VERSION && key.equals(input.readUTF())) {
+				String entityTag = readString(input);
+				String lastModified = readString(input);
+				return new Entry(key, file, new HttpValidator(entityTag, lastModified));
+			}
+		} catch (IOException e) {
+			// Remove broken entry
+		}
+		remove(fileName);
+		return null;
+	}
+
+	HttpResponse.Shared read(Entry entry, List<Uri> requestedUris) {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(entry.file)))) {
+			if (input.readInt() == MAGIC && input.readInt() == VERSION && entry.key.equals(input.readUTF())) {
+				String entityTag = readString(input);
+				String lastModified = readString(input);
+				String charsetName = readString(input);
+				int headersCount = input.readInt();
+				LinkedHashMap<String, List<String>> headerFields = new LinkedHashMap<>();
+				for (int i = 0; i < headersCount; i++) {
+					String name = input.readUTF();
+					int valuesCount = input.readInt();
+					ArrayList<String> values = new ArrayList<>(valuesCount);
+					for (int j = 0; j < valuesCount; j++) {
+						values.add(input.readUTF());
+					}
+					headerFields.put(name, Collections.unmodifiableList(values));
+				}
+				int length = input.readInt();
+				if (length >= 0 && length <= MAX_ENTRY_SIZE) {
+					byte[] bytes = new byte[length];
+					input.readFully(bytes);
+					synchronized (this) {
+						hitCount++;
+						String fileName = entry.file.getName();
+						if (obtainFiles().get(fileName) != null) {
+							entry.file.setLastModified(System.currentTimeMillis());
+						}
+					}
+					return new HttpResponse.Shared(HttpURLConnection.HTTP_OK, null,
+							Collections.unmodifiableMap(headerFields), new ArrayList<>(requestedUris), null,
+							new HttpValidator(entityTag, lastModified), charsetName, bytes);
+				}
+			}
+		} catch (IOException e) {
+			// Remove broken entry
+		}
+		remove(entry.file.getName());
+		return null;
+	}
+
+	static boolean isStorable(HttpURLConnection connection) {
+		String contentType = StringUtils.emptyIfNull(connection.getHeaderField("Content-Type"))
+				.toLowerCase(Locale.US);
+		if (contentType.startsWith("image/") || contentType.startsWith("video/") ||
+				contentType.startsWith("audio/")) {
+			// Media files are cached by CacheManager
+			return false;
+		}
+		String cacheControl = connection.getHeaderField("Cache-Control");
+		if (cacheControl != null && cacheControl.toLowerCase(Locale.US).contains("no-store")) {
+			return false;
+		}
+		// Body is read into memory before storing
+		int contentLength = connection.getContentLength();
+		if (contentLength >= 0) {
+			return contentLength <= MAX_ENTRY_SIZE;
+		}
+		// Compressed and chunked responses have no length, only text is read then,
+		// and the actual body size is checked after reading
+		return contentType.startsWith("text/") || contentType.contains("json") ||
+				contentType.contains("xml") || contentType.contains("javascript");
+	}
+
+	void store(String key, HttpResponse response, HttpValidator validator) throws HttpException {
+		byte[] bytes = response.readBytes();
+		if (bytes.length > MAX_ENTRY_SIZE) {
+			return;
+		}
+		String charsetName = response.getEncoding();
+		String fileName = getFileName(key);
+		File directory;
+		synchronized (this) {
+			obtainFiles();
+			directory = this.directory;
+		}
+		if (directory == null) {
+			return;
+		}
+		File file = new File(directory, fileName);
+		File tempFile = new File(directory, fileName + ".tmp");
+		boolean success = false;
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tempFile)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeUTF(key);
+			writeString(output, validator.getEntityTag());
+			writeString(output, validator.getLastModified());
+			writeString(output, charsetName);
+			ArrayList<Map.Entry<String, List<String>>> headers = new ArrayList<>();
+			for (Map.Entry<String, List<String>> header : response.getHeaderFields().entrySet()) {
+				// Null key stands for status line
+				if (header.getKey() != null && header.getValue() != null &&
+						!SKIP_HEADERS.contains(header.getKey().toLowerCase(Locale.US))) {
+					headers.add(header);
+				}
+			}
+			output.writeInt(headers.size());
+			for (Map.Entry<String, List<String>> header : headers) {
+				output.writeUTF(header.getKey());
+				output.writeInt(header.getValue().size());
+				for (String value : header.getValue()) {
+					output.writeUTF(StringUtils.emptyIfNull(value));
+				}
+			}
+			output.writeInt(bytes.length);
+			output.write(bytes);
+			success = true;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		synchronized (this) {
+			if (success && tempFile.renameTo(file)) {
+				Long oldLength = files.remove(fileName);
+				if (oldLength != null) {
+					size -= oldLength;
+				}
+				long length = file.length();
+				files.put(fileName, length);
+				size += length;
+				trim();
+			} else {
+				tempFile.delete();
+			}
+		}
+	}
+
+	private synchronized void remove(String fileName) {
+		Long length = obtainFiles().remove(fileName);
+		if (length != null) {
+			size -= length;
+		}
+		if (directory != null) {
+			new File(directory, fileName).delete();
+		}
+	}
+
+	private void trim() {
+		Iterator<Map.Entry<String, Long>> iterator = files.entrySet().iterator();
+		while (size > MAX_SIZE && iterator.hasNext()) {
+			Map.Entry<String, Long> entry = iterator.next();
+			iterator.remove();
+			size -= entry.getValue();
+			new File(directory, entry.getKey()).delete();
+		}
+	}
+
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		output.writeBoolean(value != null);
+		if (value != null) {
+			output.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInputStream input) throws IOException {
+		return input.readBoolean() ? input.readUTF() : null;
+	}
+
+	synchronized void logStatistics() {
+		if (hitCount > 0 || missCount > 0) {
+			Logger.write(Logger.Type.DEBUG, "HttpClient cache:", files != null ? files.size() : 0, "entries",
+					size, "bytes", hitCount, "revalidated", missCount, "misses");
+		}
+	}
+}
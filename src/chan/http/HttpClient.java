@@ -17,6 +17,7 @@ import com.mishiranu.dashchan.content.MainApplication;
 import com.mishiranu.dashchan.content.Preferences;
 import com.mishiranu.dashchan.content.model.ErrorItem;
 import com.mishiranu.dashchan.util.IOUtils;
+import com.mishiranu.dashchan.util.Logger;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
@@ -420,6 +421,9 @@ public class HttpClient {
 				throw new HttpException(ErrorItem.Type.UNSUPPORTED_SCHEME, false, false);
 			}
 			URL url = encodeUri(requestedUri);
+			HandshakeSSLSocket.Session handshakeSession = handshakeSessions.get();
+			int handshakeCount = handshakeSession != null ? handshakeSession.count : 0;
+			long handshakeTime = handshakeSession != null ? handshakeSession.successTime : 0;
 			HttpURLConnection connection = (HttpURLConnection) (session.proxy != null
 					? url.openConnection(session.proxy) : url.openConnection());
 			if (connection instanceof HttpsURLConnection) {
@@ -486,10 +490,20 @@ public class HttpClient {
 			if (validator != null) {
 				validator.write(connection);
 			}
+			String cacheKey = HttpCache.isSupported(request) && !session.forceGet ? HttpCache
+					.getKey(session.holder.chan.name, requestedUri, request.headers, cookieBuilder) : null;
+			HttpCache.Entry cacheEntry = cacheKey != null ? cache.get(cacheKey) : null;
+			if (cacheEntry != null) {
+				cacheEntry.validator.write(connection);
+			}
 			if (request.rangeStart >= 0 || request.rangeEnd >= 0) {
 				connection.setRequestProperty("Range", "bytes=" +
 						(request.rangeStart >= 0 ? request.rangeStart : "") + "-" +
 						(request.rangeEnd >= 0 ? request.rangeEnd : ""));
+				// Whole file is sent instead of the range if it was changed
+				if (request.rangeValidator != null) {
+					connection.setRequestProperty("If-Range", request.rangeValidator);
+				}
 			}
 
 			boolean forceGet = session.forceGet;
@@ -531,6 +545,11 @@ public class HttpClient {
 				}
 			}
 			session.closeInput = true;
+			if (connection instanceof HttpsURLConnection && session.verifyCertificate && handshakeSession != null) {
+				// Pooled connection is reused when no handshake was performed
+				onResponse(url.getHost(), handshakeSession.count - handshakeCount,
+						handshakeSession.successTime - handshakeTime);
+			}
 			HttpValidator resultValidator = HttpValidator.obtain(connection);
 			String contentType = connection.getHeaderField("Content-Type");
 			String charsetName = extractCharsetName(contentType);
@@ -589,6 +608,23 @@ public class HttpClient {
 				}
 			}
 
+			if (cacheEntry != null && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				session.disconnectAndClear();
+				HttpResponse.Shared shared = cache.read(cacheEntry, session.getRequestedUris());
+				if (shared != null) {
+					// Session reports cached status and headers instead of 304 response
+					session.shared = shared;
+					HttpResponse cachedResponse = new HttpResponse(shared);
+					session.response = cachedResponse;
+					return cachedResponse;
+				}
+				// Cached entry is removed after failed read, so the request can be sent again
+				if (session.nextAttempt()) {
+					throw new RetryException();
+				}
+				throw new HttpException(ErrorItem.Type.DOWNLOAD, false, false);
+			}
+
 			if (validator != null && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
 				String responseMessage = connection.getResponseMessage();
 				session.disconnectAndClear();
@@ -627,6 +663,10 @@ public class HttpClient {
 			if (request.successOnly) {
 				session.checkResponseCode();
 			}
+			if (cacheKey != null && responseCode == HttpURLConnection.HTTP_OK &&
+					resultValidator != null && HttpCache.isStorable(connection)) {
+				cache.store(cacheKey, response, resultValidator);
+			}
 			session.holder.checkInterrupted();
 			return response;
 		} catch (InterruptedHttpException e) {
@@ -1145,6 +1185,76 @@ public class HttpClient {
 		}
 	}
 
+	public static final class ConnectionStatistics {
+		public final String host;
+		public final int requests;
+		public final int connections;
+		public final long handshakeTime;
+
+		private ConnectionStatistics(String host, int requests, int connections, long handshakeTime) {
+			this.host = host;
+			this.requests = requests;
+			this.connections = connections;
+			this.handshakeTime = handshakeTime;
+		}
+
+		public float getReuseRate() {
+			return requests > 0 ? (float) Math.max(requests - connections, 0) / requests : 0f;
+		}
+
+		public long getAverageHandshakeTime() {
+			return connections > 0 ? handshakeTime / connections : 0;
+		}
+	}
+
+	private static class HostStatistics {
+		public int requests;
+		public int connections;
+		public long handshakeTime;
+	}
+
+	private final HashMap<String, HostStatistics> hostStatistics = new HashMap<>();
+
+	final HttpSingleFlight singleFlight = new HttpSingleFlight();
+	final HttpCache cache = new HttpCache();
+
+	private void onResponse(String host, int connections, long handshakeTime) {
+		synchronized (hostStatistics) {
+			HostStatistics statistics = hostStatistics.get(host);
+			if (statistics == null) {
+				statistics = new HostStatistics();
+				hostStatistics.put(host, statistics);
+			}
+			statistics.requests++;
+			statistics.connections += connections;
+			statistics.handshakeTime += handshakeTime;
+		}
+	}
+
+	public List<ConnectionStatistics> getConnectionStatistics() {
+		ArrayList<ConnectionStatistics> result = new ArrayList<>();
+		synchronized (hostStatistics) {
+			for (Map.Entry<String, HostStatistics> entry : hostStatistics.entrySet()) {
+				HostStatistics statistics = entry.getValue();
+				result.add(new ConnectionStatistics(entry.getKey(), statistics.requests,
+						statistics.connections, statistics.handshakeTime));
+			}
+		}
+		Collections.sort(result, (lhs, rhs) -> Integer.compare(rhs.requests, lhs.requests));
+		return result;
+	}
+
+	public void logConnectionStatistics() {
+		for (ConnectionStatistics statistics : getConnectionStatistics()) {
+			Logger.write(Logger.Type.DEBUG, "HttpClient connections:", statistics.host,
+					statistics.requests, "requests", statistics.connections, "handshakes",
+					statistics.getAverageHandshakeTime() + "ms", "average",
+					Math.round(statistics.getReuseRate() * 100) + "%", "reused");
+		}
+		singleFlight.logStatistics();
+		cache.logStatistics();
+	}
+
 	private static class SSLSocketFactoryWrapper extends SSLSocketFactory {
 		public interface Wrapper {
 			SSLSocket wrap(SSLSocket socket);
@@ -1206,6 +1316,8 @@ public class HttpClient {
 		public static class Session {
 			public final int timeout;
 			public long totalTime;
+			public int count;
+			public long successTime;
 
 			public Session(int timeout) {
 				this.timeout = timeout;
@@ -1231,6 +1343,10 @@ public class HttpClient {
 			long start = SystemClock.elapsedRealtime();
 			try {
 				super.startHandshake();
+				if (session != null) {
+					session.count++;
+					session.successTime += SystemClock.elapsedRealtime() - start;
+				}
 			} catch (IOException e) {
 				long end = SystemClock.elapsedRealtime();
 				if (session != null) {
@@ -27,6 +27,10 @@ public final class HttpRequest {
 	public interface RangePreset extends Preset {
 		long getRangeStart();
 		long getRangeEnd();
+
+		default String getRangeValidator() {
+			return null;
+		}
 	}
 
 	public interface OutputListener {
@@ -121,6 +125,8 @@ public final class HttpRequest {
 	OutputListener outputListener;
 	long rangeStart = -1;
 	long rangeEnd = -1;
+	String rangeValidator;
+	boolean streamed;
 
 	int connectTimeout = 15000;
 	int readTimeout = 15000;
@@ -152,6 +158,9 @@ public final class HttpRequest {
 		if (preset instanceof RangePreset) {
 			RangePreset rangePreset = (RangePreset) preset;
 			setRange(rangePreset.getRangeStart(), rangePreset.getRangeEnd());
+			rangeValidator = rangePreset.getRangeValidator();
+			// Content requests are written to files and may be arbitrarily large
+			streamed = true;
 		}
 	}
 
@@ -327,6 +336,7 @@ public final class HttpRequest {
 		request.setOutputListener(outputListener);
 		request.setTimeouts(connectTimeout, readTimeout);
 		request.setDelay(delay);
+		request.streamed = streamed;
 		if (headers != null) {
 			request.headers = new ArrayList<>(headers);
 		}
@@ -339,6 +349,9 @@ public final class HttpRequest {
 		boolean verifyCertificate = holder.chan.locator.isUseHttps() && Preferences.isVerifyCertificate();
 		HttpSession session = holder.createSession(client, uri, client.getProxy(holder.chan),
 				verifyCertificate, delay, 10);
+		if (HttpSingleFlight.isSupported(this)) {
+			return client.singleFlight.execute(session, this);
+		}
 		return client.execute(session, this);
 	}
 
@@ -30,10 +30,35 @@ import org.json.JSONObject;
 public final class HttpResponse {
 	private enum ExtractCharset {NONE, CHECK_HTML, FROM_HTML}
 
+	static final class Shared {
+		final int responseCode;
+		final String responseMessage;
+		final Map<String, List<String>> headerFields;
+		final List<Uri> requestedUris;
+		final Uri redirectedUri;
+		final HttpValidator validator;
+		final String charsetName;
+		final byte[] bytes;
+
+		Shared(int responseCode, String responseMessage, Map<String, List<String>> headerFields,
+				List<Uri> requestedUris, Uri redirectedUri, HttpValidator validator, String charsetName, byte[] bytes) {
+			this.responseCode = responseCode;
+			this.responseMessage = responseMessage;
+			this.headerFields = headerFields;
+			this.requestedUris = requestedUris;
+			this.redirectedUri = redirectedUri;
+			this.validator = validator;
+			this.charsetName = charsetName;
+			this.bytes = bytes;
+		}
+	}
+
 	final HttpSession session;
+	private final Shared shared;
 	private final HttpValidator validator;
 	private String charsetName;
 	private ExtractCharset extractCharset = ExtractCharset.NONE;
+	private Uri redirectedUri;
 
 	private InputStream input;
 	private byte[] bytes;
@@ -41,6 +66,7 @@ public final class HttpResponse {
 
 	HttpResponse(HttpSession session, HttpValidator validator, String charsetName) {
 		this.session = session;
+		shared = null;
 		this.validator = validator;
 		this.charsetName = charsetName;
 		List<String> contentTypes = getHeaderFields().get("Content-Type");
@@ -60,6 +86,24 @@ public final class HttpResponse {
 		}
 	}
 
+	HttpResponse(Shared shared) {
+		session = null;
+		this.shared = shared;
+		validator = shared.validator;
+		charsetName = shared.charsetName;
+		redirectedUri = shared.redirectedUri;
+		bytes = shared.bytes;
+	}
+
+	// Reads the whole response, so it can be used from other threads
+	Shared share() throws HttpException {
+		byte[] bytes = readBytes();
+		String charsetName = getEncoding();
+		return new Shared(getResponseCode(), session != null ? session.getResponseMessage() : null,
+				getHeaderFields(), getRequestedUris(),
+				getRedirectedUri(), getValidator(), charsetName, bytes);
+	}
+
 	@Public
 	public HttpResponse(InputStream input) {
 		this(null, null, null);
@@ -96,13 +140,16 @@ public final class HttpResponse {
 
 	@Public
 	public int getResponseCode() {
-		return session != null ? session.getResponseCode() : HttpURLConnection.HTTP_OK;
+		return session != null ? session.getResponseCode()
+				: shared != null ? shared.responseCode : HttpURLConnection.HTTP_OK;
 	}
 
 	@Public
 	public Uri getRequestedUri() {
 		if (session != null) {
 			return session.getRequestedUris().get(0);
+		} else if (shared != null) {
+			return shared.requestedUris.get(0);
 		} else {
 			return null;
 		}
@@ -113,6 +160,8 @@ public final class HttpResponse {
 		if (session != null) {
 			List<Uri> uris = session.getRequestedUris();
 			return new ArrayList<>(uris);
+		} else if (shared != null) {
+			return new ArrayList<>(shared.requestedUris);
 		} else {
 			return Collections.emptyList();
 		}
@@ -124,27 +173,32 @@ public final class HttpResponse {
 			session.checkThread();
 			return session.redirectedUri;
 		}
-		return null;
+		return redirectedUri;
 	}
 
 	@Public
 	public void setRedirectedUri(Uri redirectedUri) {
+		if (shared != null) {
+			this.redirectedUri = redirectedUri;
+			return;
+		}
 		session.checkThread();
 		session.redirectedUri = redirectedUri;
 	}
 
 	@Public
 	public Map<String, List<String>> getHeaderFields() {
-		return session != null ? session.getHeaderFields() : Collections.emptyMap();
+		return session != null ? session.getHeaderFields()
+				: shared != null ? shared.headerFields : Collections.emptyMap();
 	}
 
 	@Public
 	public String getCookieValue(String name) {
-		return session != null ? session.getCookieValue(name) : null;
+		return session != null || shared != null ? HttpSession.getCookieValue(getHeaderFields(), name) : null;
 	}
 
 	public long getLength() {
-		return session != null ? session.getLength() : -1;
+		return session != null ? session.getLength() : shared != null ? shared.bytes.length : -1;
 	}
 
 	@Public
@@ -152,6 +206,8 @@ public final class HttpResponse {
 		if (session != null) {
 			session.checkThread();
 			return validator;
+		} else if (shared != null) {
+			return validator;
 		} else {
 			return null;
 		}
@@ -30,6 +30,8 @@ public final class HttpSession {
 
 	HttpURLConnection connection;
 	HttpURLConnection deadConnection;
+	// Response received without own connection, e.g. from another request with the same parameters
+	HttpResponse.Shared shared;
 	HttpHolder.Callback callback;
 
 	HttpSession(HttpHolder holder, HttpClient client, Uri uri, Proxy proxy,
@@ -74,6 +76,7 @@ public final class HttpSession {
 		checkThread();
 		this.connection = connection;
 		this.callback = callback;
+		shared = null;
 		redirectedUri = null;
 		if (holder.isInterrupted()) {
 			this.connection = null;
@@ -149,7 +152,7 @@ public final class HttpSession {
 	private HttpURLConnection getConnectionForHeaders() {
 		checkThread();
 		HttpURLConnection connection = this.connection;
-		if (connection == null) {
+		if (connection == null && shared == null) {
 			connection = deadConnection;
 		}
 		return connection;
@@ -164,7 +167,7 @@ public final class HttpSession {
 				throw new RuntimeException(e);
 			}
 		}
-		return -1;
+		return shared != null ? shared.responseCode : -1;
 	}
 
 	String getResponseMessage() {
@@ -176,17 +179,21 @@ public final class HttpSession {
 				throw new RuntimeException(e);
 			}
 		}
-		return null;
+		return shared != null ? shared.responseMessage : null;
 	}
 
 	Map<String, List<String>> getHeaderFields() {
 		HttpURLConnection connection = getConnectionForHeaders();
-		Map<String, List<String>> map = connection != null ? connection.getHeaderFields() : null;
+		Map<String, List<String>> map = connection != null ? connection.getHeaderFields()
+				: shared != null ? shared.headerFields : null;
 		return map != null ? map : Collections.emptyMap();
 	}
 
 	String getCookieValue(String name) {
-		Map<String, List<String>> headers = getHeaderFields();
+		return getCookieValue(getHeaderFields(), name);
+	}
+
+	static String getCookieValue(Map<String, List<String>> headers, String name) {
 		List<String> cookies = headers.get("Set-Cookie");
 		if (cookies != null) {
 			String start = name + "=";
@@ -207,6 +214,9 @@ public final class HttpSession {
 
 	long getLength() {
 		HttpURLConnection connection = getConnectionForHeaders();
+		if (connection == null && shared != null) {
+			return shared.bytes.length;
+		}
 		return connection != null && HttpClient.Encoding.get(connection) == HttpClient.Encoding.IDENTITY
 				? connection.getContentLength() : -1;
 	}
@@ -0,0 +1,212 @@
+package chan.http;
+
+import android.net.Uri;
+import android.util.Pair;
+import chan.util.CommonUtils;
+import com.mishiranu.dashchan.util.Logger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+final class HttpSingleFlight {
+	private static final int INTERRUPT_CHECK_INTERVAL = 100;
+	private static final long MAX_SHARED_LENGTH = 1024 * 1024;
+
+	private static final class Key {
+		private final String chanName;
+		private final Uri uri;
+		private final ArrayList<Pair<String, String>> headers;
+		private final String cookie;
+		private final HttpValidator validator;
+		private final HttpRequest.RedirectHandler redirectHandler;
+
+		public Key(String chanName, HttpRequest request) {
+			this.chanName = chanName;
+			uri = request.uri;
+			headers = request.headers != null ? new ArrayList<>(request.headers) : null;
+			cookie = request.cookieBuilder != null ? request.cookieBuilder.build() : null;
+			validator = request.validator;
+			redirectHandler = request.redirectHandler;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == this) {
+				return true;
+			}
+			if (o instanceof Key) {
+				Key co = (Key) o;
+				return CommonUtils.equals(chanName, co.chanName) && uri.equals(co.uri) &&
+						CommonUtils.equals(headers, co.headers) && CommonUtils.equals(cookie, co.cookie) &&
+						CommonUtils.equals(validator, co.validator) && redirectHandler == co.redirectHandler;
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			int prime = 31;
+			int result = 1;
+			result = prime * result + (chanName != null ? chanName.hashCode() : 0);
+			result = prime * result + uri.hashCode();
+			result = prime * result + (headers != null ? headers.hashCode() : 0);
+			result = prime * result + (cookie != null ? cookie.hashCode() : 0);
+			return result;
+		}
+	}
+
+	private static final class Flight {
+		public final CountDownLatch latch = new CountDownLatch(1);
+		public int followersCount;
+
+		public HttpResponse.Shared shared;
+		public HttpException exception;
+	}
+
+	private final HashMap<Key, Flight> flights = new HashMap<>();
+
+	private int flightsCount;
+	private int collapsedCount;
+	private int retriedCount;
+
+	// Only idempotent requests which response can be completely read into memory may share the result
+	static boolean isSupported(HttpRequest request) {
+		return request.requestMethod == HttpRequest.RequestMethod.GET && request.requestEntity == null &&
+				request.successOnly && request.outputListener == null && !request.streamed &&
+				request.rangeStart < 0 && request.rangeEnd < 0 && request.uri != null;
+	}
+
+	// Response is read into memory before it is returned, so only small text responses are shared
+	private static boolean isShareable(HttpResponse response) {
+		Map<String, List<String>> headers = response.getHeaderFields();
+		String contentType = getHeader(headers, "Content-Type");
+		if (contentType == null) {
+			return false;
+		}
+		contentType = contentType.toLowerCase(Locale.US);
+		if (!contentType.startsWith("text/") && !contentType.contains("json") &&
+				!contentType.contains("xml") && !contentType.contains("javascript")) {
+			return false;
+		}
+		String contentLength = getHeader(headers, "Content-Length");
+		if (contentLength == null) {
+			return false;
+		}
+		try {
+			long length = Long.parseLong(contentLength.trim());
+			return length >= 0 && length <= MAX_SHARED_LENGTH;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private static String getHeader(Map<String, List<String>> headers, String name) {
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null &&
+					!header.getValue().isEmpty()) {
+				return header.getValue().get(0);
+			}
+		}
+		return null;
+	}
+
+	HttpResponse execute(HttpSession session, HttpRequest request) throws HttpException {
+		Key key = new Key(session.holder.chan.name, request);
+		Flight flight;
+		boolean leader;
+		synchronized (flights) {
+			flight = flights.get(key);
+			leader = flight == null;
+			if (leader) {
+				flight = new Flight();
+				flights.put(key, flight);
+				flightsCount++;
+			} else {
+				flight.followersCount++;
+			}
+		}
+		if (leader) {
+			return executeLeader(session, request, key, flight);
+		} else {
+			return executeFollower(session, request, flight);
+		}
+	}
+
+	private HttpResponse executeLeader(HttpSession session, HttpRequest request,
+			Key key, Flight flight) throws HttpException {
+		HttpResponse.Shared shared = null;
+		HttpException exception = null;
+		try {
+			HttpResponse response = session.client.execute(session, request);
+			if (close(key, flight) && isShareable(response)) {
+				shared = response.share();
+			}
+			return response;
+		} catch (HttpException e) {
+			exception = e;
+			throw e;
+		} finally {
+			close(key, flight);
+			flight.shared = shared;
+			// Waiting requests will be performed again if the leading one was interrupted
+			flight.exception = session.holder.isInterrupted() ? null : exception;
+			flight.latch.countDown();
+		}
+	}
+
+	private HttpResponse executeFollower(HttpSession session, HttpRequest request,
+			Flight flight) throws HttpException {
+		try {
+			while (!flight.latch.await(INTERRUPT_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+				session.holder.checkInterrupted();
+			}
+		} catch (HttpClient.InterruptedHttpException | InterruptedException e) {
+			synchronized (flights) {
+				flight.followersCount--;
+			}
+			if (e instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			throw new HttpClient.InterruptedHttpException().toHttp();
+		}
+		if (flight.shared != null) {
+			synchronized (flights) {
+				collapsedCount++;
+			}
+			HttpResponse response = new HttpResponse(flight.shared);
+			session.shared = flight.shared;
+			session.response = response;
+			return response;
+		}
+		if (flight.exception != null) {
+			throw flight.exception;
+		}
+		synchronized (flights) {
+			retriedCount++;
+		}
+		return session.client.execute(session, request);
+	}
+
+	// Returns true if flight has waiting requests, new requests will start another flight after closing
+	private boolean close(Key key, Flight flight) {
+		synchronized (flights) {
+			if (flights.get(key) == flight) {
+				flights.remove(key);
+			}
+			return flight.followersCount > 0;
+		}
+	}
+
+	void logStatistics() {
+		synchronized (flights) {
+			if (flightsCount > 0) {
+				Logger.write(Logger.Type.DEBUG, "HttpClient single flight:", flightsCount, "requests",
+						collapsedCount, "collapsed", retriedCount, "retried");
+			}
+		}
+	}
+}
@@ -19,6 +19,14 @@ public final class HttpValidator implements Parcelable {
 		this.lastModified = lastModified;
 	}
 
+	public String getEntityTag() {
+		return entityTag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+
 	static HttpValidator obtain(HttpURLConnection connection) {
 		String eTag = connection.getHeaderField("ETag");
 		String lastModified = connection.getHeaderField("Last-Modified");
@@ -37,6 +45,27 @@ public final class HttpValidator implements Parcelable {
 		}
 	}
 
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (o instanceof HttpValidator) {
+			HttpValidator co = (HttpValidator) o;
+			return StringUtils.equals(entityTag, co.entityTag) && StringUtils.equals(lastModified, co.lastModified);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		int prime = 31;
+		int result = 1;
+		result = prime * result + (entityTag != null ? entityTag.hashCode() : 0);
+		result = prime * result + (lastModified != null ? lastModified.hashCode() : 0);
+		return result;
+	}
+
 	public void serialize(JsonSerial.Writer writer) throws IOException {
 		writer.startObject();
 		if (entityTag != null) {
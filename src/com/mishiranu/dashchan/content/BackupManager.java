@@ -9,6 +9,7 @@ import com.mishiranu.dashchan.content.service.DownloadService;
 import com.mishiranu.dashchan.content.storage.AutohideStorage;
 import com.mishiranu.dashchan.content.storage.FavoritesStorage;
 import com.mishiranu.dashchan.content.storage.StatisticsStorage;
+import com.mishiranu.dashchan.content.storage.StorageManager;
 import com.mishiranu.dashchan.content.storage.ThemesStorage;
 import com.mishiranu.dashchan.util.IOUtils;
 import com.mishiranu.dashchan.widget.ClickableToast;
@@ -130,13 +131,13 @@ public class BackupManager {
 				Preferences.getFileForRestore(), Collections.singletonList(BACKUP_VERSION_0)),
 		PREFERENCES_1(R.string.preferences, Preferences.getFilesForBackup(),
 				Collections.singletonList(BACKUP_VERSION_1)),
-		FAVORITES(R.string.favorites, FavoritesStorage.getInstance().getFilesForBackup(),
+		FAVORITES(R.string.favorites, FavoritesStorage.getInstance(),
 				Arrays.asList(BACKUP_VERSION_0, BACKUP_VERSION_1)),
-		AUTOHIDE(R.string.autohide, AutohideStorage.getInstance().getFilesForBackup(),
+		AUTOHIDE(R.string.autohide, AutohideStorage.getInstance(),
 				Arrays.asList(BACKUP_VERSION_0, BACKUP_VERSION_1)),
-		STATISTICS(R.string.statistics, StatisticsStorage.getInstance().getFilesForBackup(),
+		STATISTICS(R.string.statistics, StatisticsStorage.getInstance(),
 				Arrays.asList(BACKUP_VERSION_0, BACKUP_VERSION_1)),
-		THEMES(R.string.themes, ThemesStorage.getInstance().getFilesForBackup(),
+		THEMES(R.string.themes, ThemesStorage.getInstance(),
 				Arrays.asList(BACKUP_VERSION_0, BACKUP_VERSION_1));
 
 		public final int titleResId;
@@ -150,6 +151,11 @@ public class BackupManager {
 					new FileWriter(backupFiles.first), new FileReader(backupFiles.second));
 		}
 
+		Entry(int titleResId, StorageManager.Storage<?> storage, Collection<String> versions) {
+			this(titleResId, storage.getFilesForBackup().first.getName(), versions,
+					storage::writeBackup, new FileReader(storage.getFilesForBackup().second));
+		}
+
 		Entry(int titleResId, String name, File restoreFile, Collection<String> versions) {
 			this(titleResId, name, versions, null, new FileReader(restoreFile));
 		}
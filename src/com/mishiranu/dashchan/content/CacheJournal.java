@@ -0,0 +1,239 @@
+package com.mishiranu.dashchan.content;
+
+import com.mishiranu.dashchan.util.IOUtils;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+class CacheJournal {
+	private static final int MAGIC = 0x434a524e;
+	private static final int VERSION = 2;
+
+	private static final int OPERATION_PUT = 1;
+	private static final int OPERATION_TOUCH = 2;
+	private static final int OPERATION_REMOVE = 3;
+
+	private static final int COMPACT_MIN_RECORDS = 1000;
+
+	public static class Record {
+		public final String name;
+		public final long length;
+		public long lastModified;
+
+		public Record(String name, long length, long lastModified) {
+			this.name = name;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+	}
+
+	private final File file;
+
+	private DataOutputStream output;
+	private int recordsCount;
+	private boolean damaged;
+
+	public CacheJournal(File file) {
+		this.file = file;
+	}
+
+	// Returns null if journal doesn't exist or has unknown format, journal must be rewritten after loading
+	public synchronized LinkedHashMap<String, Record> load() {
+		damaged = false;
+		if (!file.exists()) {
+			return null;
+		}
+		LinkedHashMap<String, Record> records = new LinkedHashMap<>();
+		try (CheckedInputStream checkedInput = new CheckedInputStream(new BufferedInputStream(
+				new FileInputStream(file)), new CRC32());
+				DataInputStream input = new DataInputStream(checkedInput)) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				return null;
+			}
+			OUTER: while (true) {
+				checkedInput.getChecksum().reset();
+				int operation = input.read();
+				if (operation < 0) {
+					break;
+				}
+				Record put = null;
+				String touchName = null;
+				long touchLastModified = 0;
+				String removeName = null;
+				switch (operation) {
+					case OPERATION_PUT: {
+						String name = input.readUTF();
+						long length = input.readLong();
+						long lastModified = input.readLong();
+						put = new Record(name, length, lastModified);
+						break;
+					}
+					case OPERATION_TOUCH: {
+						touchName = input.readUTF();
+						touchLastModified = input.readLong();
+						break;
+					}
+					case OPERATION_REMOVE: {
+						removeName = input.readUTF();
+						break;
+					}
+					default: {
+						damaged = true;
+						break OUTER;
+					}
+				}
+				int checksum = (int) checkedInput.getChecksum().getValue();
+				if (input.readInt() != checksum) {
+					damaged = true;
+					break;
+				}
+				if (put != null) {
+					records.remove(put.name);
+					records.put(put.name, put);
+				} else if (touchName != null) {
+					Record record = records.remove(touchName);
+					if (record != null) {
+						record.lastModified = touchLastModified;
+						records.put(touchName, record);
+					}
+				} else if (removeName != null) {
+					records.remove(removeName);
+				}
+			}
+		} catch (EOFException e) {
+			// Last record was not written completely
+			damaged = true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+		return records;
+	}
+
+	// Loaded records may miss the latest changes if the journal tail is broken
+	public synchronized boolean isDamaged() {
+		return damaged;
+	}
+
+	public synchronized void rewrite(Iterable<Record> records) {
+		close();
+		File tempFile = new File(file.getPath() + ".tmp");
+		boolean success = false;
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tempFile)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			int count = 0;
+			for (Record record : records) {
+				writeRecord(output, OPERATION_PUT, record.name, record.length, record.lastModified);
+				count++;
+			}
+			recordsCount = count;
+			success = true;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if (!success || !tempFile.renameTo(file)) {
+			tempFile.delete();
+			file.delete();
+		}
+	}
+
+	public synchronized boolean needCompaction(int entriesCount) {
+		return recordsCount >= COMPACT_MIN_RECORDS && recordsCount > 2 * entriesCount;
+	}
+
+	public synchronized void put(String name, long length, long lastModified) {
+		DataOutputStream output = obtainOutput();
+		if (output != null) {
+			try {
+				writeRecord(output, OPERATION_PUT, name, length, lastModified);
+				flush();
+			} catch (IOException e) {
+				handleError(e);
+			}
+		}
+	}
+
+	public synchronized void touch(String name, long lastModified) {
+		DataOutputStream output = obtainOutput();
+		if (output != null) {
+			try {
+				writeRecord(output, OPERATION_TOUCH, name, 0, lastModified);
+				flush();
+			} catch (IOException e) {
+				handleError(e);
+			}
+		}
+	}
+
+	public synchronized void remove(String name) {
+		DataOutputStream output = obtainOutput();
+		if (output != null) {
+			try {
+				writeRecord(output, OPERATION_REMOVE, name, 0, 0);
+				flush();
+			} catch (IOException e) {
+				handleError(e);
+			}
+		}
+	}
+
+	private static void writeRecord(DataOutputStream output, int operation,
+			String name, long length, long lastModified) throws IOException {
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		DataOutputStream recordOutput = new DataOutputStream(record);
+		recordOutput.write(operation);
+		recordOutput.writeUTF(name);
+		if (operation == OPERATION_PUT) {
+			recordOutput.writeLong(length);
+		}
+		if (operation != OPERATION_REMOVE) {
+			recordOutput.writeLong(lastModified);
+		}
+		byte[] data = record.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		output.write(data);
+		output.writeInt((int) crc.getValue());
+	}
+
+	private DataOutputStream obtainOutput() {
+		// Journal is appended only after it was rewritten with a valid header
+		if (output == null && file.exists()) {
+			try {
+				output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return output;
+	}
+
+	private void flush() throws IOException {
+		output.flush();
+		recordsCount++;
+	}
+
+	private void handleError(IOException e) {
+		e.printStackTrace();
+		close();
+		// Broken journal will be replaced with directory listing on next launch
+		file.delete();
+	}
+
+	public synchronized void close() {
+		IOUtils.close(output);
+		output = null;
+	}
+}
@@ -10,18 +10,18 @@ import android.util.Pair;
 import androidx.annotation.NonNull;
 import chan.content.Chan;
 import chan.util.StringUtils;
+import com.mishiranu.dashchan.C;
 import com.mishiranu.dashchan.util.AndroidUtils;
 import com.mishiranu.dashchan.util.Hasher;
 import com.mishiranu.dashchan.util.IOUtils;
 import com.mishiranu.dashchan.util.LruCache;
 import com.mishiranu.dashchan.util.MimeTypes;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Locale;
@@ -34,6 +34,8 @@ public class CacheManager implements Runnable {
 
 	private static final float TRIM_FACTOR = 0.3f;
 
+	private static final int THUMBNAIL_QUALITY = 90;
+
 	private static final CacheManager INSTANCE = new CacheManager();
 
 	public static CacheManager getInstance() {
@@ -65,10 +67,6 @@ public class CacheManager implements Runnable {
 			}
 			File file = null;
 			switch (cacheItem.type) {
-				case THUMBNAILS: {
-					file = new File(getThumbnailsDirectory(), cacheItem.name);
-					break;
-				}
 				case MEDIA: {
 					file = new File(getMediaDirectory(), cacheItem.name);
 					break;
@@ -81,7 +79,7 @@ public class CacheManager implements Runnable {
 	private volatile CountDownLatch cacheBuildingLatch;
 
 	private static class CacheItem {
-		public enum Type {THUMBNAILS, MEDIA}
+		public enum Type {MEDIA}
 
 		public final String name;
 		public final String nameLc;
@@ -97,6 +95,14 @@ public class CacheManager implements Runnable {
 			this.type = type;
 		}
 
+		public CacheItem(CacheJournal.Record record, Type type) {
+			name = record.name;
+			nameLc = name.toLowerCase(Locale.US);
+			length = record.length;
+			lastModified = record.lastModified;
+			this.type = type;
+		}
+
 		@NonNull
 		@Override
 		public String toString() {
@@ -128,11 +134,11 @@ public class CacheManager implements Runnable {
 	private static final Comparator<CacheItem> SORT_BY_DATE_COMPARATOR =
 			(lhs, rhs) -> ((Long) lhs.lastModified).compareTo(rhs.lastModified);
 
-	private final LinkedHashMap<String, CacheItem> thumbnailsCache = new LinkedHashMap<>();
+	private final ThumbnailStore thumbnailStore = new ThumbnailStore();
 	private final LinkedHashMap<String, CacheItem> mediaCache = new LinkedHashMap<>();
 
-	private long thumbnailsCacheSize;
 	private long mediaCacheSize;
+	private CacheJournal mediaJournal;
 
 	private long fillCache(LinkedHashMap<String, CacheItem> cacheItems, File directory, CacheItem.Type type) {
 		cacheItems.clear();
@@ -146,6 +152,21 @@ public class CacheManager implements Runnable {
 				cacheItemsList.add(new CacheItem(file, type));
 			}
 		}
+		return putCacheItems(cacheItems, cacheItemsList);
+	}
+
+	private long fillCache(LinkedHashMap<String, CacheItem> cacheItems, Iterable<CacheJournal.Record> records,
+			CacheItem.Type type) {
+		cacheItems.clear();
+		ArrayList<CacheItem> cacheItemsList = new ArrayList<>();
+		for (CacheJournal.Record record : records) {
+			cacheItemsList.add(new CacheItem(record, type));
+		}
+		return putCacheItems(cacheItems, cacheItemsList);
+	}
+
+	private static long putCacheItems(LinkedHashMap<String, CacheItem> cacheItems,
+			ArrayList<CacheItem> cacheItemsList) {
 		Collections.sort(cacheItemsList, SORT_BY_DATE_COMPARATOR);
 		long size = 0L;
 		for (CacheItem cacheItem : cacheItemsList) {
@@ -159,35 +180,109 @@ public class CacheManager implements Runnable {
 		final CountDownLatch latch = new CountDownLatch(1);
 		cacheBuildingLatch = latch;
 		new Thread(() -> {
+			long time = System.currentTimeMillis();
+			File mediaDirectory = getMediaDirectory();
+			boolean reconcile = false;
 			try {
-				synchronized (thumbnailsCache) {
-					thumbnailsCacheSize = fillCache(thumbnailsCache, getThumbnailsDirectory(),
-							CacheItem.Type.THUMBNAILS);
-				}
+				thumbnailStore.open(getThumbnailsDirectory());
+				File cacheDirectory = getCacheDirectory();
+				CacheJournal journal = cacheDirectory != null
+						? new CacheJournal(new File(cacheDirectory, "media.journal")) : null;
 				synchronized (mediaCache) {
-					mediaCacheSize = fillCache(mediaCache, getMediaDirectory(), CacheItem.Type.MEDIA);
+					if (mediaJournal != null) {
+						mediaJournal.close();
+					}
+					mediaJournal = journal;
+					LinkedHashMap<String, CacheJournal.Record> records = journal != null ? journal.load() : null;
+					if (records != null) {
+						mediaCacheSize = fillCache(mediaCache, records.values(), CacheItem.Type.MEDIA);
+						reconcile = journal.isDamaged() && mediaDirectory != null;
+					} else {
+						mediaCacheSize = fillCache(mediaCache, mediaDirectory, CacheItem.Type.MEDIA);
+					}
+					rewriteMediaJournal();
 				}
 				cleanupAsync(true, true);
 			} finally {
 				latch.countDown();
 			}
+			cleanupPartialDownloads();
+			if (reconcile) {
+				reconcileMediaCache(mediaDirectory, time);
+			}
 		}).start();
 	}
 
+	private void rewriteMediaJournal() {
+		if (mediaJournal != null) {
+			ArrayList<CacheJournal.Record> records = new ArrayList<>(mediaCache.size());
+			for (CacheItem cacheItem : mediaCache.values()) {
+				records.add(new CacheJournal.Record(cacheItem.name, cacheItem.length, cacheItem.lastModified));
+			}
+			mediaJournal.rewrite(records);
+		}
+	}
+
+	private void checkMediaJournal() {
+		if (mediaJournal != null && mediaJournal.needCompaction(mediaCache.size())) {
+			rewriteMediaJournal();
+		}
+	}
+
+	// Damaged journal may miss the latest changes, so it's checked after the cache is built
+	private void reconcileMediaCache(File directory, long time) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		HashMap<String, File> existingFiles = new HashMap<>(files.length);
+		for (File file : files) {
+			existingFiles.put(file.getName().toLowerCase(Locale.US), file);
+		}
+		synchronized (mediaCache) {
+			boolean changed = false;
+			Iterator<CacheItem> iterator = mediaCache.values().iterator();
+			while (iterator.hasNext()) {
+				CacheItem cacheItem = iterator.next();
+				if (cacheItem.lastModified < time && !existingFiles.containsKey(cacheItem.nameLc)) {
+					iterator.remove();
+					mediaCacheSize -= cacheItem.length;
+					changed = true;
+				}
+			}
+			ArrayList<CacheItem> addedCacheItems = null;
+			for (HashMap.Entry<String, File> entry : existingFiles.entrySet()) {
+				if (!mediaCache.containsKey(entry.getKey())) {
+					CacheItem cacheItem = new CacheItem(entry.getValue(), CacheItem.Type.MEDIA);
+					if (cacheItem.lastModified > 0 && cacheItem.lastModified < time) {
+						if (addedCacheItems == null) {
+							addedCacheItems = new ArrayList<>();
+						}
+						addedCacheItems.add(cacheItem);
+					}
+				}
+			}
+			if (addedCacheItems != null) {
+				addedCacheItems.addAll(mediaCache.values());
+				mediaCache.clear();
+				mediaCacheSize = putCacheItems(mediaCache, addedCacheItems);
+				changed = true;
+			}
+			if (changed) {
+				rewriteMediaJournal();
+			}
+		}
+		cleanupAsync(false, true);
+	}
+
 	private void cleanupAsync(boolean thumbnails, boolean media) {
 		int maxCache = MAX_THUMBNAILS_PART + MAX_MEDIA_PART;
 		long maxCacheSize = Preferences.getCacheSize() * 1000L * 1000L;
 		ArrayList<CacheItem> cleanupCacheItems = null;
 		if (thumbnails) {
-			synchronized (thumbnailsCache) {
-				long maxSize = MAX_THUMBNAILS_PART * maxCacheSize / maxCache;
-				if (thumbnailsCacheSize > maxSize) {
-					if (cleanupCacheItems == null) {
-						cleanupCacheItems = new ArrayList<>();
-					}
-					thumbnailsCacheSize = obtainCacheItemsToCleanup(cleanupCacheItems, thumbnailsCache,
-							thumbnailsCacheSize, maxSize, null);
-				}
+			long maxSize = MAX_THUMBNAILS_PART * maxCacheSize / maxCache;
+			if (thumbnailStore.getSize() > maxSize) {
+				thumbnailStore.trim(maxSize - (long) (TRIM_FACTOR * maxSize));
 			}
 		}
 		if (media) {
@@ -197,8 +292,14 @@ public class CacheManager implements Runnable {
 					if (cleanupCacheItems == null) {
 						cleanupCacheItems = new ArrayList<>();
 					}
+					int start = cleanupCacheItems.size();
 					mediaCacheSize = obtainCacheItemsToCleanup(cleanupCacheItems, mediaCache,
 							mediaCacheSize, maxSize, null);
+					if (mediaJournal != null) {
+						for (int i = start; i < cleanupCacheItems.size(); i++) {
+							mediaJournal.remove(cleanupCacheItems.get(i).name);
+						}
+					}
 				}
 			}
 		}
@@ -244,9 +345,6 @@ public class CacheManager implements Runnable {
 
 	private LinkedHashMap<String, CacheItem> getCacheItems(CacheItem.Type type) {
 		switch (type) {
-			case THUMBNAILS: {
-				return thumbnailsCache;
-			}
 			case MEDIA: {
 				return mediaCache;
 			}
@@ -256,10 +354,6 @@ public class CacheManager implements Runnable {
 
 	private void modifyCacheSize(CacheItem.Type type, long lengthDelta) {
 		switch (type) {
-			case THUMBNAILS: {
-				thumbnailsCacheSize += lengthDelta;
-				break;
-			}
 			case MEDIA: {
 				mediaCacheSize += lengthDelta;
 				break;
@@ -277,6 +371,9 @@ public class CacheManager implements Runnable {
 			if (cacheItem != null && !file.exists()) {
 				cacheItems.remove(cacheItem.nameLc);
 				modifyCacheSize(type, -cacheItem.length);
+				if (mediaJournal != null) {
+					mediaJournal.remove(cacheItem.name);
+				}
 				cacheItem = null;
 			}
 			return cacheItem != null;
@@ -297,9 +394,16 @@ public class CacheManager implements Runnable {
 					file.setLastModified(lastModified);
 					cacheItem.lastModified = lastModified;
 					cacheItems.put(fileNameLc, cacheItem);
+					if (mediaJournal != null) {
+						mediaJournal.touch(cacheItem.name, lastModified);
+					}
 				} else {
 					modifyCacheSize(type, -cacheItem.length);
+					if (mediaJournal != null) {
+						mediaJournal.remove(cacheItem.name);
+					}
 				}
+				checkMediaJournal();
 			}
 		}
 	}
@@ -314,15 +418,22 @@ public class CacheManager implements Runnable {
 			CacheItem cacheItem = cacheItems.remove(fileName.toLowerCase(Locale.US));
 			if (cacheItem != null) {
 				lengthDelta = -cacheItem.length;
+				if (!success && mediaJournal != null) {
+					mediaJournal.remove(cacheItem.name);
+				}
 			}
 			if (success) {
 				cacheItem = new CacheItem(file, type);
 				cacheItems.put(cacheItem.nameLc, cacheItem);
 				lengthDelta += cacheItem.length;
+				if (mediaJournal != null) {
+					mediaJournal.put(cacheItem.name, cacheItem.length, cacheItem.lastModified);
+				}
 			}
 			modifyCacheSize(type, lengthDelta);
+			checkMediaJournal();
 			if (success) {
-				cleanupAsync(type == CacheItem.Type.THUMBNAILS, type == CacheItem.Type.MEDIA);
+				cleanupAsync(false, type == CacheItem.Type.MEDIA);
 			}
 		}
 	}
@@ -335,7 +446,7 @@ public class CacheManager implements Runnable {
 		if (waitCacheSync()) {
 			return 0L;
 		}
-		return thumbnailsCacheSize + mediaCacheSize;
+		return thumbnailStore.getSize() + mediaCacheSize;
 	}
 
 	private File getThumbnailsDirectory() {
@@ -378,6 +489,36 @@ public class CacheManager implements Runnable {
 		return getMediaFile(getCachedFileKey(uri) + ".part", false);
 	}
 
+	private File getDownloadsDirectory() {
+		return getCacheDirectory("downloads");
+	}
+
+	public File getPartialDownloadFile(Uri uri, String destination, boolean segmented) {
+		// Kept outside of media directory, so cache cleanup doesn't evict unfinished downloads
+		File directory = getDownloadsDirectory();
+		if (directory == null) {
+			return null;
+		}
+		return new File(directory, getCachedFileKey(uri) + "-" +
+				Integer.toHexString(destination.hashCode()) + (segmented ? ".segmented" : ".download"));
+	}
+
+	private static final long PARTIAL_DOWNLOAD_MAX_AGE = 7 * 24 * 60 * 60 * 1000L; // 7 days
+
+	private void cleanupPartialDownloads() {
+		File directory = getDownloadsDirectory();
+		File[] files = directory != null ? directory.listFiles() : null;
+		if (files != null) {
+			long time = System.currentTimeMillis();
+			for (File file : files) {
+				// Abandoned downloads are never resumed
+				if (file.lastModified() + PARTIAL_DOWNLOAD_MAX_AGE < time) {
+					file.delete();
+				}
+			}
+		}
+	}
+
 	private long eraseCache(LinkedHashMap<String, CacheItem> cacheItems, File directory,
 			DeleteCondition deleteCondition) throws InterruptedException {
 		if (directory == null) {
@@ -400,16 +541,20 @@ public class CacheManager implements Runnable {
 	}
 
 	public void eraseThumbnailsCache() throws InterruptedException {
-		synchronized (thumbnailsCache) {
-			eraseCache(thumbnailsCache, getThumbnailsDirectory(), null);
-			thumbnailsCacheSize = 0L;
+		if (waitCacheSync()) {
+			throw new InterruptedException();
 		}
+		thumbnailStore.erase();
 	}
 
 	public void eraseMediaCache() throws InterruptedException {
 		synchronized (mediaCache) {
-			eraseCache(mediaCache, getMediaDirectory(), null);
-			mediaCacheSize = 0L;
+			try {
+				eraseCache(mediaCache, getMediaDirectory(), null);
+				mediaCacheSize = 0L;
+			} finally {
+				rewriteMediaJournal();
+			}
 		}
 	}
 
@@ -471,9 +616,7 @@ public class CacheManager implements Runnable {
 		File directory = file.getParentFile();
 		if (directory != null) {
 			CacheItem.Type type = null;
-			if (directory.equals(getThumbnailsDirectory())) {
-				type = CacheItem.Type.THUMBNAILS;
-			} else if (directory.equals(getMediaDirectory())) {
+			if (directory.equals(getMediaDirectory())) {
 				type = CacheItem.Type.MEDIA;
 			}
 			if (type != null) {
@@ -482,56 +625,33 @@ public class CacheManager implements Runnable {
 		}
 	}
 
-	public File getThumbnailFile(String thumbnailKey) {
-		File directory = getThumbnailsDirectory();
-		if (directory == null) {
-			return null;
-		}
-		return new File(directory, thumbnailKey);
-	}
-
 	public Bitmap loadThumbnailExternal(String thumbnailKey) {
-		if (!isCacheAvailable()) {
+		if (!isCacheAvailable() || waitCacheSync()) {
 			return null;
 		}
-		File file = getThumbnailFile(thumbnailKey);
-		if (file == null) {
+		byte[] data = thumbnailStore.read(thumbnailKey);
+		if (data == null) {
 			return null;
 		}
-		if (!isFileExistsInCache(file, thumbnailKey, CacheItem.Type.THUMBNAILS)) {
-			return null;
-		}
-		Bitmap bitmap;
-		try (FileInputStream input = new FileInputStream(file)) {
-			bitmap = BitmapFactory.decodeStream(input);
-			if (bitmap == null) {
-				file.delete();
-				return null;
-			}
-			updateCachedFileLastModified(file, thumbnailKey, CacheItem.Type.THUMBNAILS);
-			return bitmap;
-		} catch (IOException e) {
-			return null;
+		Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length);
+		if (bitmap == null) {
+			thumbnailStore.remove(thumbnailKey);
 		}
+		return bitmap;
 	}
 
+	@SuppressWarnings("deprecation")
 	public void storeThumbnailExternal(String thumbnailKey, Bitmap data) {
-		if (!isCacheAvailable()) {
-			return;
-		}
-		File directory = getThumbnailsDirectory();
-		if (directory == null) {
+		if (!isCacheAvailable() || waitCacheSync()) {
 			return;
 		}
-		boolean success = false;
-		File file = new File(directory, thumbnailKey);
-		try (FileOutputStream output = new FileOutputStream(file)) {
-			data.compress(Bitmap.CompressFormat.PNG, 100, output);
-			success = true;
-		} catch (IOException e) {
-			e.printStackTrace();
-		} finally {
-			validateNewCachedFile(file, thumbnailKey, CacheItem.Type.THUMBNAILS, success);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		// WEBP with alpha channel is not supported before 4.3
+		Bitmap.CompressFormat format = !C.API_JELLY_BEAN_MR2 || data.hasAlpha() ? Bitmap.CompressFormat.PNG
+				: C.API_R ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+		if (data.compress(format, THUMBNAIL_QUALITY, output) &&
+				thumbnailStore.write(thumbnailKey, output.toByteArray())) {
+			cleanupAsync(true, false);
 		}
 	}
 
@@ -12,6 +12,7 @@ import com.mishiranu.dashchan.content.model.PostItem;
 import com.mishiranu.dashchan.content.model.PostNumber;
 import com.mishiranu.dashchan.content.storage.AutohideStorage;
 import com.mishiranu.dashchan.text.SimilarTextEstimator;
+import com.mishiranu.dashchan.util.LruCache;
 import com.mishiranu.dashchan.widget.ClickableToast;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -37,6 +38,25 @@ public class HidePerformer {
 	private LinkedHashSet<PostNumber> replies;
 	private LinkedHashSet<String> names;
 	private ArrayList<SimilarTextEstimator.WordsData<PostNumber>> similar;
+	private SimilarTextEstimator.Index<PostNumber> similarIndex;
+
+	private static final int MAX_GLOBAL_AUTOHIDE_RESULTS = 1000;
+
+	private static class GlobalAutohideResult {
+		public final PostItem postItem;
+		public final AutohideStorage.Rules rules;
+		public final String message;
+
+		public GlobalAutohideResult(PostItem postItem, AutohideStorage.Rules rules, String message) {
+			this.postItem = postItem;
+			this.rules = rules;
+			this.message = message;
+		}
+	}
+
+	// Results of cancelled preloading are never consumed, so the number of entries is limited
+	private final LruCache<PostNumber, GlobalAutohideResult> globalAutohideResults =
+			new LruCache<>(MAX_GLOBAL_AUTOHIDE_RESULTS);
 
 	public HidePerformer(Context context) {
 		autohidePrefix = context != null ? context.getString(R.string.autohide) + ": " : "";
@@ -60,6 +80,15 @@ public class HidePerformer {
 		return message != null ? autohidePrefix + message : null;
 	}
 
+	// May be called from any thread, only checks which don't depend on the mutable state are performed
+	public void preloadHidden(Chan chan, PostItem postItem) {
+		AutohideStorage.Rules rules = autohideStorage.getRules();
+		String message = checkHiddenGlobalAutohide(chan, postItem, rules);
+		synchronized (globalAutohideResults) {
+			globalAutohideResults.put(postItem.getPostNumber(), new GlobalAutohideResult(postItem, rules, message));
+		}
+	}
+
 	private String checkHiddenByReplies(PostItem postItem) {
 		if (replies != null && postsProvider != null) {
 			if (replies.contains(postItem.getPostNumber())) {
@@ -92,18 +121,34 @@ public class HidePerformer {
 		if (similar != null) {
 			SimilarTextEstimator.WordsData<PostNumber> wordsData =
 					estimator.getWords(postItem.getComment(chan).toString());
-			if (wordsData != null) {
+			if (similarIndex == null) {
+				similarIndex = new SimilarTextEstimator.Index<>();
 				for (SimilarTextEstimator.WordsData<PostNumber> similarWordsData : similar) {
-					if (estimator.checkSimiliar(wordsData, similarWordsData)) {
-						return "similar to " + similarWordsData.extra;
-					}
+					similarIndex.add(similarWordsData);
 				}
 			}
+			SimilarTextEstimator.WordsData<PostNumber> similarWordsData =
+					estimator.findSimilar(similarIndex, wordsData);
+			if (similarWordsData != null) {
+				return "similar to " + similarWordsData.extra;
+			}
 		}
 		return null;
 	}
 
 	private String checkHiddenGlobalAutohide(Chan chan, PostItem postItem) {
+		AutohideStorage.Rules rules = autohideStorage.getRules();
+		GlobalAutohideResult result;
+		synchronized (globalAutohideResults) {
+			result = globalAutohideResults.remove(postItem.getPostNumber());
+		}
+		if (result != null && result.postItem == postItem && result.rules == rules) {
+			return result.message;
+		}
+		return checkHiddenGlobalAutohide(chan, postItem, rules);
+	}
+
+	private static String checkHiddenGlobalAutohide(Chan chan, PostItem postItem, AutohideStorage.Rules rules) {
 		String boardName = postItem.getBoardName();
 		PostNumber originalPostNumber = postItem.getOriginalPostNumber();
 		String originalPostNumberString = originalPostNumber != null
@@ -113,66 +158,82 @@ public class HidePerformer {
 		String subject = null;
 		String comment = null;
 		List<String> names = null;
-		ArrayList<AutohideStorage.AutohideItem> autohideItems = autohideStorage.getItems();
+		List<String> fileNames = null;
+		boolean[] subjectCandidates = null;
+		boolean[] commentCandidates = null;
+		List<boolean[]> namesCandidates = null;
+		List<boolean[]> fileNamesCandidates = null;
+		// Chan and board are already matched by scope
+		AutohideStorage.Scope scope = rules.getScope(chan.name, boardName);
+		List<AutohideStorage.AutohideItem> autohideItems = scope.autohideItems;
 		for (int i = 0; i < autohideItems.size(); i++) {
 			AutohideStorage.AutohideItem autohideItem = autohideItems.get(i);
-			// AND selection (only if chan, board, thread, op, and sage match the rule)
-			if (autohideItem.chanNames == null || autohideItem.chanNames.contains(chan.name)) {
-				if (StringUtils.isEmpty(autohideItem.boardName) || boardName == null
-						|| autohideItem.boardName.equals(boardName)) {
-					if (StringUtils.isEmpty(autohideItem.threadNumber) || autohideItem.boardName != null &&
-							autohideItem.threadNumber.equals(originalPostNumberString)) {
-						if ((!autohideItem.optionOriginalPost || autohideItem.optionOriginalPost == originalPost)
-								&& (!autohideItem.optionSage || autohideItem.optionSage == sage)) {
-							String result;
-							// OR selection (hide if subject, comment, or name match the rule)
-							if (autohideItem.optionSubject) {
-								if (subject == null) {
-									subject = postItem.getSubject();
-								}
-								if ((result = autohideItem.find(subject)) != null) {
-									return autohideItem.getReason(AutohideStorage.AutohideItem
-											.ReasonSource.SUBJECT, comment, result);
+			// AND selection (only if thread, op, and sage match the rule)
+			if (StringUtils.isEmpty(autohideItem.threadNumber) || autohideItem.boardName != null &&
+					autohideItem.threadNumber.equals(originalPostNumberString)) {
+				if ((!autohideItem.optionOriginalPost || autohideItem.optionOriginalPost == originalPost)
+						&& (!autohideItem.optionSage || autohideItem.optionSage == sage)) {
+					String result;
+					// OR selection (hide if subject, comment, or name match the rule)
+					// Full pattern is checked only if the text contains its required literal
+					if (autohideItem.optionSubject) {
+						if (subject == null) {
+							subject = postItem.getSubject();
+							subjectCandidates = scope.findCandidates(subject);
+						}
+						if (subjectCandidates[i] && (result = autohideItem.find(subject)) != null) {
+							return autohideItem.getReason(AutohideStorage.AutohideItem
+									.ReasonSource.SUBJECT, comment, result);
+						}
+					}
+					if (autohideItem.optionComment) {
+						if (comment == null) {
+							comment = postItem.getComment(chan).toString();
+							commentCandidates = scope.findCandidates(comment);
+						}
+						if (commentCandidates[i] && (result = autohideItem.find(comment)) != null) {
+							return autohideItem.getReason(AutohideStorage.AutohideItem
+									.ReasonSource.COMMENT, comment, result);
+						}
+					}
+					if (autohideItem.optionName) {
+						if (names == null) {
+							String name = postItem.getFullName(chan).toString();
+							List<Post.Icon> icons = postItem.getIcons();
+							if (!icons.isEmpty()) {
+								names = new ArrayList<>(1 + icons.size());
+								names.add(name);
+								for (Post.Icon icon : icons) {
+									names.add(icon.title);
 								}
+							} else {
+								names = Collections.singletonList(name);
 							}
-							if (autohideItem.optionComment) {
-								if (comment == null) {
-									comment = postItem.getComment(chan).toString();
-								}
-								if ((result = autohideItem.find(comment)) != null) {
-									return autohideItem.getReason(AutohideStorage.AutohideItem
-											.ReasonSource.COMMENT, comment, result);
-								}
+							namesCandidates = findCandidates(scope, names);
+						}
+						for (int j = 0; j < names.size(); j++) {
+							String name = names.get(j);
+							if (namesCandidates.get(j)[i] && (result = autohideItem.find(name)) != null) {
+								return autohideItem.getReason(AutohideStorage.AutohideItem
+										.ReasonSource.NAME, name, result);
 							}
-							if (autohideItem.optionName) {
-								if (names == null) {
-									String name = postItem.getFullName(chan).toString();
-									List<Post.Icon> icons = postItem.getIcons();
-									if (!icons.isEmpty()) {
-										names = new ArrayList<>(1 + icons.size());
-										names.add(name);
-										for (Post.Icon icon : icons) {
-											names.add(icon.title);
-										}
-									} else {
-										names = Collections.singletonList(name);
-									}
-								}
-								for (String name : names) {
-									if ((result = autohideItem.find(name)) != null) {
-										return autohideItem.getReason(AutohideStorage.AutohideItem
-												.ReasonSource.NAME, name, result);
-									}
-								}
+						}
+					}
+					if (autohideItem.optionFileName && postItem.hasAttachments()) {
+						if (fileNames == null) {
+							List<AttachmentItem> attachmentItems = postItem.getAttachmentItems();
+							fileNames = new ArrayList<>(attachmentItems.size());
+							for (AttachmentItem attachmentItem : attachmentItems) {
+								fileNames.add(StringUtils.emptyIfNull(attachmentItem.getOriginalName()));
 							}
-							if (autohideItem.optionFileName && postItem.hasAttachments()) {
-								for (AttachmentItem attachmentItem : postItem.getAttachmentItems()) {
-									String originalName = StringUtils.emptyIfNull(attachmentItem.getOriginalName());
-									if ((result = autohideItem.find(originalName)) != null) {
-										return autohideItem.getReason(AutohideStorage.AutohideItem
-												.ReasonSource.FILE, originalName, result);
-									}
-								}
+							fileNamesCandidates = findCandidates(scope, fileNames);
+						}
+						for (int j = 0; j < fileNames.size(); j++) {
+							String originalName = fileNames.get(j);
+							if (fileNamesCandidates.get(j)[i] &&
+									(result = autohideItem.find(originalName)) != null) {
+								return autohideItem.getReason(AutohideStorage.AutohideItem
+										.ReasonSource.FILE, originalName, result);
 							}
 						}
 					}
@@ -182,6 +243,14 @@ public class HidePerformer {
 		return null;
 	}
 
+	private static List<boolean[]> findCandidates(AutohideStorage.Scope scope, List<String> texts) {
+		ArrayList<boolean[]> candidates = new ArrayList<>(texts.size());
+		for (String text : texts) {
+			candidates.add(scope.findCandidates(text));
+		}
+		return candidates;
+	}
+
 	public enum AddResult {SUCCESS, FAIL, EXISTS}
 
 	public AddResult addHideByReplies(PostItem postItem) {
@@ -231,6 +300,7 @@ public class HidePerformer {
 			}
 		}
 		similar.add(wordsData);
+		similarIndex = null;
 		return AddResult.SUCCESS;
 	}
 
@@ -301,6 +371,7 @@ public class HidePerformer {
 				index -= similar.size();
 			} else {
 				similar.remove(index);
+				similarIndex = null;
 				if (similar.isEmpty()) {
 					similar = null;
 				}
@@ -356,6 +427,7 @@ public class HidePerformer {
 		this.replies = null;
 		this.names = null;
 		this.similar = null;
+		this.similarIndex = null;
 		if (reader != null) {
 			reader.startObject();
 			while (!reader.endStruct()) {
@@ -429,6 +501,7 @@ public class HidePerformer {
 		this.replies = null;
 		this.names = null;
 		this.similar = null;
+		this.similarIndex = null;
 		if (localFilters != null) {
 			for (String[] rule : localFilters) {
 				if (rule == null || rule.length < 2) {
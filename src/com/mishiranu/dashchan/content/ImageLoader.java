@@ -1,5 +1,6 @@
 package com.mishiranu.dashchan.content;
 
+import android.content.ComponentCallbacks2;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
@@ -19,9 +20,11 @@ import chan.http.HttpResponse;
 import com.mishiranu.dashchan.R;
 import com.mishiranu.dashchan.content.async.HttpHolderTask;
 import com.mishiranu.dashchan.content.model.ErrorItem;
+import com.mishiranu.dashchan.util.BitmapPool;
 import com.mishiranu.dashchan.util.ConcurrentUtils;
 import com.mishiranu.dashchan.util.GraphicsUtils;
-import com.mishiranu.dashchan.util.LruCache;
+import com.mishiranu.dashchan.util.Logger;
+import com.mishiranu.dashchan.util.WeightedLruCache;
 import com.mishiranu.dashchan.widget.AttachmentView;
 import java.io.ByteArrayOutputStream;
 import java.net.HttpURLConnection;
@@ -39,7 +42,15 @@ public class ImageLoader {
 		return INSTANCE;
 	}
 
-	private ImageLoader() {}
+	private ImageLoader() {
+		MainApplication application = MainApplication.getInstance();
+		long maxBytes = application.getMemoryClass() * 1024L * 1024L / (application.isLowRam() ? 16 : 8);
+		bitmapCache = new WeightedLruCache<>(maxBytes, BitmapPool::getBitmapBytes);
+		bitmapPool = new BitmapPool(maxBytes / 8);
+	}
+
+	private final WeightedLruCache<String, Bitmap> bitmapCache;
+	private final BitmapPool bitmapPool;
 
 	private final HashMap<String, LoaderTask> loaderTasks = new HashMap<>();
 	private final HashMap<String, Long> notFoundMap = new HashMap<>();
@@ -67,6 +78,8 @@ public class ImageLoader {
 
 		public final HashSet<TaskCallback> callbacks = new HashSet<>();
 		private final long created = SystemClock.elapsedRealtime();
+		private final int thumbnailSize = GraphicsUtils
+				.getThumbnailSize(MainApplication.getInstance().getResources());
 
 		private boolean notFound;
 		private boolean finished;
@@ -108,8 +121,7 @@ public class ImageLoader {
 						if (!chan.configuration.readResourceUri(uri, output)) {
 							throw HttpException.createNotFoundException();
 						}
-						byte[] bytes = output.toByteArray();
-						bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+						bitmap = decodeThumbnail(output.toByteArray());
 					} else if (dataScheme) {
 						String data = uri.toString();
 						int index = data.indexOf("base64,");
@@ -117,7 +129,7 @@ public class ImageLoader {
 							data = data.substring(index + 7);
 							byte[] bytes = Base64.decode(data, Base64.DEFAULT);
 							if (bytes != null) {
-								bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+								bitmap = decodeThumbnail(bytes);
 							}
 						}
 					} else {
@@ -133,19 +145,25 @@ public class ImageLoader {
 						}
 						if (response != null) {
 							try {
-								bitmap = response.readBitmap();
+								bitmap = decodeThumbnail(response.readBytes());
 							} finally {
 								response.cleanupAndDisconnect();
 							}
 						}
-						if (bitmap == null) {
-							throw new HttpException(ErrorItem.Type.DOWNLOAD, false, false);
-						}
 					}
 					if (isCancelled()) {
+						bitmapPool.release(bitmap);
 						return null;
 					}
-					bitmap = GraphicsUtils.reduceThumbnailSize(MainApplication.getInstance().getResources(), bitmap);
+					if (bitmap == null) {
+						throw new HttpException(ErrorItem.Type.DOWNLOAD, false, false);
+					}
+					Bitmap reducedBitmap = GraphicsUtils.reduceBitmapSize(bitmap, thumbnailSize, false);
+					if (reducedBitmap != bitmap) {
+						// Decoded bitmap is not referenced anywhere else, so it can be reused
+						bitmapPool.release(bitmap);
+						bitmap = reducedBitmap;
+					}
 					if (storeExternal) {
 						CacheManager.getInstance().storeThumbnailExternal(key, bitmap);
 					}
@@ -162,6 +180,19 @@ public class ImageLoader {
 			return bitmap;
 		}
 
+		private Bitmap decodeThumbnail(byte[] bytes) {
+			BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inJustDecodeBounds = true;
+			BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+			if (options.outWidth <= 0 || options.outHeight <= 0) {
+				return null;
+			}
+			options.inJustDecodeBounds = false;
+			options.inSampleSize = GraphicsUtils.calculateSampleSize(options.outWidth,
+					options.outHeight, thumbnailSize);
+			return bitmapPool.decodeByteArray(bytes, options);
+		}
+
 		@Override
 		protected void onComplete(Bitmap bitmap) {
 			// Don't remove task but instead mark it as finished,
@@ -179,9 +210,6 @@ public class ImageLoader {
 		}
 	}
 
-	private final LruCache<String, Bitmap> bitmapCache =
-			new LruCache<>(MainApplication.getInstance().isLowRam() ? 50 : 200);
-
 	public static abstract class Target {
 		public String currentKey;
 
@@ -280,6 +308,22 @@ public class ImageLoader {
 		return wrapperTarget;
 	}
 
+	public void trimMemory(int level) {
+		Logger.write(Logger.Type.DEBUG, "ImageLoader memory cache:", bitmapCache.size(), "bitmaps",
+				bitmapCache.getWeight() + "/" + bitmapCache.getMaxWeight(), "bytes",
+				bitmapCache.getHitCount(), "hits", bitmapCache.getMissCount(), "misses",
+				bitmapCache.getEvictionCount(), "evictions", bitmapPool.getReuseCount(), "reused",
+				bitmapPool.getAllocateCount(), "allocated");
+		bitmapPool.clear();
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+			bitmapCache.clear();
+		} else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE ||
+				level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW ||
+				level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+			bitmapCache.trimToWeight(bitmapCache.getMaxWeight() / 2);
+		}
+	}
+
 	public boolean hasRunningTask(View view) {
 		WrapperTarget<?> wrapperTarget = getWrapperTarget(view, null);
 		if (wrapperTarget != null && wrapperTarget.currentKey != null) {
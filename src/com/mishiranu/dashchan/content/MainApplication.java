@@ -19,6 +19,7 @@ import com.mishiranu.dashchan.content.database.ChanDatabase;
 import com.mishiranu.dashchan.content.database.CommonDatabase;
 import com.mishiranu.dashchan.content.database.PagesDatabase;
 import com.mishiranu.dashchan.content.net.UserAgentProvider;
+import com.mishiranu.dashchan.util.ConcurrentUtils;
 import com.mishiranu.dashchan.util.IOUtils;
 import com.mishiranu.dashchan.util.Logger;
 import java.io.File;
@@ -71,7 +72,8 @@ public class MainApplication extends Application {
 			ChanManager.getInstance();
 			HttpClient.getInstance();
 			CommonDatabase.getInstance();
-			PagesDatabase.getInstance();
+			// Upgrade may copy all cached posts, so the database is opened in background
+			ConcurrentUtils.PARALLEL_EXECUTOR.execute(PagesDatabase::getInstance);
 			ChanDatabase.getInstance();
 			CacheManager.getInstance();
 			ChanManager.getInstance().loadLibraries();
@@ -87,6 +89,15 @@ public class MainApplication extends Application {
 		LocaleManager.getInstance().updateConfiguration(newConfig);
 	}
 
+	@Override
+	public void onTrimMemory(int level) {
+		super.onTrimMemory(level);
+		if (isMainProcess()) {
+			ImageLoader.getInstance().trimMemory(level);
+			HttpClient.getInstance().logConnectionStatistics();
+		}
+	}
+
 	public static MainApplication getInstance() {
 		return instance;
 	}
@@ -105,6 +116,12 @@ public class MainApplication extends Application {
 		}
 	}
 
+	public int getMemoryClass() {
+		ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+		int memoryClass = activityManager != null ? activityManager.getMemoryClass() : 0;
+		return memoryClass > 0 ? memoryClass : (int) (Runtime.getRuntime().maxMemory() / (1024 * 1024));
+	}
+
 	public File getSharedPrefsDir() {
 		return new File(getCacheDir().getParentFile(), "shared_prefs");
 	}
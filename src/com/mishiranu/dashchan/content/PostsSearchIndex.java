@@ -0,0 +1,242 @@
+package com.mishiranu.dashchan.content;
+
+import chan.content.Chan;
+import chan.util.StringUtils;
+import com.mishiranu.dashchan.content.model.AttachmentItem;
+import com.mishiranu.dashchan.content.model.Post;
+import com.mishiranu.dashchan.content.model.PostItem;
+import com.mishiranu.dashchan.content.model.PostNumber;
+import com.mishiranu.dashchan.text.HtmlParser;
+import com.mishiranu.dashchan.util.ConcurrentUtils;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+public class PostsSearchIndex {
+	private static final Executor EXECUTOR = ConcurrentUtils.newSingleThreadPool(20000, "PostsSearchIndex", null);
+
+	public interface Callback {
+		void onSearchComplete(List<PostNumber> postNumbers);
+	}
+
+	private static class Entry {
+		public final String comment;
+		public final String other;
+
+		public Entry(String comment, String other) {
+			this.comment = comment;
+			this.other = other;
+		}
+	}
+
+	private static class Source {
+		public final PostNumber postNumber;
+		public final Post post;
+		public final String boardName;
+		public final List<AttachmentItem> attachmentItems;
+
+		public Source(PostItem postItem) {
+			postNumber = postItem.getPostNumber();
+			post = postItem.getPost();
+			boardName = postItem.getBoardName();
+			attachmentItems = postItem.getAttachmentItems();
+		}
+	}
+
+	public static class Query {
+		private volatile boolean cancelled;
+
+		public void cancel() {
+			cancelled = true;
+		}
+	}
+
+	// Entries and words are accessed from executor thread only
+	private final HashMap<PostNumber, Entry> entries = new HashMap<>();
+	private final HashMap<String, HashSet<PostNumber>> commentWords = new HashMap<>();
+	private final HashMap<String, HashSet<PostNumber>> otherWords = new HashMap<>();
+
+	public void update(Chan chan, Collection<PostItem> changed, Collection<PostNumber> removed) {
+		if (changed.isEmpty() && removed.isEmpty()) {
+			return;
+		}
+		ArrayList<Source> sources = new ArrayList<>(changed.size());
+		for (PostItem postItem : changed) {
+			sources.add(new Source(postItem));
+		}
+		ArrayList<PostNumber> removedPostNumbers = new ArrayList<>(removed);
+		EXECUTOR.execute(() -> {
+			Locale locale = Locale.getDefault();
+			for (PostNumber postNumber : removedPostNumbers) {
+				removeEntry(postNumber);
+			}
+			for (Source source : sources) {
+				removeEntry(source.postNumber);
+				Entry entry = createEntry(chan, source, locale);
+				entries.put(source.postNumber, entry);
+				addWords(commentWords, entry.comment, source.postNumber, true);
+				addWords(otherWords, entry.other, source.postNumber, true);
+			}
+		});
+	}
+
+	public void clear() {
+		EXECUTOR.execute(() -> {
+			entries.clear();
+			commentWords.clear();
+			otherWords.clear();
+		});
+	}
+
+	public Query search(Iterable<String> included, Iterable<String> excluded, Callback callback) {
+		Query query = new Query();
+		ArrayList<String> includedList = new ArrayList<>();
+		for (String lowQuery : included) {
+			includedList.add(lowQuery);
+		}
+		ArrayList<String> excludedList = new ArrayList<>();
+		for (String lowQuery : excluded) {
+			excludedList.add(lowQuery);
+		}
+		EXECUTOR.execute(() -> {
+			if (query.cancelled) {
+				return;
+			}
+			HashSet<PostNumber> found;
+			if (!includedList.isEmpty()) {
+				found = new HashSet<>();
+				for (String lowQuery : includedList) {
+					find(found, lowQuery, true);
+					find(found, lowQuery, false);
+				}
+			} else {
+				found = new HashSet<>(entries.keySet());
+			}
+			if (!found.isEmpty()) {
+				HashSet<PostNumber> exclude = new HashSet<>();
+				for (String lowQuery : excludedList) {
+					find(exclude, lowQuery, true);
+				}
+				found.removeAll(exclude);
+			}
+			ArrayList<PostNumber> postNumbers = new ArrayList<>(found);
+			Collections.sort(postNumbers);
+			ConcurrentUtils.HANDLER.post(() -> {
+				if (!query.cancelled) {
+					callback.onSearchComplete(postNumbers);
+				}
+			});
+		});
+		return query;
+	}
+
+	private void find(HashSet<PostNumber> result, String lowQuery, boolean comment) {
+		if (isWord(lowQuery)) {
+			// Word query can't cross word boundaries, so it's enough to check the indexed words only
+			for (Map.Entry<String, HashSet<PostNumber>> word : (comment ? commentWords : otherWords).entrySet()) {
+				if (word.getKey().contains(lowQuery)) {
+					result.addAll(word.getValue());
+				}
+			}
+		} else {
+			for (Map.Entry<PostNumber, Entry> entry : entries.entrySet()) {
+				Entry value = entry.getValue();
+				if ((comment ? value.comment : value.other).contains(lowQuery)) {
+					result.add(entry.getKey());
+				}
+			}
+		}
+	}
+
+	private void removeEntry(PostNumber postNumber) {
+		Entry entry = entries.remove(postNumber);
+		if (entry != null) {
+			addWords(commentWords, entry.comment, postNumber, false);
+			addWords(otherWords, entry.other, postNumber, false);
+		}
+	}
+
+	private static Entry createEntry(Chan chan, Source source, Locale locale) {
+		Post post = source.post;
+		String comment = StringUtils.isEmpty(post.comment) ? "" : HtmlParser.clear(post.comment);
+		StringBuilder other = new StringBuilder();
+		if (!StringUtils.isEmpty(post.subject)) {
+			other.append(post.subject).append('\n');
+		}
+		String name = post.name;
+		if (StringUtils.isEmptyOrWhitespace(name)) {
+			name = chan.configuration.getDefaultName(source.boardName);
+			if (StringUtils.isEmptyOrWhitespace(name)) {
+				name = "Anonymous";
+			}
+		}
+		other.append(name.trim()).append('\n');
+		if (!StringUtils.isEmptyOrWhitespace(post.identifier)) {
+			other.append(post.identifier).append('\n');
+		}
+		if (!StringUtils.isEmptyOrWhitespace(post.tripcode)) {
+			other.append(post.tripcode).append('\n');
+		}
+		if (!StringUtils.isEmptyOrWhitespace(post.capcode)) {
+			other.append("## ").append(post.capcode).append('\n');
+		}
+		if (source.attachmentItems != null) {
+			for (AttachmentItem attachmentItem : source.attachmentItems) {
+				String fileName = attachmentItem.getFileName(chan);
+				if (!StringUtils.isEmpty(fileName)) {
+					other.append(fileName).append('\n');
+					String originalName = attachmentItem.getOriginalName();
+					if (!StringUtils.isEmpty(originalName)) {
+						other.append(originalName).append('\n');
+					}
+				}
+			}
+		}
+		return new Entry(comment.toLowerCase(locale), other.toString().toLowerCase(locale));
+	}
+
+	private static boolean isWord(String lowQuery) {
+		if (lowQuery.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < lowQuery.length(); i++) {
+			if (!Character.isLetterOrDigit(lowQuery.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void addWords(HashMap<String, HashSet<PostNumber>> words, String text,
+			PostNumber postNumber, boolean add) {
+		int start = -1;
+		for (int i = 0, length = text.length(); i <= length; i++) {
+			boolean letterOrDigit = i < length && Character.isLetterOrDigit(text.charAt(i));
+			if (letterOrDigit && start < 0) {
+				start = i;
+			} else if (!letterOrDigit && start >= 0) {
+				String word = text.substring(start, i);
+				start = -1;
+				HashSet<PostNumber> postNumbers = words.get(word);
+				if (add) {
+					if (postNumbers == null) {
+						postNumbers = new HashSet<>(1);
+						words.put(word, postNumbers);
+					}
+					postNumbers.add(postNumber);
+				} else if (postNumbers != null) {
+					postNumbers.remove(postNumber);
+					if (postNumbers.isEmpty()) {
+						words.remove(word);
+					}
+				}
+			}
+		}
+	}
+}
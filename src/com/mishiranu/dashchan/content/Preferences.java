@@ -550,6 +550,13 @@ public class Preferences {
 		return PREFERENCES.getBoolean(KEY_DOWNLOAD_ORIGINAL_NAME, DEFAULT_DOWNLOAD_ORIGINAL_NAME);
 	}
 
+	public static final String KEY_DOWNLOAD_SEGMENTED = "download_segmented";
+	public static final boolean DEFAULT_DOWNLOAD_SEGMENTED = false;
+
+	public static boolean isDownloadSegmented() {
+		return PREFERENCES.getBoolean(KEY_DOWNLOAD_SEGMENTED, DEFAULT_DOWNLOAD_SEGMENTED);
+	}
+
 	public static final String KEY_DOWNLOAD_PATH = "download_path";
 
 	private static String getDownloadPathLegacy() {
@@ -1371,6 +1378,19 @@ public class Preferences {
 				: value < MIN_WATCHER_REFRESH_INTERVAL ? DISABLED_WATCHER_REFRESH_INTERVAL : value;
 	}
 
+	public static final String KEY_WATCHER_MAX_REFRESH_INTERVAL = "watcher_max_refresh_interval";
+	public static final int DISABLED_WATCHER_MAX_REFRESH_INTERVAL = 0;
+	public static final int MIN_WATCHER_MAX_REFRESH_INTERVAL = 5;
+	public static final int MAX_WATCHER_MAX_REFRESH_INTERVAL = 120;
+	public static final int STEP_WATCHER_MAX_REFRESH_INTERVAL = 5;
+	public static final int DEFAULT_WATCHER_MAX_REFRESH_INTERVAL = 30;
+
+	public static int getWatcherMaxRefreshInterval() {
+		int value = PREFERENCES.getInt(KEY_WATCHER_MAX_REFRESH_INTERVAL, DEFAULT_WATCHER_MAX_REFRESH_INTERVAL);
+		return value > MAX_WATCHER_MAX_REFRESH_INTERVAL ? MAX_WATCHER_MAX_REFRESH_INTERVAL
+				: value < MIN_WATCHER_MAX_REFRESH_INTERVAL ? DISABLED_WATCHER_MAX_REFRESH_INTERVAL : value;
+	}
+
 	static {
 		if (PREFERENCES != null) {
 			String key = "watcher_refresh_periodically";
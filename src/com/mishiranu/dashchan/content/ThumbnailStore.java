@@ -0,0 +1,331 @@
+package com.mishiranu.dashchan.content;
+
+import com.mishiranu.dashchan.util.IOUtils;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+class ThumbnailStore {
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final long MAX_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+	private static final int RECORD_MAGIC = 0x54484d42;
+	// Removal and access marks have no data, they are applied to the preceding record with the same key
+	private static final int REMOVE_MAGIC = 0x54484d52;
+	private static final int ACCESS_MAGIC = 0x54484d41;
+	private static final int RECORD_HEADER_SIZE = 10;
+	private static final int MAX_KEY_LENGTH = 1024;
+	private static final int MAX_DATA_LENGTH = (int) MAX_SEGMENT_SIZE;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static class Segment {
+		public final int id;
+		public final File file;
+		public long length;
+
+		public MappedByteBuffer buffer;
+
+		public Segment(int id, File file) {
+			this.id = id;
+			this.file = file;
+		}
+	}
+
+	private static class Entry {
+		public final Segment segment;
+		public final long offset;
+		public final int length;
+
+		public boolean accessed;
+
+		public Entry(Segment segment, long offset, int length) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	// Entries are ordered from the oldest written to the newest written
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+	private final ArrayList<Segment> segments = new ArrayList<>();
+
+	private File directory;
+	private RandomAccessFile activeFile;
+	private long size;
+
+	public synchronized void open(File directory) {
+		close();
+		entries.clear();
+		segments.clear();
+		size = 0;
+		this.directory = directory;
+		if (directory == null) {
+			return;
+		}
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				int id = getSegmentId(file.getName());
+				if (id >= 0) {
+					segments.add(new Segment(id, file));
+				} else {
+					// Thumbnails from previous versions were stored as separate files
+					file.delete();
+				}
+			}
+		}
+		Collections.sort(segments, (lhs, rhs) -> Integer.compare(lhs.id, rhs.id));
+		for (Segment segment : segments) {
+			readSegment(segment);
+			size += segment.length;
+		}
+	}
+
+	private static int getSegmentId(String name) {
+		if (name.startsWith(SEGMENT_PREFIX)) {
+			try {
+				return Integer.parseInt(name.substring(SEGMENT_PREFIX.length()));
+			} catch (NumberFormatException e) {
+				// Not a segment
+			}
+		}
+		return -1;
+	}
+
+	private void readSegment(Segment segment) {
+		long offset = 0;
+		long fileLength = segment.file.length();
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(segment.file)))) {
+			while (offset < fileLength) {
+				int magic = input.readInt();
+				if (magic != RECORD_MAGIC && magic != REMOVE_MAGIC && magic != ACCESS_MAGIC) {
+					break;
+				}
+				int keyLength = input.readUnsignedShort();
+				int dataLength = input.readInt();
+				if (keyLength > MAX_KEY_LENGTH || dataLength < 0 || dataLength > MAX_DATA_LENGTH ||
+						magic != RECORD_MAGIC && dataLength != 0) {
+					break;
+				}
+				long recordLength = RECORD_HEADER_SIZE + keyLength + dataLength;
+				if (offset + recordLength > fileLength) {
+					break;
+				}
+				byte[] keyBytes = new byte[keyLength];
+				input.readFully(keyBytes);
+				if (!IOUtils.skipExactlyCheck(input, dataLength)) {
+					break;
+				}
+				String key = new String(keyBytes, UTF_8);
+				if (magic == REMOVE_MAGIC) {
+					entries.remove(key);
+				} else if (magic == ACCESS_MAGIC) {
+					Entry entry = entries.get(key);
+					if (entry != null) {
+						entry.accessed = true;
+					}
+				} else {
+					entries.remove(key);
+					entries.put(key, new Entry(segment, offset + RECORD_HEADER_SIZE + keyLength, dataLength));
+				}
+				offset += recordLength;
+			}
+		} catch (EOFException e) {
+			// Truncated record
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		segment.length = offset;
+		if (offset < fileLength) {
+			// Drop the broken tail, so new records can be appended
+			try (RandomAccessFile file = new RandomAccessFile(segment.file, "rw")) {
+				file.setLength(offset);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized byte[] read(String key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		try {
+			byte[] data = new byte[entry.length];
+			Segment segment = entry.segment;
+			if (segment == getActiveSegment()) {
+				activeFile.seek(entry.offset);
+				activeFile.readFully(data);
+			} else {
+				// Segments are never modified after they are sealed, so they can be mapped once
+				if (segment.buffer == null) {
+					try (RandomAccessFile file = new RandomAccessFile(segment.file, "r")) {
+						segment.buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, segment.length);
+					}
+				}
+				ByteBuffer buffer = segment.buffer.duplicate();
+				buffer.position((int) entry.offset);
+				buffer.get(data);
+			}
+			if (!entry.accessed) {
+				entry.accessed = true;
+				// Keep the access bit, so eviction order survives restarts
+				appendRecord(ACCESS_MAGIC, key.getBytes(UTF_8), null);
+			}
+			return data;
+		} catch (IOException | RuntimeException e) {
+			e.printStackTrace();
+			entries.remove(key);
+			return null;
+		}
+	}
+
+	public synchronized boolean write(String key, byte[] data) {
+		if (directory == null) {
+			return false;
+		}
+		byte[] keyBytes = key.getBytes(UTF_8);
+		if (keyBytes.length > MAX_KEY_LENGTH || data.length > MAX_DATA_LENGTH) {
+			return false;
+		}
+		Entry entry = appendRecord(RECORD_MAGIC, keyBytes, data);
+		if (entry == null) {
+			return false;
+		}
+		entries.remove(key);
+		entries.put(key, entry);
+		return true;
+	}
+
+	public synchronized void remove(String key) {
+		if (entries.remove(key) != null && directory != null) {
+			// Sealed segments are immutable, so the removal is recorded in the active one
+			appendRecord(REMOVE_MAGIC, key.getBytes(UTF_8), null);
+		}
+	}
+
+	private Entry appendRecord(int magic, byte[] keyBytes, byte[] data) {
+		int dataLength = data != null ? data.length : 0;
+		long recordLength = RECORD_HEADER_SIZE + keyBytes.length + dataLength;
+		try {
+			Segment segment = getActiveSegment();
+			if (segment == null || segment.length > 0 && segment.length + recordLength > MAX_SEGMENT_SIZE) {
+				segment = createSegment();
+			}
+			ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+			header.putInt(magic);
+			header.putShort((short) keyBytes.length);
+			header.putInt(dataLength);
+			activeFile.seek(segment.length);
+			activeFile.write(header.array());
+			activeFile.write(keyBytes);
+			if (data != null) {
+				activeFile.write(data);
+			}
+			Entry entry = new Entry(segment, segment.length + RECORD_HEADER_SIZE + keyBytes.length, dataLength);
+			segment.length += recordLength;
+			size += recordLength;
+			return entry;
+		} catch (IOException e) {
+			e.printStackTrace();
+			closeActiveFile();
+			return null;
+		}
+	}
+
+	private Segment getActiveSegment() throws IOException {
+		if (segments.isEmpty()) {
+			return null;
+		}
+		Segment segment = segments.get(segments.size() - 1);
+		if (activeFile == null) {
+			activeFile = new RandomAccessFile(segment.file, "rw");
+			segment.buffer = null;
+		}
+		return segment;
+	}
+
+	private Segment createSegment() throws IOException {
+		closeActiveFile();
+		int id = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).id + 1;
+		Segment segment = new Segment(id, new File(directory, SEGMENT_PREFIX + id));
+		activeFile = new RandomAccessFile(segment.file, "rw");
+		activeFile.setLength(0);
+		segments.add(segment);
+		return segment;
+	}
+
+	// Space is reclaimed by dropping the oldest segments,
+	// thumbnails which were read since they were written are moved to the active segment
+	public synchronized void trim(long maxSize) {
+		int count = segments.size() - 1;
+		while (size > maxSize && count-- > 0) {
+			Segment segment = segments.get(0);
+			ArrayList<String> moveKeys = new ArrayList<>();
+			Iterator<LinkedHashMap.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+			while (iterator.hasNext()) {
+				LinkedHashMap.Entry<String, Entry> mapEntry = iterator.next();
+				Entry entry = mapEntry.getValue();
+				if (entry.segment == segment) {
+					if (entry.accessed) {
+						moveKeys.add(mapEntry.getKey());
+					} else {
+						iterator.remove();
+					}
+				}
+			}
+			for (String key : moveKeys) {
+				byte[] data = read(key);
+				entries.remove(key);
+				if (data != null) {
+					write(key, data);
+				}
+			}
+			segments.remove(0);
+			segment.buffer = null;
+			segment.file.delete();
+			size -= segment.length;
+		}
+	}
+
+	public synchronized void erase() {
+		close();
+		for (Segment segment : segments) {
+			segment.file.delete();
+		}
+		segments.clear();
+		entries.clear();
+		size = 0;
+	}
+
+	private void closeActiveFile() {
+		IOUtils.close(activeFile);
+		activeFile = null;
+	}
+
+	private void close() {
+		closeActiveFile();
+		for (Segment segment : segments) {
+			segment.buffer = null;
+		}
+	}
+}
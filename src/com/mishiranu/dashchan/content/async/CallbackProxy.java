@@ -18,6 +18,10 @@ public class CallbackProxy<Callback> {
 		this.args = args;
 	}
 
+	public String getMethodName() {
+		return method.getName();
+	}
+
 	public void invoke(Callback callback) {
 		try {
 			method.invoke(callback, args);
@@ -38,6 +38,7 @@ public abstract class ExecutorTask<Progress, Result> {
 		}
 
 		public void handle() {
+			task.finished = true;
 			if (task.isCancelled()) {
 				task.onCancel(result);
 			} else {
@@ -67,6 +68,7 @@ public abstract class ExecutorTask<Progress, Result> {
 	private final AtomicBoolean executed = new AtomicBoolean(false);
 	private final AtomicBoolean cancelled = new AtomicBoolean(false);
 	private final AtomicBoolean started = new AtomicBoolean(false);
+	private boolean finished = false;
 
 	private static final class Worker<Result> implements Callable<Result> {
 		private final ExecutorTask<?, Result> task;
@@ -154,6 +156,11 @@ public abstract class ExecutorTask<Progress, Result> {
 		return cancelled.get();
 	}
 
+	public boolean isFinished() {
+		// Accessed from main thread only
+		return finished;
+	}
+
 	protected void onPrepare() {}
 	protected abstract Result run() throws InterruptedException;
 	protected void onProgress(Progress progress) {}
@@ -3,6 +3,7 @@ package com.mishiranu.dashchan.content.async;
 import android.net.Uri;
 import android.os.CancellationSignal;
 import android.os.OperationCanceledException;
+import android.util.Pair;
 import chan.content.Chan;
 import chan.content.ChanConfiguration;
 import chan.content.model.Vote;
@@ -17,11 +18,16 @@ import com.mishiranu.dashchan.content.model.PostNumber;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class ExtractPostsTask extends ExecutorTask<Void, ExtractPostsTask.Result> {
+public class ExtractPostsTask extends ExecutorTask<ExtractPostsTask.Result, ExtractPostsTask.Result> {
+	private static final int PARTIAL_MIN_COUNT = 500;
+	private static final int PARTIAL_WINDOW_SIZE = 100;
+
 	public interface Callback {
+		void onExtractPostsPartial(Result result);
 		void onExtractPostsComplete(Result result, boolean cancelled);
 	}
 
@@ -67,17 +73,20 @@ public class ExtractPostsTask extends ExecutorTask<Void, ExtractPostsTask.Result
 	private final String boardName;
 	private final String threadNumber;
 	private final boolean extractStateExtra;
+	private final PostNumber positionPostNumber;
 	private final PagesDatabase.Cleanup cleanup;
 	private final CancellationSignal signal = new CancellationSignal();
 
 	public ExtractPostsTask(Callback callback, PagesDatabase.Cache cache, Chan chan,
-			String boardName, String threadNumber, boolean extractStateExtra, PagesDatabase.Cleanup cleanup) {
+			String boardName, String threadNumber, boolean extractStateExtra, PostNumber positionPostNumber,
+			PagesDatabase.Cleanup cleanup) {
 		this.callback = callback;
 		this.cache = cache;
 		this.chan = chan;
 		this.boardName = boardName;
 		this.threadNumber = threadNumber;
 		this.extractStateExtra = extractStateExtra;
+		this.positionPostNumber = positionPostNumber;
 		this.cleanup = cleanup;
 	}
 
@@ -108,12 +117,49 @@ public class ExtractPostsTask extends ExecutorTask<Void, ExtractPostsTask.Result
 			meta = PagesDatabase.getInstance().getMeta(threadKey, temporary);
 			flags = CommonDatabase.getInstance().getPosts().getFlags(chan.name, boardName, threadNumber);
 			cacheChanged = true;
-			postItems = new HashMap<>(diff.changed.size());
 			removedPosts = diff.removed;
+			List<PostNumber> changed = diff.changed;
 			PostNumber originalPostNumber = diff.cache.originalPostNumber;
-			for (Post post : diff.changed) {
-				postItems.put(post.number, PostItem.createPost(post, chan,
-						boardName, threadNumber, originalPostNumber));
+			try {
+				Map<PostNumber, PostItem> partialPostItems = Collections.emptyMap();
+				if (cache == null && changed.size() >= PARTIAL_MIN_COUNT) {
+					// Build posts around the saved position first, so the thread can be shown
+					// before the rest of posts are deserialized
+					PostNumber positionPostNumber = this.positionPostNumber;
+					if (positionPostNumber == null && stateExtra != null) {
+						Pair<PostNumber, Integer> position = stateExtra.decodePosition();
+						positionPostNumber = position != null ? position.first : null;
+					}
+					int index = positionPostNumber != null ? Collections.binarySearch(changed, positionPostNumber) : 0;
+					if (index < 0) {
+						index = -index - 1;
+					}
+					int start = Math.max(0, Math.min(index - PARTIAL_WINDOW_SIZE / 4,
+							changed.size() - PARTIAL_WINDOW_SIZE));
+					int end = start + PARTIAL_WINDOW_SIZE;
+					partialPostItems = new HashMap<>(PARTIAL_WINDOW_SIZE + 1);
+					// Original post is always required by adapter
+					createPostItem(partialPostItems, diff, 0, originalPostNumber);
+					for (int i = Math.max(start, 1); i < end; i++) {
+						createPostItem(partialPostItems, diff, i, originalPostNumber);
+					}
+					if (isCancelled()) {
+						return null;
+					}
+					notifyProgress(new Result(diff.newPosts, diff.deletedPosts, diff.editedPosts, diff.replyPosts,
+							diff.cache, true, partialPostItems, Collections.emptyList(), flags, stateExtra,
+							meta != null ? meta.archivedThreadUri : null, meta != null ? meta.uniquePosters : 0));
+				}
+				postItems = new HashMap<>(changed.size());
+				postItems.putAll(partialPostItems);
+				for (int i = 0; i < changed.size(); i++) {
+					if (!partialPostItems.containsKey(changed.get(i))) {
+						createPostItem(postItems, diff, i, originalPostNumber);
+					}
+				}
+			} catch (ParseException e) {
+				e.printStackTrace();
+				return null;
 			}
 		}
 		return new Result(diff.newPosts, diff.deletedPosts, diff.editedPosts, diff.replyPosts,
@@ -121,6 +167,17 @@ public class ExtractPostsTask extends ExecutorTask<Void, ExtractPostsTask.Result
 				meta != null ? meta.archivedThreadUri : null, meta != null ? meta.uniquePosters : 0);
 	}
 
+	private void createPostItem(Map<PostNumber, PostItem> postItems, PagesDatabase.Diff diff,
+			int index, PostNumber originalPostNumber) throws ParseException {
+		Post post = diff.deserialize(index);
+		postItems.put(post.number, PostItem.createPost(post, chan, boardName, threadNumber, originalPostNumber));
+	}
+
+	@Override
+	protected void onProgress(Result result) {
+		callback.onExtractPostsPartial(result);
+	}
+
 	@Override
 	protected void onCancel(Result result) {
 		if (result != null) {
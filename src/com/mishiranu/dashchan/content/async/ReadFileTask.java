@@ -11,27 +11,52 @@ import chan.content.InvalidResponseException;
 import chan.http.HttpException;
 import chan.http.HttpHolder;
 import chan.http.HttpResponse;
+import chan.http.HttpValidator;
 import chan.util.DataFile;
+import chan.util.StringUtils;
+import com.mishiranu.dashchan.content.AdvancedPreferences;
 import com.mishiranu.dashchan.content.CacheManager;
+import com.mishiranu.dashchan.content.Preferences;
 import com.mishiranu.dashchan.content.model.ErrorItem;
+import com.mishiranu.dashchan.util.ConcurrentUtils;
+import com.mishiranu.dashchan.util.IOUtils;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class ReadFileTask extends HttpHolderTask<long[], Boolean> {
 	private static final int CONNECT_TIMEOUT = 15000;
 	private static final int READ_TIMEOUT = 15000;
 
+	private static final Pattern PATTERN_BYTES = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+	private static final Pattern PATTERN_BYTES_UNSATISFIED = Pattern.compile("bytes \\*/(\\d+)");
+	private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+	private static final int MAX_ATTEMPTS = 3;
+	private static final int SEGMENTS_COUNT = 3;
+	private static final long SEGMENTED_MIN_LENGTH = 4 * 1024 * 1024;
+	private static final Executor SEGMENTS_EXECUTOR = ConcurrentUtils.newThreadPool(0, 6, 10000,
+			"ReadFileTaskSegment", null);
+
 	public interface Callback {
 		void onStartDownloading();
 		void onFinishDownloading(boolean success, Uri uri, DataFile file, ErrorItem errorItem);
 		default void onCancelDownloading() {}
+		default void onCancelComplete() {}
 		void onUpdateProgress(long progress, long progressMax);
 	}
 
@@ -60,6 +85,11 @@ public class ReadFileTask extends HttpHolderTask<long[], Boolean> {
 	private ErrorItem errorItem;
 
 	private boolean loadingStarted;
+	private File partialFile;
+
+	private final ArrayList<HttpHolder> segmentHolders = new ArrayList<>();
+	private final Object progressLock = new Object();
+	private long progress;
 
 	private final TimedProgressHandler progressHandler = new TimedProgressHandler() {
 		@Override
@@ -109,9 +139,13 @@ public class ReadFileTask extends HttpHolderTask<long[], Boolean> {
 		int count;
 		long read = 0;
 		while ((count = input.read(data)) != -1) {
-			output.write(data, 0, count);
+			if (output != null) {
+				output.write(data, 0, count);
+			}
 			read += count;
-			progressHandler.updateProgress(read);
+			if (progressHandler != null) {
+				progressHandler.updateProgress(read);
+			}
 			if (digest != null) {
 				digest.update(data, 0, count);
 			}
@@ -155,28 +189,31 @@ public class ReadFileTask extends HttpHolderTask<long[], Boolean> {
 					return false;
 				}
 			} else {
-				ChanPerformer.ReadContentResult result = chan.performer.safe()
-						.onReadContent(new ChanPerformer.ReadContentData(fromUri,
-								CONNECT_TIMEOUT, READ_TIMEOUT, holder, -1, -1));
-				HttpResponse response = result != null ? result.response : null;
-				if (response == null) {
-					errorItem = new ErrorItem(ErrorItem.Type.DOWNLOAD);
+				String destination = toFile.getTarget() + ":" + toFile.getRelativePath();
+				File singlePartialFile = CacheManager.getInstance()
+						.getPartialDownloadFile(fromUri, destination, false);
+				File segmentedPartialFile = CacheManager.getInstance()
+						.getPartialDownloadFile(fromUri, destination, true);
+				if (singlePartialFile == null || segmentedPartialFile == null) {
+					errorItem = new ErrorItem(ErrorItem.Type.NO_ACCESS_TO_MEMORY);
 					return false;
 				}
-				progressHandler.setInputProgressMax(response.getLength());
-				try (InputStream input = response.open();
-						OutputStream output = toFile.openOutputStream()) {
-					copyStream(input, output, progressHandler, digest);
+				// Segments are written at different offsets, so such file may have holes and can't be resumed
+				deletePartialFile(segmentedPartialFile);
+				boolean segmented = singlePartialFile.length() == 0 && Preferences.isDownloadSegmented() &&
+						!AdvancedPreferences.isSingleConnection(chan.name) &&
+						chan.locator.isVideoExtension(fromUri.getPath());
+				partialFile = segmented ? segmentedPartialFile : singlePartialFile;
+				errorItem = downloadPartialFile(holder, partialFile, segmented);
+				if (errorItem != null) {
+					return false;
+				}
+				try {
+					completePartialFile(partialFile, digest);
 				} catch (IOException e) {
-					ErrorItem.Type errorType = getErrorTypeFromExceptionAndHandle(e);
-					if (errorType != null) {
-						errorItem = new ErrorItem(errorType);
-						return false;
-					} else {
-						throw response.fail(e);
-					}
-				} finally {
-					response.cleanupAndDisconnect();
+					ErrorItem.Type type = getErrorTypeFromExceptionAndHandle(e);
+					errorItem = new ErrorItem(type != null ? type : ErrorItem.Type.UNKNOWN);
+					return false;
 				}
 			}
 			if (digest != null) {
@@ -228,6 +265,350 @@ public class ReadFileTask extends HttpHolderTask<long[], Boolean> {
 		}
 	}
 
+	private static class Segment {
+		public final long start;
+		public final boolean range;
+
+		public volatile long end;
+		public long position;
+		public String rangeValidator;
+
+		public Segment(long start, long end, boolean range) {
+			this.start = start;
+			this.end = end;
+			this.range = range;
+			position = start;
+		}
+	}
+
+	private interface SegmentListener {
+		void onSegmentOpen(long total, boolean partial, String rangeValidator);
+	}
+
+	private ErrorItem downloadPartialFile(HttpHolder holder, File partialFile, boolean segmented)
+			throws ExtensionException, HttpException, InvalidResponseException {
+		// Resume previously interrupted download if partial file exists
+		long start = partialFile.length();
+		String rangeValidator = null;
+		if (start > 0) {
+			rangeValidator = readRangeValidator(partialFile);
+			if (rangeValidator == null) {
+				// Remote file might be changed, and there is no way to check it
+				deletePartialFile(partialFile);
+				start = 0;
+			}
+		}
+		Segment segment = new Segment(start, -1, start > 0 || segmented);
+		segment.rangeValidator = rangeValidator;
+		synchronized (progressLock) {
+			progress = start;
+		}
+		ErrorItem[] segmentErrorItems = new ErrorItem[SEGMENTS_COUNT];
+		CountDownLatch[] latch = {null};
+		long[] length = {-1};
+		SegmentListener listener = (total, partial, responseRangeValidator) -> {
+			length[0] = total;
+			if (!segmented && responseRangeValidator != null) {
+				writeRangeValidator(partialFile, responseRangeValidator);
+			}
+			synchronized (progressLock) {
+				progressHandler.setInputProgressMax(total);
+			}
+			if (segmented && partial && total >= SEGMENTED_MIN_LENGTH) {
+				long size = total / SEGMENTS_COUNT;
+				segment.end = size;
+				latch[0] = new CountDownLatch(SEGMENTS_COUNT - 1);
+				for (int i = 1; i < SEGMENTS_COUNT; i++) {
+					int index = i;
+					long end = i == SEGMENTS_COUNT - 1 ? total : size * (i + 1);
+					Segment nextSegment = new Segment(size * i, end, true);
+					nextSegment.rangeValidator = segment.rangeValidator;
+					HttpHolder segmentHolder = new HttpHolder(chan);
+					synchronized (segmentHolders) {
+						segmentHolders.add(segmentHolder);
+					}
+					if (isCancelled()) {
+						segmentHolder.interrupt();
+					}
+					SEGMENTS_EXECUTOR.execute(() -> {
+						ErrorItem errorItem;
+						try (HttpHolder.Use ignored = segmentHolder.use()) {
+							errorItem = readSegment(segmentHolder, partialFile, nextSegment, null);
+						} catch (ExtensionException | HttpException | InvalidResponseException e) {
+							errorItem = e.getErrorItemAndHandle();
+						}
+						segmentErrorItems[index] = errorItem;
+						latch[0].countDown();
+					});
+				}
+			}
+		};
+		ErrorItem errorItem;
+		try {
+			errorItem = readSegment(holder, partialFile, segment, listener);
+		} catch (ExtensionException | HttpException | InvalidResponseException e) {
+			if (latch[0] != null) {
+				interruptSegments();
+				awaitSegments(latch[0]);
+				deletePartialFile(partialFile);
+			}
+			throw e;
+		}
+		if (latch[0] != null) {
+			if (errorItem != null) {
+				interruptSegments();
+			}
+			if (!awaitSegments(latch[0])) {
+				deletePartialFile(partialFile);
+				return new ErrorItem(ErrorItem.Type.UNKNOWN);
+			}
+			for (ErrorItem segmentErrorItem : segmentErrorItems) {
+				if (errorItem == null && segmentErrorItem != null) {
+					errorItem = segmentErrorItem;
+				}
+			}
+			if (errorItem != null) {
+				// Segments can't be resumed as the file is not contiguous
+				deletePartialFile(partialFile);
+			}
+		}
+		if (errorItem == null && length[0] > 0 && partialFile.length() != length[0]) {
+			Log.e("ReadFileTask", "Invalid file length: expected " + length[0] + ", got " + partialFile.length());
+			if (partialFile.length() > length[0]) {
+				deletePartialFile(partialFile);
+			}
+			errorItem = new ErrorItem(ErrorItem.Type.DOWNLOAD);
+		}
+		return errorItem;
+	}
+
+	private boolean awaitSegments(CountDownLatch latch) {
+		try {
+			latch.await();
+			return true;
+		} catch (InterruptedException e) {
+			interruptSegments();
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private void interruptSegments() {
+		synchronized (segmentHolders) {
+			for (HttpHolder segmentHolder : segmentHolders) {
+				segmentHolder.interrupt();
+			}
+		}
+	}
+
+	private static String getRangeValidator(HttpResponse response) {
+		// Weak entity tags can't be used with If-Range
+		HttpValidator validator = response.getValidator();
+		String entityTag = validator != null ? validator.getEntityTag() : null;
+		if (!StringUtils.isEmpty(entityTag) && !entityTag.startsWith("W/")) {
+			return entityTag;
+		}
+		String lastModified = validator != null ? validator.getLastModified() : null;
+		return StringUtils.emptyIfNull(lastModified);
+	}
+
+	private static File getRangeValidatorFile(File partialFile) {
+		return new File(partialFile.getParentFile(), partialFile.getName() + ".validator");
+	}
+
+	// Returns empty string if the server provided no validator, or null if the validator is unknown
+	private static String readRangeValidator(File partialFile) {
+		File file = getRangeValidatorFile(partialFile);
+		if (!file.exists()) {
+			return null;
+		}
+		try (FileInputStream input = new FileInputStream(file)) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			IOUtils.copyStream(input, output);
+			return new String(output.toByteArray(), "UTF-8");
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static void writeRangeValidator(File partialFile, String rangeValidator) {
+		File file = getRangeValidatorFile(partialFile);
+		try (FileOutputStream output = new FileOutputStream(file)) {
+			output.write(rangeValidator.getBytes("UTF-8"));
+		} catch (IOException e) {
+			file.delete();
+		}
+	}
+
+	private static void deletePartialFile(File partialFile) {
+		partialFile.delete();
+		getRangeValidatorFile(partialFile).delete();
+	}
+
+	@SuppressWarnings("deprecation")
+	private static long getUnsatisfiedRangeTotal(HttpHolder holder) {
+		List<String> headers = holder.getHeaderFields().get("Content-Range");
+		if (headers != null && headers.size() == 1) {
+			Matcher matcher = PATTERN_BYTES_UNSATISFIED.matcher(headers.get(0));
+			if (matcher.matches()) {
+				try {
+					return Long.parseLong(matcher.group(1));
+				} catch (NumberFormatException e) {
+					// Ignore
+				}
+			}
+		}
+		return -1;
+	}
+
+	private ErrorItem readSegment(HttpHolder holder, File partialFile, Segment segment, SegmentListener listener)
+			throws ExtensionException, HttpException, InvalidResponseException {
+		int attempt = 0;
+		while (true) {
+			long rangeStart = segment.range || segment.position > 0 ? segment.position : -1;
+			long rangeEnd = segment.end >= 0 ? segment.end - 1 : -1;
+			ChanPerformer.ReadContentResult result;
+			try {
+				result = chan.performer.safe().onReadContent(new ChanPerformer.ReadContentData(fromUri,
+						CONNECT_TIMEOUT, READ_TIMEOUT, holder, rangeStart, rangeEnd,
+						StringUtils.nullIfEmpty(segment.rangeValidator)));
+			} catch (HttpException e) {
+				if (e.getResponseCode() == HTTP_RANGE_NOT_SATISFIABLE && rangeStart > 0 && segment.end < 0) {
+					// Single stream partial file is already complete if the server reports the same total length,
+					// If-Range guarantees the remote file is not changed
+					long total = getUnsatisfiedRangeTotal(holder);
+					if (total == rangeStart) {
+						if (listener != null) {
+							listener.onSegmentOpen(total, false, null);
+						}
+						return null;
+					}
+				}
+				throw e;
+			}
+			HttpResponse response = result != null ? result.response : null;
+			if (response == null) {
+				return new ErrorItem(ErrorItem.Type.DOWNLOAD);
+			}
+			boolean truncate = false;
+			boolean opened = false;
+			try {
+				long total = response.getLength();
+				boolean partial = false;
+				List<String> headers = response.getHeaderFields().get("Content-Range");
+				if (headers != null && headers.size() == 1) {
+					Matcher matcher = PATTERN_BYTES.matcher(headers.get(0));
+					if (matcher.matches()) {
+						long responseStart = Long.parseLong(matcher.group(1));
+						if (responseStart != Math.max(rangeStart, 0)) {
+							Log.e("ReadFileTask", "Invalid data range start");
+							return new ErrorItem(ErrorItem.Type.INVALID_RESPONSE);
+						}
+						String totalString = matcher.group(3);
+						if ("*".equals(totalString)) {
+							long length = response.getLength();
+							total = length >= 0 ? responseStart + length : -1;
+						} else {
+							total = Long.parseLong(totalString);
+						}
+						partial = true;
+					}
+				}
+				if (!partial || segment.rangeValidator == null) {
+					segment.rangeValidator = getRangeValidator(response);
+				}
+				if (!partial && rangeStart > 0) {
+					if (segment.end >= 0) {
+						Log.e("ReadFileTask", "Not a partial response");
+						return new ErrorItem(ErrorItem.Type.INVALID_RESPONSE);
+					}
+					// Range is not supported or remote file is changed, download from the beginning
+					truncate = true;
+					segment.position = 0;
+					synchronized (progressLock) {
+						progress = 0;
+					}
+				}
+				if (listener != null) {
+					listener.onSegmentOpen(total, partial, segment.rangeValidator);
+					listener = null;
+				}
+				opened = true;
+			} catch (NumberFormatException e) {
+				return new ErrorItem(ErrorItem.Type.INVALID_RESPONSE);
+			} finally {
+				if (!opened) {
+					response.cleanupAndDisconnect();
+				}
+			}
+			try (InputStream input = response.open();
+					RandomAccessFile file = new RandomAccessFile(partialFile, "rw")) {
+				if (truncate) {
+					file.setLength(0);
+				}
+				file.seek(segment.position);
+				byte[] buffer = new byte[8192];
+				while (true) {
+					long end = segment.end;
+					int count = end >= 0 ? (int) Math.min(buffer.length, end - segment.position) : buffer.length;
+					if (count > 0) {
+						count = input.read(buffer, 0, count);
+					}
+					if (count <= 0) {
+						break;
+					}
+					file.write(buffer, 0, count);
+					segment.position += count;
+					addProgress(count);
+				}
+				if (segment.end >= 0 && segment.position < segment.end) {
+					throw new IOException("Unexpected end of stream");
+				}
+				return null;
+			} catch (IOException e) {
+				ErrorItem.Type errorType = getErrorTypeFromExceptionAndHandle(e);
+				if (errorType != null) {
+					return new ErrorItem(errorType);
+				} else if (isCancelled() || ++attempt >= MAX_ATTEMPTS) {
+					throw response.fail(e);
+				}
+				// Connection dropped, continue from the current position
+				Log.w("ReadFileTask", "Resuming download at " + segment.position + ": " + e);
+			} finally {
+				response.cleanupAndDisconnect();
+			}
+		}
+	}
+
+	private void addProgress(long count) {
+		synchronized (progressLock) {
+			progress += count;
+			progressHandler.updateProgress(progress);
+		}
+	}
+
+	private void completePartialFile(File partialFile, MessageDigest digest) throws IOException {
+		File file = toFile.getFileOrUri().first;
+		if (file != null) {
+			file.delete();
+			file.getParentFile().mkdirs();
+			if (partialFile.renameTo(file)) {
+				getRangeValidatorFile(partialFile).delete();
+				if (digest != null) {
+					try (FileInputStream input = new FileInputStream(file)) {
+						copyStream(input, null, null, digest);
+					}
+				}
+				return;
+			}
+		}
+		try (FileInputStream input = new FileInputStream(partialFile);
+				OutputStream output = toFile.openOutputStream()) {
+			copyStream(input, output, null, digest);
+		}
+		deletePartialFile(partialFile);
+	}
+
 	public static ErrorItem.Type getErrorTypeFromExceptionAndHandle(IOException exception) {
 		if (exception instanceof FileNotFoundException) {
 			exception.printStackTrace();
@@ -252,6 +633,11 @@ public class ReadFileTask extends HttpHolderTask<long[], Boolean> {
 		callback.onFinishDownloading(success, fromUri, toFile, errorItem);
 	}
 
+	@Override
+	protected void onCancel(Boolean result) {
+		callback.onCancelComplete();
+	}
+
 	public boolean isDownloadingFromCache() {
 		return cachedMediaFile != null;
 	}
@@ -264,8 +650,12 @@ public class ReadFileTask extends HttpHolderTask<long[], Boolean> {
 	public void cancel() {
 		super.cancel();
 
+		interruptSegments();
 		if (loadingStarted) {
 			toFile.delete();
+			if (partialFile != null) {
+				deletePartialFile(partialFile);
+			}
 			File file = toFile.getFileOrUri().first;
 			if (file != null) {
 				CacheManager.getInstance().handleDownloadedFile(file, false);
@@ -0,0 +1,88 @@
+package com.mishiranu.dashchan.content.async;
+
+import chan.content.Chan;
+import chan.content.ChanConfiguration;
+import chan.content.ChanPerformer;
+import chan.content.ExtensionException;
+import chan.content.InvalidResponseException;
+import chan.http.HttpException;
+import chan.http.HttpHolder;
+import chan.http.HttpValidator;
+import com.mishiranu.dashchan.content.database.PagesDatabase;
+import java.net.HttpURLConnection;
+
+public class ReadPostsCountTask extends HttpHolderTask<Void, ReadPostsCountTask.Result> {
+	private static final int CONNECT_TIMEOUT = 5000;
+	private static final int READ_TIMEOUT = 5000;
+
+	private final Callback callback;
+	private final Chan chan;
+	private final String boardName;
+	private final String threadNumber;
+
+	public interface Callback {
+		void onReadPostsCountSuccess(Integer postsCount);
+		void onReadPostsCountFail(boolean unsupported);
+	}
+
+	public static class Result {
+		public final Integer postsCount;
+		public final boolean success;
+		public final boolean unsupported;
+
+		private Result(Integer postsCount, boolean success, boolean unsupported) {
+			this.postsCount = postsCount;
+			this.success = success;
+			this.unsupported = unsupported;
+		}
+	}
+
+	public ReadPostsCountTask(Callback callback, Chan chan, String boardName, String threadNumber) {
+		super(chan);
+		this.callback = callback;
+		this.chan = chan;
+		this.boardName = boardName;
+		this.threadNumber = threadNumber;
+	}
+
+	@Override
+	protected Result run(HttpHolder holder) {
+		boolean temporary = chan.configuration.getOption(ChanConfiguration.OPTION_LOCAL_MODE);
+		PagesDatabase.ThreadKey threadKey = new PagesDatabase.ThreadKey(chan.name, boardName, threadNumber);
+		PagesDatabase.Meta meta = PagesDatabase.getInstance().getMeta(threadKey, temporary);
+		HttpValidator validator = meta != null ? meta.validator : null;
+		try {
+			ChanPerformer.ReadPostsCountResult result = chan.performer.safe()
+					.onReadPostsCount(new ChanPerformer.ReadPostsCountData(boardName, threadNumber,
+							CONNECT_TIMEOUT, READ_TIMEOUT, holder, validator));
+			if (result != null) {
+				return new Result(result.postsCount, true, false);
+			}
+		} catch (HttpException e) {
+			if (e.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				// Null posts count means the thread wasn't modified
+				return new Result(null, true, false);
+			}
+		} catch (ExtensionException e) {
+			// Performer doesn't override the method
+			if (e.getCause() instanceof UnsupportedOperationException) {
+				return new Result(null, false, true);
+			}
+			e.getErrorItemAndHandle();
+		} catch (InvalidResponseException e) {
+			e.getErrorItemAndHandle();
+		} finally {
+			chan.configuration.commit();
+		}
+		return new Result(null, false, false);
+	}
+
+	@Override
+	protected void onComplete(Result result) {
+		if (result.success) {
+			callback.onReadPostsCountSuccess(result.postsCount);
+		} else {
+			callback.onReadPostsCountFail(result.unsupported);
+		}
+	}
+}
@@ -43,7 +43,7 @@ public class ReadPostsTask extends HttpHolderTask<Void, ReadPostsTask.Result> {
 	public interface Callback {
 		void onPendingUserPostsConsumed(Set<PendingUserPost> pendingUserPosts);
 		void onReadPostsSuccess(PagesDatabase.Cache.State cacheState,
-				List<PagesDatabase.InsertResult.Reply> replies, Integer newCount);
+				List<PagesDatabase.InsertResult.Reply> replies, Integer newCount, Integer postsCount, boolean bumpLimitReached);
 		void onReadPostsRedirect(RedirectException.Target target);
 		void onReadPostsFail(ErrorItem errorItem);
 	}
@@ -54,13 +54,17 @@ public class ReadPostsTask extends HttpHolderTask<Void, ReadPostsTask.Result> {
 			public final Set<PendingUserPost> removedPendingUserPosts;
 			public final List<PagesDatabase.InsertResult.Reply> replies;
 			public final Integer newCount;
+			public final Integer postsCount;
+			public final boolean bumpLimitReached;
 
 			public Success(PagesDatabase.Cache.State cacheState, Set<PendingUserPost> removedPendingUserPosts,
-					List<PagesDatabase.InsertResult.Reply> replies, Integer newCount) {
+					List<PagesDatabase.InsertResult.Reply> replies, Integer newCount, Integer postsCount, boolean bumpLimitReached) {
 				this.cacheState = cacheState;
 				this.removedPendingUserPosts = removedPendingUserPosts;
 				this.replies = replies;
 				this.newCount = newCount;
+				this.postsCount = postsCount;
+				this.bumpLimitReached = bumpLimitReached;
 			}
 		}
 
@@ -185,7 +189,7 @@ public class ReadPostsTask extends HttpHolderTask<Void, ReadPostsTask.Result> {
 				if (partial) {
 					updateMeta = new UpdateMeta(false, false);
 					return new Result.Success(PagesDatabase.getInstance().getCacheState(threadKey),
-							null, Collections.emptyList(), null);
+							null, Collections.emptyList(), null, null, false);
 				} else {
 					updateMeta = new UpdateMeta(false, true);
 					return new Result.Fail(new ErrorItem(ErrorItem.Type.EMPTY_RESPONSE));
@@ -221,21 +225,25 @@ public class ReadPostsTask extends HttpHolderTask<Void, ReadPostsTask.Result> {
 				if (uniquePosters <= 0 && meta != null) {
 					uniquePosters = meta.uniquePosters;
 				}
-				meta = new PagesDatabase.Meta(validator, archivedThreadUri, uniquePosters, false, false);
+				float watcherVelocity = meta != null ? meta.watcherVelocity : -1f;
+				meta = new PagesDatabase.Meta(validator, archivedThreadUri, uniquePosters,
+						watcherVelocity, false, false);
 				insertResult = PagesDatabase.getInstance().insertNewPosts(threadKey,
 						posts, meta, temporary, newThread, partial);
 			} catch (IOException e) {
 				updateMeta = new UpdateMeta(false, true);
 				return new Result.Fail(new ErrorItem(ErrorItem.Type.NO_ACCESS_TO_MEMORY));
 			}
+			Post originalPost = posts.get(0).number.equals(originalPostNumber) ? posts.get(0) : null;
+			boolean bumpLimitReached = isBumpLimitReached(originalPost, insertResult.postsCount);
 			return new Result.Success(insertResult.cacheState, removedPendingUserPosts,
-					insertResult.replies, insertResult.newCount);
+					insertResult.replies, insertResult.newCount, insertResult.postsCount, bumpLimitReached);
 		} catch (HttpException e) {
 			int responseCode = e.getResponseCode();
 			if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
 				updateMeta = new UpdateMeta(false, false);
 				return new Result.Success(PagesDatabase.getInstance().getCacheState(threadKey),
-						null, Collections.emptyList(), null);
+						null, Collections.emptyList(), null, null, false);
 			}
 			if (responseCode == HttpURLConnection.HTTP_NOT_FOUND ||
 					responseCode == HttpURLConnection.HTTP_GONE) {
@@ -276,6 +284,19 @@ public class ReadPostsTask extends HttpHolderTask<Void, ReadPostsTask.Result> {
 		}
 	}
 
+	private boolean isBumpLimitReached(Post originalPost, int postsCount) {
+		if (originalPost != null) {
+			if (originalPost.isSticky() || originalPost.isCyclical()) {
+				return false;
+			}
+			if (originalPost.isBumpLimitReached()) {
+				return true;
+			}
+		}
+		int bumpLimit = chan.configuration.getBumpLimitWithMode(boardName);
+		return bumpLimit != ChanConfiguration.BUMP_LIMIT_INVALID && postsCount >= bumpLimit;
+	}
+
 	@Override
 	protected void onCancel(Result result) {
 		if (result instanceof Result.Success) {
@@ -293,7 +314,8 @@ public class ReadPostsTask extends HttpHolderTask<Void, ReadPostsTask.Result> {
 			if (success.removedPendingUserPosts != null) {
 				callback.onPendingUserPostsConsumed(success.removedPendingUserPosts);
 			}
-			callback.onReadPostsSuccess(success.cacheState, success.replies, success.newCount);
+			callback.onReadPostsSuccess(success.cacheState, success.replies, success.newCount,
+					success.postsCount, success.bumpLimitReached);
 		} else if (result instanceof Result.Redirect) {
 			Result.Redirect redirect = (Result.Redirect) result;
 			callback.onReadPostsRedirect(redirect.target);
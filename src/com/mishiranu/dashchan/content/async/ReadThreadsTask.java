@@ -11,20 +11,22 @@ import chan.http.HttpHolder;
 import chan.http.HttpValidator;
 import chan.util.CommonUtils;
 import com.mishiranu.dashchan.content.database.CommonDatabase;
+import com.mishiranu.dashchan.content.database.PagesDatabase;
 import com.mishiranu.dashchan.content.model.ErrorItem;
 import com.mishiranu.dashchan.content.model.PostItem;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.List;
 
-public class ReadThreadsTask extends HttpHolderTask<Void, Boolean> {
+public class ReadThreadsTask extends HttpHolderTask<ReadThreadsTask.Snapshot, Boolean> {
 	private final Callback callback;
 	private final Chan chan;
 	private final String boardName;
 	private final int pageNumber;
-	private final HttpValidator validator;
 	private final boolean append;
+	private final boolean loadSnapshot;
 
+	private HttpValidator validator;
 	private ArrayList<PostItem> postItems;
 	private int boardSpeed = 0;
 	private HttpValidator resultValidator;
@@ -34,6 +36,8 @@ public class ReadThreadsTask extends HttpHolderTask<Void, Boolean> {
 	private ErrorItem errorItem;
 
 	public interface Callback {
+		void onReadThreadsSnapshot(List<PostItem> postItems, int pageNumber,
+				int boardSpeed, HttpValidator validator, PostItem.HideState.Map<String> hiddenThreads);
 		void onReadThreadsSuccess(List<PostItem> postItems, int pageNumber,
 				int boardSpeed, boolean append, boolean checkModified, HttpValidator validator,
 				PostItem.HideState.Map<String> hiddenThreads);
@@ -41,8 +45,23 @@ public class ReadThreadsTask extends HttpHolderTask<Void, Boolean> {
 		void onReadThreadsFail(ErrorItem errorItem, int pageNumber);
 	}
 
+	public static class Snapshot {
+		public final List<PostItem> postItems;
+		public final int boardSpeed;
+		public final HttpValidator validator;
+		public final PostItem.HideState.Map<String> hiddenThreads;
+
+		private Snapshot(List<PostItem> postItems, int boardSpeed, HttpValidator validator,
+				PostItem.HideState.Map<String> hiddenThreads) {
+			this.postItems = postItems;
+			this.boardSpeed = boardSpeed;
+			this.validator = validator;
+			this.hiddenThreads = hiddenThreads;
+		}
+	}
+
 	public ReadThreadsTask(Callback callback, Chan chan, String boardName, int pageNumber,
-			HttpValidator validator, boolean append) {
+			HttpValidator validator, boolean append, boolean loadSnapshot) {
 		super(chan);
 		this.callback = callback;
 		this.chan = chan;
@@ -50,14 +69,43 @@ public class ReadThreadsTask extends HttpHolderTask<Void, Boolean> {
 		this.pageNumber = pageNumber;
 		this.validator = validator;
 		this.append = append;
+		this.loadSnapshot = loadSnapshot;
 	}
 
 	public int getPageNumber() {
 		return pageNumber;
 	}
 
+	private boolean isSnapshotPage() {
+		return !append && (pageNumber == 0 || pageNumber == ChanPerformer.ReadThreadsData.PAGE_NUMBER_CATALOG);
+	}
+
+	private ArrayList<PostItem> createPostItems(List<ChanPerformer.ReadThreadsResult.Thread> threads,
+			ArrayList<String> threadNumbers) {
+		ArrayList<PostItem> postItems = new ArrayList<>(threads.size());
+		for (ChanPerformer.ReadThreadsResult.Thread thread : threads) {
+			postItems.add(PostItem.createThread(thread.posts, thread.postsCount, thread.filesCount,
+					thread.postsWithFilesCount, chan, boardName, thread.threadNumber));
+			threadNumbers.add(thread.threadNumber);
+		}
+		return postItems;
+	}
+
 	@Override
 	protected Boolean run(HttpHolder holder) {
+		if (loadSnapshot && isSnapshotPage()) {
+			// Show saved page immediately and check whether it's still actual
+			PagesDatabase.BoardPage boardPage = PagesDatabase.getInstance()
+					.getBoardPage(chan.name, boardName, pageNumber);
+			if (boardPage != null && !boardPage.threads.isEmpty()) {
+				ArrayList<String> threadNumbers = new ArrayList<>(boardPage.threads.size());
+				ArrayList<PostItem> postItems = createPostItems(boardPage.threads, threadNumbers);
+				PostItem.HideState.Map<String> hiddenThreads = CommonDatabase.getInstance().getThreads()
+						.getFlags(chan.name, boardName, threadNumbers);
+				notifyProgress(new Snapshot(postItems, boardPage.boardSpeed, boardPage.validator, hiddenThreads));
+				validator = boardPage.validator;
+			}
+		}
 		try {
 			ChanPerformer.ReadThreadsResult result;
 			try {
@@ -82,22 +130,23 @@ public class ReadThreadsTask extends HttpHolderTask<Void, Boolean> {
 			if (result == null) {
 				throw HttpException.createNotFoundException();
 			}
-			ArrayList<PostItem> postItems = new ArrayList<>(result.threads.size());
 			ArrayList<String> threadNumbers = new ArrayList<>(result.threads.size());
-			for (ChanPerformer.ReadThreadsResult.Thread thread : result.threads) {
-				postItems.add(PostItem.createThread(thread.posts, thread.postsCount, thread.filesCount,
-						thread.postsWithFilesCount, chan, boardName, thread.threadNumber));
-				threadNumbers.add(thread.threadNumber);
-			}
-			this.postItems = postItems;
+			this.postItems = createPostItems(result.threads, threadNumbers);
 			this.boardSpeed = result.boardSpeed;
 			this.resultValidator = result.validator != null ? result.validator : holder.extractValidator();
 			hiddenThreads = CommonDatabase.getInstance().getThreads()
 					.getFlags(chan.name, boardName, threadNumbers);
+			if (isSnapshotPage()) {
+				PagesDatabase.getInstance().setBoardPage(chan.name, boardName, pageNumber,
+						new PagesDatabase.BoardPage(result.threads, boardSpeed, resultValidator));
+			}
 			return true;
 		} catch (HttpException e) {
 			int responseCode = e.getResponseCode();
 			if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				if (isSnapshotPage()) {
+					PagesDatabase.getInstance().touchBoardPage(chan.name, boardName, pageNumber);
+				}
 				return true;
 			}
 			if (responseCode == HttpURLConnection.HTTP_NOT_FOUND ||
@@ -115,6 +164,12 @@ public class ReadThreadsTask extends HttpHolderTask<Void, Boolean> {
 		}
 	}
 
+	@Override
+	protected void onProgress(Snapshot snapshot) {
+		callback.onReadThreadsSnapshot(snapshot.postItems, pageNumber, snapshot.boardSpeed,
+				snapshot.validator, snapshot.hiddenThreads);
+	}
+
 	@Override
 	public void onComplete(Boolean success) {
 		if (success) {
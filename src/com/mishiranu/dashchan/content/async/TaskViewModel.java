@@ -44,7 +44,10 @@ public class TaskViewModel<Task extends ExecutorTask<?, ?>, Result> extends View
 	}
 
 	public void handleResult(Result result) {
-		task = null;
+		// Task might deliver intermediate results from onProgress
+		if (task != null && task.isFinished()) {
+			task = null;
+		}
 		this.result.setValue(result);
 	}
 
@@ -18,7 +18,6 @@ import chan.util.CommonUtils;
 import chan.util.StringUtils;
 import com.mishiranu.dashchan.content.MainApplication;
 import com.mishiranu.dashchan.util.FlagUtils;
-import com.mishiranu.dashchan.util.LruCache;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -518,7 +517,39 @@ public class ChanDatabase {
 				!boardNames.isEmpty(), filtered, provider1, provider2);
 	}
 
-	private final HashMap<String, LruCache<DataKey, String>> dataCacheMap = new HashMap<>();
+	// All data of chan is loaded at once, so configuration reads don't touch the database
+	private final HashMap<String, HashMap<DataKey, String>> dataSnapshots = new HashMap<>();
+
+	private static String toDataString(Object value) {
+		if (value instanceof Boolean) {
+			return (boolean) value ? "1" : "0";
+		} else {
+			return value.toString();
+		}
+	}
+
+	private HashMap<DataKey, String> getDataSnapshotLocked(String chanName) {
+		HashMap<DataKey, String> dataSnapshot = dataSnapshots.get(chanName);
+		if (dataSnapshot == null) {
+			dataSnapshot = new HashMap<>();
+			Expression.Filter filter = Expression.filter()
+					.equals(Schema.Data.Columns.CHAN_NAME, chanName)
+					.build();
+			String[] projection = {Schema.Data.Columns.BOARD_NAME, Schema.Data.Columns.NAME,
+					Schema.Data.Columns.VALUE};
+			try (Cursor cursor = database.query(Schema.Data.TABLE_NAME, projection,
+					filter.value, filter.args, null, null, null)) {
+				while (cursor.moveToNext()) {
+					String value = cursor.getString(2);
+					if (value != null) {
+						dataSnapshot.put(new DataKey(cursor.getString(0), cursor.getString(1)), value);
+					}
+				}
+			}
+			dataSnapshots.put(chanName, dataSnapshot);
+		}
+		return dataSnapshot;
+	}
 
 	public void setData(@NonNull String chanName, Map<DataKey, Object> map) {
 		Objects.requireNonNull(chanName);
@@ -528,6 +559,7 @@ public class ChanDatabase {
 					.equals(Schema.Data.Columns.BOARD_NAME, "")
 					.equals(Schema.Data.Columns.NAME, "")
 					.build();
+			boolean success = false;
 			database.beginTransaction();
 			try {
 				int totalReplace = 0;
@@ -555,13 +587,7 @@ public class ChanDatabase {
 							statement.bindString(start + 1, chanName);
 							statement.bindString(start + 2, dataKey.boardName);
 							statement.bindString(start + 3, dataKey.name);
-							if (value instanceof Boolean) {
-								statement.bindLong(start + 4, (boolean) value ? 1 : 0);
-							} else if (value instanceof Integer) {
-								statement.bindLong(start + 4, (int) value);
-							} else {
-								statement.bindString(start + 4, value.toString());
-							}
+							statement.bindString(start + 4, toDataString(value));
 						});
 				for (Map.Entry<DataKey, Object> entry : map.entrySet()) {
 					if (entry.getValue() == null) {
@@ -572,12 +598,25 @@ public class ChanDatabase {
 					}
 				}
 				database.setTransactionSuccessful();
+				success = true;
 			} finally {
 				database.endTransaction();
-				synchronized (dataCacheMap) {
-					LruCache<DataKey, String> dataCache = dataCacheMap.get(chanName);
-					if (dataCache != null) {
-						dataCache.keySet().removeAll(map.keySet());
+				synchronized (dataSnapshots) {
+					HashMap<DataKey, String> dataSnapshot = dataSnapshots.get(chanName);
+					if (dataSnapshot != null) {
+						if (success) {
+							for (Map.Entry<DataKey, Object> entry : map.entrySet()) {
+								Object value = entry.getValue();
+								if (value != null) {
+									dataSnapshot.put(entry.getKey(), toDataString(value));
+								} else {
+									dataSnapshot.remove(entry.getKey());
+								}
+							}
+						} else {
+							// Reload data on next read
+							dataSnapshots.remove(chanName);
+						}
 					}
 				}
 			}
@@ -588,33 +627,9 @@ public class ChanDatabase {
 		Objects.requireNonNull(chanName);
 		Objects.requireNonNull(boardName);
 		Objects.requireNonNull(name);
-		DataKey dataKey = new DataKey(boardName, name);
-		synchronized (dataCacheMap) {
-			LruCache<DataKey, String> dataCache = dataCacheMap.get(chanName);
-			if (dataCache != null && dataCache.containsKey(dataKey)) {
-				return dataCache.get(dataKey);
-			}
-		}
-		Expression.Filter filter = Expression.filter()
-				.equals(Schema.Data.Columns.CHAN_NAME, chanName)
-				.equals(Schema.Data.Columns.BOARD_NAME, boardName)
-				.equals(Schema.Data.Columns.NAME, name)
-				.build();
-		String value;
-		String[] projection = {Schema.Data.Columns.VALUE};
-		try (Cursor cursor = database.query(Schema.Data.TABLE_NAME, projection,
-				filter.value, filter.args, null, null, null)) {
-			value = cursor.moveToFirst() ? cursor.getString(0) : null;
-		}
-		synchronized (dataCacheMap) {
-			LruCache<DataKey, String> dataCache = dataCacheMap.get(chanName);
-			if (dataCache == null) {
-				dataCache = new LruCache<>(MainApplication.getInstance().isLowRam() ? 20 : 50);
-				dataCacheMap.put(chanName, dataCache);
-			}
-			dataCache.put(dataKey, value);
+		synchronized (dataSnapshots) {
+			return getDataSnapshotLocked(chanName).get(new DataKey(boardName, name));
 		}
-		return value;
 	}
 
 	public void setCookie(@NonNull String chanName, @NonNull String name, String value, String title) {
@@ -7,6 +7,7 @@ import androidx.annotation.NonNull;
 import chan.util.CommonUtils;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Objects;
@@ -87,9 +88,10 @@ public class Expression {
 				return this;
 			}
 
-			public Builder raw(String name) {
+			public Builder raw(String name, String... args) {
 				append();
 				builder.append(name);
+				Collections.addAll(this.args, args);
 				return this;
 			}
 
@@ -10,6 +10,7 @@ import android.os.OperationCanceledException;
 import android.util.LongSparseArray;
 import android.util.Pair;
 import androidx.annotation.NonNull;
+import chan.content.ChanPerformer;
 import chan.http.HttpValidator;
 import chan.text.JsonSerial;
 import chan.text.ParseException;
@@ -20,6 +21,7 @@ import com.mishiranu.dashchan.content.model.Post;
 import com.mishiranu.dashchan.content.model.PostItem;
 import com.mishiranu.dashchan.content.model.PostNumber;
 import com.mishiranu.dashchan.content.storage.FavoritesStorage;
+import com.mishiranu.dashchan.util.BinarySerial;
 import com.mishiranu.dashchan.util.ConcurrentUtils;
 import com.mishiranu.dashchan.util.FlagUtils;
 import com.mishiranu.dashchan.util.Hasher;
@@ -42,6 +44,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class PagesDatabase {
 	private interface Schema {
@@ -49,12 +53,15 @@ public class PagesDatabase {
 			String TABLE_NAME = "meta";
 
 			interface Columns {
+				String ID = "id";
 				String CHAN_NAME = "chan_name";
 				String BOARD_NAME = "board_name";
 				String THREAD_NUMBER = "thread_number";
 				String TIME = "time";
 				String FLAGS = "flags";
 				String DATA = "data";
+				String POSTS_COUNT = "posts_count";
+				String POSTS_SIZE = "posts_size";
 			}
 
 			interface Flags {
@@ -66,12 +73,11 @@ public class PagesDatabase {
 		interface Posts {
 			String TABLE_NAME = "posts";
 			int MAX_COUNT = 250000;
-			float MAX_COUNT_FACTOR = 0.75f;
+			long MAX_SIZE = 200 * 1024 * 1024;
+			float MAX_FACTOR = 0.75f;
 
 			interface Columns {
-				String CHAN_NAME = "chan_name";
-				String BOARD_NAME = "board_name";
-				String THREAD_NUMBER = "thread_number";
+				String THREAD_ID = "thread_id";
 				String POST_NUMBER_MAJOR = "post_number_major";
 				String POST_NUMBER_MINOR = "post_number_minor";
 				String FLAGS = "flags";
@@ -87,24 +93,44 @@ public class PagesDatabase {
 				int MARK_REPLY = 0x00000010;
 			}
 		}
+
+		interface BoardPages {
+			String TABLE_NAME = "board_pages";
+			int MAX_COUNT = 20;
+			int MAX_DATA_SIZE = 1024 * 1024;
+
+			interface Columns {
+				String CHAN_NAME = "chan_name";
+				String BOARD_NAME = "board_name";
+				String PAGE_NUMBER = "page_number";
+				String TIME = "time";
+				String DATA = "data";
+			}
+		}
 	}
 
 	public static class Meta {
 		public final HttpValidator validator;
 		public final Uri archivedThreadUri;
 		public final int uniquePosters;
+		public final float watcherVelocity;
 		public final boolean deleted;
 		public final boolean error;
 
 		public Meta(HttpValidator validator, Uri archivedThreadUri, int uniquePosters,
-				boolean deleted, boolean error) {
+				float watcherVelocity, boolean deleted, boolean error) {
 			this.validator = validator;
 			this.archivedThreadUri = archivedThreadUri;
 			this.uniquePosters = uniquePosters;
+			this.watcherVelocity = watcherVelocity;
 			this.deleted = deleted;
 			this.error = error;
 		}
 
+		public Meta copyWithWatcherVelocity(float watcherVelocity) {
+			return new Meta(validator, archivedThreadUri, uniquePosters, watcherVelocity, deleted, error);
+		}
+
 		public void serialize(JsonSerial.Writer writer) throws IOException {
 			writer.startObject();
 			if (validator != null) {
@@ -119,6 +145,10 @@ public class PagesDatabase {
 				writer.name("uniquePosters");
 				writer.value(uniquePosters);
 			}
+			if (watcherVelocity >= 0) {
+				writer.name("watcherVelocity");
+				writer.value(watcherVelocity);
+			}
 			writer.endObject();
 		}
 
@@ -127,6 +157,7 @@ public class PagesDatabase {
 			HttpValidator validator = null;
 			Uri archivedThreadUri = null;
 			int uniquePosters = 0;
+			float watcherVelocity = -1f;
 			reader.startObject();
 			while (!reader.endStruct()) {
 				switch (reader.nextName()) {
@@ -142,13 +173,17 @@ public class PagesDatabase {
 						uniquePosters = reader.nextInt();
 						break;
 					}
+					case "watcherVelocity": {
+						watcherVelocity = (float) reader.nextDouble();
+						break;
+					}
 					default: {
 						reader.skip();
 						break;
 					}
 				}
 			}
-			return new Meta(validator, archivedThreadUri, uniquePosters, deleted, error);
+			return new Meta(validator, archivedThreadUri, uniquePosters, watcherVelocity, deleted, error);
 		}
 	}
 
@@ -157,12 +192,90 @@ public class PagesDatabase {
 		public final boolean deleted;
 		public final boolean error;
 		public final long time;
+		public final float velocity;
 
-		public WatcherState(int newCount, boolean deleted, boolean error, long time) {
+		public WatcherState(int newCount, boolean deleted, boolean error, long time, float velocity) {
 			this.newCount = newCount;
 			this.deleted = deleted;
 			this.error = error;
 			this.time = time;
+			this.velocity = velocity;
+		}
+	}
+
+	public static class BoardPage {
+		public final List<ChanPerformer.ReadThreadsResult.Thread> threads;
+		public final int boardSpeed;
+		public final HttpValidator validator;
+
+		public BoardPage(List<ChanPerformer.ReadThreadsResult.Thread> threads,
+				int boardSpeed, HttpValidator validator) {
+			this.threads = threads;
+			this.boardSpeed = boardSpeed;
+			this.validator = validator;
+		}
+
+		public byte[] serialize() {
+			BinarySerial.Writer writer = new BinarySerial.Writer();
+			writer.writeInt(boardSpeed);
+			writeNullableString(writer, validator != null ? validator.getEntityTag() : null);
+			writeNullableString(writer, validator != null ? validator.getLastModified() : null);
+			writer.writeInt(threads.size());
+			for (ChanPerformer.ReadThreadsResult.Thread thread : threads) {
+				writer.writeString(thread.threadNumber);
+				writer.writeInt(thread.postsCount);
+				writer.writeInt(thread.filesCount);
+				writer.writeInt(thread.postsWithFilesCount);
+				writer.writeInt(thread.posts.size());
+				for (Post post : thread.posts) {
+					writer.writeInt(post.number.major);
+					writer.writeInt(post.number.minor);
+					writer.writeBoolean(post.deleted);
+					post.serialize(writer);
+				}
+			}
+			return writer.build();
+		}
+
+		public static BoardPage deserialize(byte[] data) throws ParseException {
+			BinarySerial.Reader reader = new BinarySerial.Reader(data);
+			int boardSpeed = reader.readInt();
+			String entityTag = readNullableString(reader);
+			String lastModified = readNullableString(reader);
+			HttpValidator validator = entityTag != null || lastModified != null
+					? new HttpValidator(entityTag, lastModified) : null;
+			int threadsCount = reader.readInt();
+			ArrayList<ChanPerformer.ReadThreadsResult.Thread> threads = new ArrayList<>(threadsCount);
+			for (int i = 0; i < threadsCount; i++) {
+				String threadNumber = reader.readString();
+				int postsCount = reader.readInt();
+				int filesCount = reader.readInt();
+				int postsWithFilesCount = reader.readInt();
+				int count = reader.readInt();
+				ArrayList<Post> posts = new ArrayList<>(count);
+				for (int j = 0; j < count; j++) {
+					PostNumber number = new PostNumber(reader.readInt(), reader.readInt());
+					boolean deleted = reader.readBoolean();
+					posts.add(Post.deserialize(number, deleted, reader));
+				}
+				if (posts.isEmpty()) {
+					throw new ParseException();
+				}
+				threads.add(new ChanPerformer.ReadThreadsResult.Thread(posts, threadNumber,
+						postsCount, filesCount, postsWithFilesCount));
+			}
+			return new BoardPage(threads, boardSpeed, validator);
+		}
+
+		private static void writeNullableString(BinarySerial.Writer writer, String value) {
+			writer.writeBoolean(value != null);
+			if (value != null) {
+				writer.writeString(value);
+			}
+		}
+
+		private static String readNullableString(BinarySerial.Reader reader) throws ParseException {
+			return reader.readBoolean() ? reader.readString() : null;
 		}
 	}
 
@@ -187,10 +300,10 @@ public class PagesDatabase {
 		}
 
 		private Expression.Filter.Builder filterPosts() {
+			Expression.Filter filter = filterMeta().build();
 			return Expression.filter()
-					.equals(Schema.Posts.Columns.CHAN_NAME, chanName)
-					.equals(Schema.Posts.Columns.BOARD_NAME, boardName)
-					.equals(Schema.Posts.Columns.THREAD_NUMBER, threadNumber);
+					.raw(Schema.Posts.Columns.THREAD_ID + " = (SELECT " + Schema.Meta.Columns.ID + " " +
+							"FROM " + Schema.Meta.TABLE_NAME + " WHERE " + filter.value + ")", filter.args);
 		}
 
 		@Override
@@ -223,6 +336,9 @@ public class PagesDatabase {
 		public final byte[] data;
 		public final byte[] hash;
 		public int flags;
+		public boolean replace;
+
+		private byte[] otherFormatHash;
 
 		private Serialized(Post post, byte[] data, byte[] hash, boolean newThread) {
 			this.post = post;
@@ -230,6 +346,14 @@ public class PagesDatabase {
 			this.hash = hash;
 			flags = newThread ? 0 : Schema.Posts.Flags.MARK_NEW;
 		}
+
+		public byte[] getOtherFormatHash(Hasher hasher) throws IOException {
+			if (otherFormatHash == null) {
+				PostFormat format = POST_FORMAT == PostFormat.BINARY ? PostFormat.JSON : PostFormat.BINARY;
+				otherFormatHash = hasher.calculate(serializePost(post, format));
+			}
+			return otherFormatHash;
+		}
 	}
 
 	private static class DiffItem {
@@ -333,17 +457,19 @@ public class PagesDatabase {
 		public final Cache.State cacheState;
 		public final List<Reply> replies;
 		public final int newCount;
+		public final int postsCount;
 
-		public InsertResult(Cache.State cacheState, List<Reply> replies, int newCount) {
+		public InsertResult(Cache.State cacheState, List<Reply> replies, int newCount, int postsCount) {
 			this.cacheState = cacheState;
 			this.replies = replies;
 			this.newCount = newCount;
+			this.postsCount = postsCount;
 		}
 	}
 
 	public static class Diff {
 		public final Cache cache;
-		public final Collection<Post> changed;
+		public final List<PostNumber> changed;
 		public final Collection<PostNumber> removed;
 
 		public final Set<PostNumber> newPosts;
@@ -351,27 +477,85 @@ public class PagesDatabase {
 		public final Set<PostNumber> editedPosts;
 		public final Set<PostNumber> replyPosts;
 
-		public Diff(Cache cache, Collection<Post> changed, Collection<PostNumber> removed,
+		private final List<Extracted> extractedList;
+
+		private Diff(Cache cache, List<Extracted> extractedList, Collection<PostNumber> removed,
 				Set<PostNumber> newPosts, Set<PostNumber> deletedPosts,
 				Set<PostNumber> editedPosts, Set<PostNumber> replyPosts) {
 			this.cache = cache;
-			this.changed = changed;
 			this.removed = removed;
 			this.newPosts = newPosts;
 			this.deletedPosts = deletedPosts;
 			this.editedPosts = editedPosts;
 			this.replyPosts = replyPosts;
+			this.extractedList = extractedList;
+			ArrayList<PostNumber> changed = new ArrayList<>(extractedList.size());
+			for (Extracted extracted : extractedList) {
+				changed.add(extracted.postNumber);
+			}
+			this.changed = Collections.unmodifiableList(changed);
+		}
+
+		public Post deserialize(int index) throws ParseException {
+			// Drop serialized data as soon as possible, so only one copy of the post is kept in memory
+			Extracted extracted = extractedList.set(index, null);
+			if (extracted == null) {
+				throw new IllegalStateException();
+			}
+			return deserializePost(extracted.postNumber, extracted.deleted, extracted.data);
 		}
 	}
 
 	public enum Cleanup {NONE, ERASE, OLD, DELETED}
 
+	private enum PostFormat {JSON, BINARY}
+
+	// Both formats are always readable, existing rows are rewritten when thread is updated
+	private static final PostFormat POST_FORMAT = PostFormat.BINARY;
+
+	private static byte[] serializePost(Post post, PostFormat format) throws IOException {
+		switch (format) {
+			case JSON: {
+				try (JsonSerial.Writer writer = JsonSerial.writer()) {
+					post.serialize(writer);
+					return writer.build();
+				}
+			}
+			case BINARY: {
+				BinarySerial.Writer writer = new BinarySerial.Writer();
+				post.serialize(writer);
+				return writer.build();
+			}
+			default: {
+				throw new IllegalArgumentException();
+			}
+		}
+	}
+
+	private static Post deserializePost(PostNumber postNumber, boolean deleted, byte[] data) throws ParseException {
+		if (BinarySerial.isBinary(data)) {
+			return Post.deserialize(postNumber, deleted, new BinarySerial.Reader(data));
+		} else {
+			try (JsonSerial.Reader reader = JsonSerial.reader(data)) {
+				return Post.deserialize(postNumber, deleted, reader);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
 	private enum MigrationRequest {GET_META, COLLECT_DIFF_POSTS}
 
-	private static final PagesDatabase INSTANCE = new PagesDatabase();
+	private static final Executor CLEANUP_EXECUTOR = ConcurrentUtils.newSingleThreadPool(20000,
+			"PagesDatabaseCleanup", null);
+
+	// Opening may take long on upgrade, holder allows to use static members without waiting for it
+	private static class InstanceHolder {
+		public static final PagesDatabase INSTANCE = new PagesDatabase();
+	}
 
 	public static PagesDatabase getInstance() {
-		return INSTANCE;
+		return InstanceHolder.INSTANCE;
 	}
 
 	private final Helper helper = new Helper();
@@ -404,18 +588,23 @@ public class PagesDatabase {
 		}
 
 		if (MainApplication.getInstance().isMainProcess()) {
-			HashSet<ThreadKey> excludeThreads = new HashSet<>();
-			for (FavoritesStorage.FavoriteItem favoriteItem : FavoritesStorage.getInstance().getThreads(null)) {
-				excludeThreads.add(new ThreadKey(favoriteItem.chanName,
-						StringUtils.emptyIfNull(favoriteItem.boardName), favoriteItem.threadNumber));
-			}
-			new Thread(() -> cleanup(excludeThreads, false)).start();
+			// Database is opened in background, while favorites must be read in main thread
+			CLEANUP_EXECUTOR.execute(() -> cleanup(ConcurrentUtils.mainGet(PagesDatabase::getFavoriteThreads), false));
+		}
+	}
+
+	private static HashSet<ThreadKey> getFavoriteThreads() {
+		HashSet<ThreadKey> excludeThreads = new HashSet<>();
+		for (FavoritesStorage.FavoriteItem favoriteItem : FavoritesStorage.getInstance().getThreads(null)) {
+			excludeThreads.add(new ThreadKey(favoriteItem.chanName,
+					StringUtils.emptyIfNull(favoriteItem.boardName), favoriteItem.threadNumber));
 		}
+		return excludeThreads;
 	}
 
 	private static class Helper extends SQLiteOpenHelper {
 		private static final String DATABASE_NAME = "pages.db";
-		private static final int DATABASE_VERSION = 1;
+		private static final int DATABASE_VERSION = 4;
 
 		private Helper() {
 			super(MainApplication.getInstance(), DATABASE_NAME, null, DATABASE_VERSION);
@@ -429,82 +618,215 @@ public class PagesDatabase {
 
 		@Override
 		public void onCreate(SQLiteDatabase db) {
+			createThreadTables(db);
+			createBoardPagesTable(db);
+		}
+
+		private static void createThreadTables(SQLiteDatabase db) {
 			db.execSQL("CREATE TABLE " + Schema.Meta.TABLE_NAME + " (" +
+					Schema.Meta.Columns.ID + " INTEGER PRIMARY KEY, " +
 					Schema.Meta.Columns.CHAN_NAME + " TEXT NOT NULL, " +
 					Schema.Meta.Columns.BOARD_NAME + " TEXT NOT NULL, " +
 					Schema.Meta.Columns.THREAD_NUMBER + " TEXT NOT NULL, " +
 					Schema.Meta.Columns.TIME + " INTEGER NOT NULL, " +
 					Schema.Meta.Columns.FLAGS + " INTEGER NOT NULL DEFAULT 0, " +
 					Schema.Meta.Columns.DATA + " BLOB NOT NULL, " +
-					"PRIMARY KEY (" + Schema.Meta.Columns.CHAN_NAME + ", " +
+					Schema.Meta.Columns.POSTS_COUNT + " INTEGER NOT NULL DEFAULT 0, " +
+					Schema.Meta.Columns.POSTS_SIZE + " INTEGER NOT NULL DEFAULT 0, " +
+					"UNIQUE (" + Schema.Meta.Columns.CHAN_NAME + ", " +
 					Schema.Meta.Columns.BOARD_NAME + ", " +
 					Schema.Meta.Columns.THREAD_NUMBER + "))");
 			db.execSQL("CREATE INDEX " + Schema.Meta.TABLE_NAME + "_order " +
 					"ON " + Schema.Meta.TABLE_NAME + " (" +
 					Schema.Meta.Columns.TIME + ")");
+			// Posts are keyed by integer thread id instead of repeating chan, board and thread number in every row
 			db.execSQL("CREATE TABLE " + Schema.Posts.TABLE_NAME + " (" +
-					Schema.Posts.Columns.CHAN_NAME + " TEXT NOT NULL, " +
-					Schema.Posts.Columns.BOARD_NAME + " TEXT NOT NULL, " +
-					Schema.Posts.Columns.THREAD_NUMBER + " TEXT NOT NULL, " +
+					Schema.Posts.Columns.THREAD_ID + " INTEGER NOT NULL, " +
 					Schema.Posts.Columns.POST_NUMBER_MAJOR + " INTEGER NOT NULL, " +
 					Schema.Posts.Columns.POST_NUMBER_MINOR + " INTEGER NOT NULL, " +
 					Schema.Posts.Columns.FLAGS + " INTEGER NOT NULL DEFAULT 0, " +
 					Schema.Posts.Columns.DATA + " BLOB NOT NULL, " +
 					Schema.Posts.Columns.HASH + " BLOB NOT NULL, " +
-					"PRIMARY KEY (" + Schema.Posts.Columns.CHAN_NAME + ", " +
-					Schema.Posts.Columns.BOARD_NAME + ", " +
-					Schema.Posts.Columns.THREAD_NUMBER + ", " +
+					"PRIMARY KEY (" + Schema.Posts.Columns.THREAD_ID + ", " +
 					Schema.Posts.Columns.POST_NUMBER_MAJOR + ", " +
 					Schema.Posts.Columns.POST_NUMBER_MINOR + "), " +
-					"FOREIGN KEY (" + Schema.Posts.Columns.CHAN_NAME + ", " +
-					Schema.Posts.Columns.BOARD_NAME + ", " +
-					Schema.Posts.Columns.THREAD_NUMBER + ") " +
-					"REFERENCES " + Schema.Meta.TABLE_NAME + " (" +
-					Schema.Meta.Columns.CHAN_NAME + ", " +
-					Schema.Meta.Columns.BOARD_NAME + ", " +
-					Schema.Meta.Columns.THREAD_NUMBER + ") " +
-					"ON DELETE CASCADE ON UPDATE CASCADE)");
+					"FOREIGN KEY (" + Schema.Posts.Columns.THREAD_ID + ") " +
+					"REFERENCES " + Schema.Meta.TABLE_NAME + " (" + Schema.Meta.Columns.ID + ") " +
+					"ON DELETE CASCADE)");
+		}
+
+		private static void createBoardPagesTable(SQLiteDatabase db) {
+			db.execSQL("CREATE TABLE " + Schema.BoardPages.TABLE_NAME + " (" +
+					Schema.BoardPages.Columns.CHAN_NAME + " TEXT NOT NULL, " +
+					Schema.BoardPages.Columns.BOARD_NAME + " TEXT NOT NULL, " +
+					Schema.BoardPages.Columns.PAGE_NUMBER + " INTEGER NOT NULL, " +
+					Schema.BoardPages.Columns.TIME + " INTEGER NOT NULL, " +
+					Schema.BoardPages.Columns.DATA + " BLOB NOT NULL, " +
+					"PRIMARY KEY (" + Schema.BoardPages.Columns.CHAN_NAME + ", " +
+					Schema.BoardPages.Columns.BOARD_NAME + ", " +
+					Schema.BoardPages.Columns.PAGE_NUMBER + "))");
 		}
 
 		@Override
-		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {}
+		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+			switch (oldVersion) {
+				case 1: {
+					createBoardPagesTable(db);
+				}
+				case 2: {
+					db.execSQL("ALTER TABLE " + Schema.Meta.TABLE_NAME + " " +
+							"ADD COLUMN " + Schema.Meta.Columns.POSTS_COUNT + " INTEGER NOT NULL DEFAULT 0");
+					db.execSQL("ALTER TABLE " + Schema.Meta.TABLE_NAME + " " +
+							"ADD COLUMN " + Schema.Meta.Columns.POSTS_SIZE + " INTEGER NOT NULL DEFAULT 0");
+				}
+				case 3: {
+					String threadColumns = Schema.Meta.Columns.CHAN_NAME + ", " +
+							Schema.Meta.Columns.BOARD_NAME + ", " +
+							Schema.Meta.Columns.THREAD_NUMBER;
+					db.execSQL("DROP INDEX " + Schema.Meta.TABLE_NAME + "_order");
+					db.execSQL("ALTER TABLE " + Schema.Posts.TABLE_NAME + " " +
+							"RENAME TO " + Schema.Posts.TABLE_NAME + "_old");
+					db.execSQL("ALTER TABLE " + Schema.Meta.TABLE_NAME + " " +
+							"RENAME TO " + Schema.Meta.TABLE_NAME + "_old");
+					createThreadTables(db);
+					db.execSQL("INSERT INTO " + Schema.Meta.TABLE_NAME + " (" + threadColumns + ", " +
+							Schema.Meta.Columns.TIME + ", " +
+							Schema.Meta.Columns.FLAGS + ", " +
+							Schema.Meta.Columns.DATA + ") " +
+							"SELECT " + threadColumns + ", " +
+							Schema.Meta.Columns.TIME + ", " +
+							Schema.Meta.Columns.FLAGS + ", " +
+							Schema.Meta.Columns.DATA + " " +
+							"FROM " + Schema.Meta.TABLE_NAME + "_old");
+					db.execSQL("INSERT INTO " + Schema.Posts.TABLE_NAME + " (" +
+							Schema.Posts.Columns.THREAD_ID + ", " +
+							Schema.Posts.Columns.POST_NUMBER_MAJOR + ", " +
+							Schema.Posts.Columns.POST_NUMBER_MINOR + ", " +
+							Schema.Posts.Columns.FLAGS + ", " +
+							Schema.Posts.Columns.DATA + ", " +
+							Schema.Posts.Columns.HASH + ") " +
+							"SELECT m." + Schema.Meta.Columns.ID + ", " +
+							"p." + Schema.Posts.Columns.POST_NUMBER_MAJOR + ", " +
+							"p." + Schema.Posts.Columns.POST_NUMBER_MINOR + ", " +
+							"p." + Schema.Posts.Columns.FLAGS + ", " +
+							"p." + Schema.Posts.Columns.DATA + ", " +
+							"p." + Schema.Posts.Columns.HASH + " " +
+							"FROM " + Schema.Posts.TABLE_NAME + "_old AS p " +
+							"JOIN " + Schema.Meta.TABLE_NAME + " AS m " +
+							"USING (" + threadColumns + ")");
+					db.execSQL("DROP TABLE " + Schema.Posts.TABLE_NAME + "_old");
+					db.execSQL("DROP TABLE " + Schema.Meta.TABLE_NAME + "_old");
+					db.execSQL("UPDATE " + Schema.Meta.TABLE_NAME + " SET " +
+							Schema.Meta.Columns.POSTS_COUNT + " = (SELECT COUNT(*) " + POSTS_QUOTA_FROM + "), " +
+							Schema.Meta.Columns.POSTS_SIZE + " = (SELECT " + POSTS_QUOTA_SIZE + " " +
+							POSTS_QUOTA_FROM + ")");
+				}
+			}
+		}
 
 		@Override
 		public void onOpen(SQLiteDatabase db) {}
 	}
 
+	private static final String POSTS_QUOTA_SIZE = "IFNULL(SUM(LENGTH(p." + Schema.Posts.Columns.DATA + ")), 0)";
+	private static final String POSTS_QUOTA_FROM = "FROM " + Schema.Posts.TABLE_NAME + " AS p " +
+			"WHERE p." + Schema.Posts.Columns.THREAD_ID + " = " +
+			Schema.Meta.TABLE_NAME + "." + Schema.Meta.Columns.ID;
+
+	private void setPostsQuota(ThreadKey threadKey, int postsCount, long postsSize) {
+		Expression.Filter filter = threadKey.filterMeta().build();
+		ContentValues values = new ContentValues();
+		values.put(Schema.Meta.Columns.POSTS_COUNT, postsCount);
+		values.put(Schema.Meta.Columns.POSTS_SIZE, postsSize);
+		database.update(Schema.Meta.TABLE_NAME, values, filter.value, filter.args);
+	}
+
+	// Used after bulk removals, only posts of a single thread are scanned
+	private void updatePostsQuota(ThreadKey threadKey) {
+		Expression.Filter filter = threadKey.filterMeta().build();
+		database.execSQL("UPDATE " + Schema.Meta.TABLE_NAME + " SET " +
+				Schema.Meta.Columns.POSTS_COUNT + " = (SELECT COUNT(*) " + POSTS_QUOTA_FROM + "), " +
+				Schema.Meta.Columns.POSTS_SIZE + " = (SELECT " + POSTS_QUOTA_SIZE + " " + POSTS_QUOTA_FROM + ") " +
+				"WHERE " + filter.value, filter.args);
+		invalidateTotalPostsQuota();
+	}
+
+	// Total quota is tracked in memory, the sum is queried again only after bulk changes
+	private final Object totalPostsQuotaLock = new Object();
+	private boolean totalPostsQuotaValid;
+	private long totalPostsCount;
+	private long totalPostsSize;
+
+	private void addTotalPostsQuota(long postsCount, long postsSize) {
+		synchronized (totalPostsQuotaLock) {
+			if (totalPostsQuotaValid) {
+				totalPostsCount += postsCount;
+				totalPostsSize += postsSize;
+			}
+		}
+	}
+
+	private void invalidateTotalPostsQuota() {
+		synchronized (totalPostsQuotaLock) {
+			totalPostsQuotaValid = false;
+		}
+	}
+
+	private final AtomicBoolean cleanupScheduled = new AtomicBoolean();
+
+	private void scheduleCleanupIfNeeded() {
+		boolean needCleanup;
+		synchronized (totalPostsQuotaLock) {
+			if (!totalPostsQuotaValid) {
+				try (Cursor cursor = database.rawQuery("SELECT " +
+						"SUM(" + Schema.Meta.Columns.POSTS_COUNT + "), " +
+						"SUM(" + Schema.Meta.Columns.POSTS_SIZE + ") " +
+						"FROM " + Schema.Meta.TABLE_NAME, null)) {
+					boolean found = cursor.moveToFirst();
+					totalPostsCount = found ? cursor.getLong(0) : 0;
+					totalPostsSize = found ? cursor.getLong(1) : 0;
+				}
+				totalPostsQuotaValid = true;
+			}
+			needCleanup = totalPostsCount > Schema.Posts.MAX_COUNT || totalPostsSize > Schema.Posts.MAX_SIZE;
+		}
+		if (needCleanup && MainApplication.getInstance().isMainProcess() && !cleanupScheduled.getAndSet(true)) {
+			CLEANUP_EXECUTOR.execute(() -> {
+				cleanupScheduled.set(false);
+				cleanup(ConcurrentUtils.mainGet(PagesDatabase::getFavoriteThreads), false);
+			});
+		}
+	}
+
 	private void cleanup(Set<ThreadKey> excludeThreads, boolean force) {
 		HashSet<ThreadKey> removeThreads = null;
 		boolean shouldRemove = false;
 		try (Cursor cursor = database.rawQuery("SELECT " +
-				"m." + Schema.Meta.Columns.CHAN_NAME + ", " +
-				"m." + Schema.Meta.Columns.BOARD_NAME + ", " +
-				"m." + Schema.Meta.Columns.THREAD_NUMBER + ", " +
-				"COUNT(p." + Schema.Meta.Columns.CHAN_NAME + ") " +
-				"FROM " + Schema.Meta.TABLE_NAME + " AS m " +
-				"JOIN " + Schema.Posts.TABLE_NAME + " AS p " +
-				"ON m." + Schema.Meta.Columns.CHAN_NAME + " = p." + Schema.Posts.Columns.CHAN_NAME + " AND " +
-				"m." + Schema.Meta.Columns.BOARD_NAME + " = p." + Schema.Posts.Columns.BOARD_NAME + " AND " +
-				"m." + Schema.Meta.Columns.THREAD_NUMBER + " = p." + Schema.Posts.Columns.THREAD_NUMBER + " " +
-				"GROUP BY p." + Schema.Meta.Columns.CHAN_NAME + ", " +
-				"p." + Schema.Meta.Columns.BOARD_NAME + ", " +
-				"p." + Schema.Meta.Columns.THREAD_NUMBER + " " +
-				"ORDER BY m." + Schema.Meta.Columns.TIME + " DESC", null)) {
-			int postCount = 0;
+				Schema.Meta.Columns.CHAN_NAME + ", " +
+				Schema.Meta.Columns.BOARD_NAME + ", " +
+				Schema.Meta.Columns.THREAD_NUMBER + ", " +
+				Schema.Meta.Columns.POSTS_COUNT + ", " +
+				Schema.Meta.Columns.POSTS_SIZE + " " +
+				"FROM " + Schema.Meta.TABLE_NAME + " " +
+				"ORDER BY " + Schema.Meta.Columns.TIME + " DESC", null)) {
+			int postsCount = 0;
+			long postsSize = 0;
 			while (cursor.moveToNext()) {
 				String chanName = cursor.getString(0);
 				String boardName = cursor.getString(1);
 				String threadNumber = cursor.getString(2);
 				ThreadKey threadKey = new ThreadKey(chanName, boardName, threadNumber);
 				if (!excludeThreads.contains(threadKey)) {
-					postCount += cursor.getInt(3);
-					if (postCount > Schema.Posts.MAX_COUNT * Schema.Posts.MAX_COUNT_FACTOR || force) {
+					postsCount += cursor.getInt(3);
+					postsSize += cursor.getLong(4);
+					if (postsCount > Schema.Posts.MAX_COUNT * Schema.Posts.MAX_FACTOR ||
+							postsSize > Schema.Posts.MAX_SIZE * Schema.Posts.MAX_FACTOR || force) {
 						if (removeThreads == null) {
 							removeThreads = new HashSet<>();
 						}
 						removeThreads.add(threadKey);
 					}
-					if (postCount > Schema.Posts.MAX_COUNT || force) {
+					if (postsCount > Schema.Posts.MAX_COUNT || postsSize > Schema.Posts.MAX_SIZE || force) {
 						shouldRemove = true;
 					}
 				}
@@ -520,20 +842,14 @@ public class PagesDatabase {
 				database.setTransactionSuccessful();
 			} finally {
 				database.endTransaction();
+				invalidateTotalPostsQuota();
 			}
 			checkpoint();
 		}
 	}
 
 	public void erase(Collection<ThreadKey> keepThreads) {
-		HashSet<ThreadKey> mainExcludeThreads = ConcurrentUtils.mainGet(() -> {
-			HashSet<ThreadKey> excludeThreads = new HashSet<>();
-			for (FavoritesStorage.FavoriteItem favoriteItem : FavoritesStorage.getInstance().getThreads(null)) {
-				excludeThreads.add(new ThreadKey(favoriteItem.chanName,
-						StringUtils.emptyIfNull(favoriteItem.boardName), favoriteItem.threadNumber));
-			}
-			return excludeThreads;
-		});
+		HashSet<ThreadKey> mainExcludeThreads = ConcurrentUtils.mainGet(PagesDatabase::getFavoriteThreads);
 		if (keepThreads != null) {
 			mainExcludeThreads.addAll(keepThreads);
 		}
@@ -542,6 +858,8 @@ public class PagesDatabase {
 
 	public void eraseAll() {
 		database.delete(Schema.Meta.TABLE_NAME, null, null);
+		database.delete(Schema.BoardPages.TABLE_NAME, null, null);
+		invalidateTotalPostsQuota();
 		checkpoint();
 	}
 
@@ -551,8 +869,8 @@ public class PagesDatabase {
 		}
 	}
 
-	public long getSize() {
-		File file = MainApplication.getInstance().getDatabasePath(helper.getDatabaseName());
+	public static long getSize() {
+		File file = MainApplication.getInstance().getDatabasePath(Helper.DATABASE_NAME);
 		return file.length() + new File(file.getParentFile(), file.getName() + "-wal").length();
 	}
 
@@ -600,6 +918,53 @@ public class PagesDatabase {
 				"WHERE " + filter.value, filter.args);
 	}
 
+	private Meta readMeta(Expression.Filter filter) {
+		String[] projection = {Schema.Meta.Columns.DATA};
+		try (Cursor cursor = database.query(Schema.Meta.TABLE_NAME,
+				projection, filter.value, filter.args, null, null, null)) {
+			if (cursor.moveToFirst()) {
+				try (JsonSerial.Reader reader = JsonSerial.reader(cursor.getBlob(0))) {
+					return Meta.deserialize(reader, false, false);
+				} catch (IOException | ParseException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return null;
+	}
+
+	private float readWatcherVelocity(Expression.Filter filter) {
+		Meta meta = readMeta(filter);
+		return meta != null ? meta.watcherVelocity : -1f;
+	}
+
+	public void setWatcherVelocity(@NonNull ThreadKey threadKey, float velocity) {
+		Objects.requireNonNull(threadKey);
+		Expression.Filter filter = threadKey.filterMeta().build();
+		// Meta is rewritten by posts insertion under the same lock, so the update is never lost
+		insertLocks.lock(threadKey, () -> {
+			database.beginTransaction();
+			try {
+				Meta meta = readMeta(filter);
+				if (meta != null && meta.watcherVelocity != velocity) {
+					ContentValues values = new ContentValues();
+					try (JsonSerial.Writer writer = JsonSerial.writer()) {
+						meta.copyWithWatcherVelocity(velocity).serialize(writer);
+						values.put(Schema.Meta.Columns.DATA, writer.build());
+					} catch (IOException e) {
+						e.printStackTrace();
+						return null;
+					}
+					database.update(Schema.Meta.TABLE_NAME, values, filter.value, filter.args);
+				}
+				database.setTransactionSuccessful();
+			} finally {
+				database.endTransaction();
+			}
+			return null;
+		});
+	}
+
 	private static String orderByPostNumber(boolean desc) {
 		String order = (desc ? "DESC" : "ASC");
 		return Schema.Posts.Columns.POST_NUMBER_MAJOR + " " + order + ", " +
@@ -627,10 +992,8 @@ public class PagesDatabase {
 				filter.value, filter.args, null, null, orderByPostNumber(false), "1")) {
 			if (cursor.moveToFirst()) {
 				PostNumber postNumber = new PostNumber(cursor.getInt(0), cursor.getInt(1));
-				try (JsonSerial.Reader reader = JsonSerial.reader(cursor.getBlob(2))) {
-					return Post.deserialize(postNumber, false, reader);
-				} catch (IOException e) {
-					throw new RuntimeException(e);
+				try {
+					return deserializePost(postNumber, false, cursor.getBlob(2));
 				} catch (ParseException e) {
 					// Ignore
 				}
@@ -659,6 +1022,7 @@ public class PagesDatabase {
 		int newCount;
 		long time = 0;
 		int flags = Schema.Meta.Flags.DELETED;
+		float velocity = -1f;
 		Expression.Filter newPostsFilter = threadKey.filterPosts()
 				.raw(Schema.Posts.Columns.FLAGS + " & " + Schema.Posts.Flags.MARK_NEW)
 				.build();
@@ -668,16 +1032,84 @@ public class PagesDatabase {
 			newCount = cursor.moveToFirst() ? cursor.getInt(0) : 0;
 		}
 		Expression.Filter metaFilter = threadKey.filterMeta().build();
-		String[] metaProjection = {Schema.Meta.Columns.TIME, Schema.Meta.Columns.FLAGS};
+		String[] metaProjection = {Schema.Meta.Columns.TIME, Schema.Meta.Columns.FLAGS, Schema.Meta.Columns.DATA};
 		try (Cursor cursor = database.query(Schema.Meta.TABLE_NAME, metaProjection,
 				metaFilter.value, metaFilter.args, null, null, null)) {
 			if (cursor.moveToFirst()) {
 				time = cursor.getLong(0);
 				flags = cursor.getInt(1);
+				try (JsonSerial.Reader reader = JsonSerial.reader(cursor.getBlob(2))) {
+					velocity = Meta.deserialize(reader, false, false).watcherVelocity;
+				} catch (IOException | ParseException e) {
+					e.printStackTrace();
+				}
 			}
 		}
 		return new WatcherState(newCount, FlagUtils.get(flags, Schema.Meta.Flags.DELETED),
-				FlagUtils.get(flags, Schema.Meta.Flags.ERROR), time);
+				FlagUtils.get(flags, Schema.Meta.Flags.ERROR), time, velocity);
+	}
+
+	private static Expression.Filter filterBoardPage(String chanName, String boardName, int pageNumber) {
+		return Expression.filter()
+				.equals(Schema.BoardPages.Columns.CHAN_NAME, chanName)
+				.equals(Schema.BoardPages.Columns.BOARD_NAME, StringUtils.emptyIfNull(boardName))
+				.equals(Schema.BoardPages.Columns.PAGE_NUMBER, Integer.toString(pageNumber))
+				.build();
+	}
+
+	public BoardPage getBoardPage(@NonNull String chanName, String boardName, int pageNumber) {
+		Objects.requireNonNull(chanName);
+		String[] projection = {Schema.BoardPages.Columns.DATA};
+		Expression.Filter filter = filterBoardPage(chanName, boardName, pageNumber);
+		try (Cursor cursor = database.query(Schema.BoardPages.TABLE_NAME,
+				projection, filter.value, filter.args, null, null, null)) {
+			if (cursor.moveToFirst()) {
+				return BoardPage.deserialize(cursor.getBlob(0));
+			}
+		} catch (ParseException | RuntimeException e) {
+			e.printStackTrace();
+			database.delete(Schema.BoardPages.TABLE_NAME, filter.value, filter.args);
+		}
+		return null;
+	}
+
+	public void setBoardPage(@NonNull String chanName, String boardName, int pageNumber,
+			@NonNull BoardPage boardPage) {
+		Objects.requireNonNull(chanName);
+		Objects.requireNonNull(boardPage);
+		Expression.Filter filter = filterBoardPage(chanName, boardName, pageNumber);
+		byte[] data = boardPage.threads.isEmpty() ? null : boardPage.serialize();
+		if (data == null || data.length > Schema.BoardPages.MAX_DATA_SIZE) {
+			// Large blobs don't fit cursor window
+			database.delete(Schema.BoardPages.TABLE_NAME, filter.value, filter.args);
+			return;
+		}
+		ContentValues values = new ContentValues();
+		values.put(Schema.BoardPages.Columns.CHAN_NAME, chanName);
+		values.put(Schema.BoardPages.Columns.BOARD_NAME, StringUtils.emptyIfNull(boardName));
+		values.put(Schema.BoardPages.Columns.PAGE_NUMBER, pageNumber);
+		values.put(Schema.BoardPages.Columns.TIME, System.currentTimeMillis());
+		values.put(Schema.BoardPages.Columns.DATA, data);
+		database.beginTransaction();
+		try {
+			database.insertWithOnConflict(Schema.BoardPages.TABLE_NAME, null, values,
+					SQLiteDatabase.CONFLICT_REPLACE);
+			database.execSQL("DELETE FROM " + Schema.BoardPages.TABLE_NAME + " " +
+					"WHERE rowid NOT IN (SELECT rowid FROM " + Schema.BoardPages.TABLE_NAME + " " +
+					"ORDER BY " + Schema.BoardPages.Columns.TIME + " DESC " +
+					"LIMIT " + Schema.BoardPages.MAX_COUNT + ")");
+			database.setTransactionSuccessful();
+		} finally {
+			database.endTransaction();
+		}
+	}
+
+	public void touchBoardPage(@NonNull String chanName, String boardName, int pageNumber) {
+		Objects.requireNonNull(chanName);
+		Expression.Filter filter = filterBoardPage(chanName, boardName, pageNumber);
+		ContentValues values = new ContentValues();
+		values.put(Schema.BoardPages.Columns.TIME, System.currentTimeMillis());
+		database.update(Schema.BoardPages.TABLE_NAME, values, filter.value, filter.args);
 	}
 
 	private final HashMap<ThreadKey, Cache.State> cacheStates = new HashMap<>();
@@ -701,11 +1133,16 @@ public class PagesDatabase {
 				Schema.Posts.Columns.FLAGS + " = " + Schema.Posts.Columns.FLAGS + " " + transform, filter);
 	}
 
-	private void upsertMeta(ThreadKey threadKey, long time, Meta meta) throws IOException {
+	private long upsertMeta(ThreadKey threadKey, long time, Meta meta) throws IOException {
 		if (!database.inTransaction()) {
 			throw new IllegalStateException();
 		}
 		Expression.Filter filter = threadKey.filterMeta().build();
+		// Velocity is written by watcher separately, so the stored value is preserved
+		float watcherVelocity = readWatcherVelocity(filter);
+		if (watcherVelocity >= 0) {
+			meta = meta.copyWithWatcherVelocity(watcherVelocity);
+		}
 		ContentValues values = new ContentValues();
 		values.put(Schema.Meta.Columns.TIME, time);
 		int flags = (meta.deleted ? Schema.Meta.Flags.DELETED : 0) | (meta.error ? Schema.Meta.Flags.ERROR : 0);
@@ -718,7 +1155,18 @@ public class PagesDatabase {
 			values.put(Schema.Meta.Columns.CHAN_NAME, threadKey.chanName);
 			values.put(Schema.Meta.Columns.BOARD_NAME, threadKey.boardName);
 			values.put(Schema.Meta.Columns.THREAD_NUMBER, threadKey.threadNumber);
-			database.insert(Schema.Meta.TABLE_NAME, null, values);
+			long threadId = database.insert(Schema.Meta.TABLE_NAME, null, values);
+			if (threadId < 0) {
+				throw new IOException("Failed to insert meta");
+			}
+			return threadId;
+		}
+		try (Cursor cursor = database.query(Schema.Meta.TABLE_NAME, new String[] {Schema.Meta.Columns.ID},
+				filter.value, filter.args, null, null, null)) {
+			if (!cursor.moveToFirst()) {
+				throw new IOException("Meta not found");
+			}
+			return cursor.getLong(0);
 		}
 	}
 
@@ -731,10 +1179,7 @@ public class PagesDatabase {
 		Objects.requireNonNull(meta);
 		byte[][] dataArray = new byte[posts.size()][];
 		for (int i = 0; i < posts.size(); i++) {
-			try (JsonSerial.Writer writer = JsonSerial.writer()) {
-				posts.get(i).serialize(writer);
-				dataArray[i] = writer.build();
-			}
+			dataArray[i] = serializePost(posts.get(i), POST_FORMAT);
 		}
 		HashMap<PostNumber, Serialized> serializedMap = new HashMap<>(dataArray.length);
 		Hasher hasher = Hasher.getInstanceSha256();
@@ -747,22 +1192,28 @@ public class PagesDatabase {
 		Set<PostNumber> userPosts = CommonDatabase.getInstance().getPosts()
 				.getFlags(threadKey.chanName, threadKey.boardName, threadKey.threadNumber).userPosts;
 		return insertLocks.lock(threadKey, () -> insertNewPostsLocked(threadKey,
-				meta, temporary, newThread, partial, serializedMap, userPosts));
+				meta, temporary, newThread, partial, serializedMap, userPosts, hasher));
 	}
 
 	private InsertResult insertNewPostsLocked(ThreadKey threadKey,
 			Meta meta, boolean temporary, boolean newThread, boolean partial,
-			HashMap<PostNumber, Serialized> serializedMap, Set<PostNumber> userPosts) throws IOException {
+			HashMap<PostNumber, Serialized> serializedMap, Set<PostNumber> userPosts,
+			Hasher hasher) throws IOException {
 		LongSparseArray<Void> deleted = null;
 		LongSparseArray<Void> restored = null;
 		int newCount = 0;
+		int postsCount = 0;
+		long postsSize = 0;
+		long oldPostsSize = 0;
 		String[] projection = {"rowid", Schema.Posts.Columns.POST_NUMBER_MAJOR,
-				Schema.Posts.Columns.POST_NUMBER_MINOR, Schema.Posts.Columns.FLAGS, Schema.Posts.Columns.HASH};
+				Schema.Posts.Columns.POST_NUMBER_MINOR, Schema.Posts.Columns.FLAGS, Schema.Posts.Columns.HASH,
+				"LENGTH(" + Schema.Posts.Columns.DATA + ")"};
 		Expression.Filter filter = threadKey.filterPosts().build();
 		try (Cursor cursor = database.query(Schema.Posts.TABLE_NAME,
 				projection, filter.value, filter.args, null, null, null)) {
 			while (cursor.moveToNext()) {
 				long id = cursor.getLong(0);
+				postsCount++;
 				PostNumber postNumber = new PostNumber(cursor.getInt(1), cursor.getInt(2));
 				int flags = cursor.getInt(3);
 				byte[] hash = cursor.getBlob(4);
@@ -777,11 +1228,21 @@ public class PagesDatabase {
 							}
 							restored.put(id, null);
 						}
+					} else if (Arrays.equals(serialized.getOtherFormatHash(hasher), hash)) {
+						// Same post stored in another format, rewrite it keeping the flags
+						if (FlagUtils.get(flags, Schema.Posts.Flags.DELETED)) {
+							flags = FlagUtils.set(flags, Schema.Posts.Flags.DELETED |
+									Schema.Posts.Flags.MARK_DELETED, false);
+							flags = FlagUtils.set(flags, Schema.Posts.Flags.MARK_EDITED, true);
+						}
+						serialized.flags = flags;
+						serialized.replace = true;
 					} else {
 						flags = FlagUtils.set(flags, Schema.Posts.Flags.DELETED |
 								Schema.Posts.Flags.MARK_DELETED, false);
 						flags = FlagUtils.set(flags, Schema.Posts.Flags.MARK_EDITED, true);
 						serialized.flags = flags;
+						serialized.replace = true;
 					}
 				} else if (!partial && !FlagUtils.get(flags, Schema.Posts.Flags.DELETED)) {
 					if (deleted == null) {
@@ -789,21 +1250,32 @@ public class PagesDatabase {
 					}
 					deleted.put(id, null);
 				}
-				if (serialized == null && FlagUtils.get(flags, Schema.Posts.Flags.MARK_NEW)) {
-					newCount++;
+				long size = cursor.getLong(5);
+				oldPostsSize += size;
+				if (serialized == null) {
+					if (FlagUtils.get(flags, Schema.Posts.Flags.MARK_NEW)) {
+						newCount++;
+					}
+					// Replaced posts are counted with their new data
+					postsSize += size;
 				}
 			}
 		}
+		int oldPostsCount = postsCount;
 		for (Serialized serialized : serializedMap.values()) {
 			if (FlagUtils.get(serialized.flags, Schema.Posts.Flags.MARK_NEW)) {
 				newCount++;
 			}
+			if (!serialized.replace) {
+				postsCount++;
+			}
+			postsSize += serialized.data.length;
 		}
 
 		ArrayList<InsertResult.Reply> replies = new ArrayList<>();
 		database.beginTransaction();
 		try {
-			upsertMeta(threadKey, temporary ? 0 : System.currentTimeMillis(), meta);
+			long threadId = upsertMeta(threadKey, temporary ? 0 : System.currentTimeMillis(), meta);
 			if (deleted != null) {
 				updateFlags(threadKey, Expression.LongIterator.create(deleted), "| " +
 						(Schema.Posts.Flags.DELETED | Schema.Posts.Flags.MARK_DELETED));
@@ -816,12 +1288,10 @@ public class PagesDatabase {
 			if (!serializedMap.isEmpty()) {
 				Iterator<Serialized> iterator = serializedMap.values().iterator();
 				HashSet<PostNumber> referencesTo = userPosts.isEmpty() ? null : new HashSet<>();
-				Expression.batchInsert(serializedMap.size(), 10, 8,
+				Expression.batchInsert(serializedMap.size(), 10, 6,
 						values -> database.compileStatement("INSERT OR REPLACE " +
 								"INTO " + Schema.Posts.TABLE_NAME + " (" +
-								Schema.Posts.Columns.CHAN_NAME + ", " +
-								Schema.Posts.Columns.BOARD_NAME + ", " +
-								Schema.Posts.Columns.THREAD_NUMBER + ", " +
+								Schema.Posts.Columns.THREAD_ID + ", " +
 								Schema.Posts.Columns.POST_NUMBER_MAJOR + ", " +
 								Schema.Posts.Columns.POST_NUMBER_MINOR + ", " +
 								Schema.Posts.Columns.FLAGS + ", " +
@@ -831,7 +1301,8 @@ public class PagesDatabase {
 						(statement, start) -> {
 							Serialized serialized = iterator.next();
 							int flags = serialized.flags;
-							if (referencesTo != null && FlagUtils.get(flags, Schema.Posts.Flags.MARK_NEW)) {
+							if (referencesTo != null && !serialized.replace &&
+									FlagUtils.get(flags, Schema.Posts.Flags.MARK_NEW)) {
 								referencesTo.clear();
 								PostItem.collectReferences(referencesTo, serialized.post.comment);
 								for (PostNumber reference : referencesTo) {
@@ -843,26 +1314,29 @@ public class PagesDatabase {
 									}
 								}
 							}
-							statement.bindString(start + 1, threadKey.chanName);
-							statement.bindString(start + 2, threadKey.boardName);
-							statement.bindString(start + 3, threadKey.threadNumber);
-							statement.bindLong(start + 4, serialized.post.number.major);
-							statement.bindLong(start + 5, serialized.post.number.minor);
-							statement.bindLong(start + 6, flags);
-							statement.bindBlob(start + 7, serialized.data);
-							statement.bindBlob(start + 8, serialized.hash);
+							statement.bindLong(start + 1, threadId);
+							statement.bindLong(start + 2, serialized.post.number.major);
+							statement.bindLong(start + 3, serialized.post.number.minor);
+							statement.bindLong(start + 4, flags);
+							statement.bindBlob(start + 5, serialized.data);
+							statement.bindBlob(start + 6, serialized.hash);
 						});
 			}
+			setPostsQuota(threadKey, postsCount, postsSize);
 			database.setTransactionSuccessful();
 		} finally {
 			database.endTransaction();
 		}
+		addTotalPostsQuota(postsCount - oldPostsCount, postsSize - oldPostsSize);
+		if (!serializedMap.isEmpty()) {
+			scheduleCleanupIfNeeded();
+		}
 
 		Cache.State state = new Cache.State(UUID.randomUUID(), newThread);
 		synchronized (cacheStates) {
 			cacheStates.put(threadKey, state);
 		}
-		return new InsertResult(state, replies, newCount);
+		return new InsertResult(state, replies, newCount, postsCount);
 	}
 
 	private final Expression.KeyLock<ThreadKey> collectLocks = new Expression.KeyLock<>();
@@ -887,6 +1361,7 @@ public class PagesDatabase {
 			case ERASE: {
 				Expression.Filter filter = threadKey.filterMeta().build();
 				database.delete(Schema.Meta.TABLE_NAME, filter.value, filter.args);
+				invalidateTotalPostsQuota();
 				break;
 			}
 			case OLD: {
@@ -913,7 +1388,9 @@ public class PagesDatabase {
 														firstExistingPostNumber.minor)))
 								.raw(Schema.Posts.Columns.FLAGS + " & " + Schema.Posts.Flags.DELETED)
 								.build();
-						database.delete(Schema.Posts.TABLE_NAME, filter.value, filter.args);
+						if (database.delete(Schema.Posts.TABLE_NAME, filter.value, filter.args) > 0) {
+							updatePostsQuota(threadKey);
+						}
 					}
 				}
 				break;
@@ -922,7 +1399,9 @@ public class PagesDatabase {
 				Expression.Filter filter = threadKey.filterPosts()
 						.raw(Schema.Posts.Columns.FLAGS + " & " + Schema.Posts.Flags.DELETED)
 						.build();
-				database.delete(Schema.Posts.TABLE_NAME, filter.value, filter.args);
+				if (database.delete(Schema.Posts.TABLE_NAME, filter.value, filter.args) > 0) {
+					updatePostsQuota(threadKey);
+				}
 				break;
 			}
 			default: {
@@ -998,21 +1477,8 @@ public class PagesDatabase {
 			}
 		}
 
-		List<Post> changed = null;
 		if (extractedList != null) {
-			@SuppressWarnings("unchecked")
-			List<Post> unsafeChanged = (List<Post>) (List<?>) extractedList;
-			for (int i = 0; i < extractedList.size(); i++) {
-				Extracted extracted = extractedList.get(i);
-				Post post;
-				try (JsonSerial.Reader reader = JsonSerial.reader(extracted.data)) {
-					post = Post.deserialize(extracted.postNumber, extracted.deleted, reader);
-				} catch (IOException e) {
-					throw new RuntimeException(e);
-				}
-				unsafeChanged.set(i, post);
-			}
-			changed = unsafeChanged;
+			Collections.sort(extractedList, (lhs, rhs) -> lhs.postNumber.compareTo(rhs.postNumber));
 		}
 		Collection<PostNumber> removed = Collections.emptyList();
 		if (existing != null) {
@@ -1064,7 +1530,7 @@ public class PagesDatabase {
 		}
 
 		Cache newCache = new Cache(newItems != null ? newItems : oldItems, originalPostNumber, state);
-		return new Diff(newCache, changed != null ? changed : Collections.emptyList(), removed,
+		return new Diff(newCache, extractedList != null ? extractedList : Collections.emptyList(), removed,
 				newPosts != null ? newPosts.keySet() : Collections.emptySet(),
 				deletedPosts != null ? deletedPosts.keySet() : Collections.emptySet(),
 				editedPosts != null ? editedPosts.keySet() : Collections.emptySet(),
@@ -1289,7 +1755,7 @@ public class PagesDatabase {
 				(legacyPosts.mHttpValidator.eTag, legacyPosts.mHttpValidator.lastModified) : null;
 		Uri archivedThreadUri = legacyPosts.mArchivedThreadUriString != null
 				? Uri.parse(legacyPosts.mArchivedThreadUriString) : null;
-		Meta meta = new Meta(validator, archivedThreadUri, legacyPosts.mUniquePosters, false, false);
+		Meta meta = new Meta(validator, archivedThreadUri, legacyPosts.mUniquePosters, -1f, false, false);
 		ArrayList<Post> posts = new ArrayList<>(legacyPosts.mPosts.length);
 		HashMap<PostNumber, Pair<PostItem.HideState, Boolean>> flags = new HashMap<>();
 		for (Legacy.Post legacyPost : legacyPosts.mPosts) {
@@ -1393,9 +1859,8 @@ public class PagesDatabase {
 
 		byte[][] data = new byte[posts.size()][];
 		for (int i = 0; i < posts.size(); i++) {
-			try (JsonSerial.Writer writer = JsonSerial.writer()) {
-				posts.get(i).serialize(writer);
-				data[i] = writer.build();
+			try {
+				data[i] = serializePost(posts.get(i), POST_FORMAT);
 			} catch (IOException e) {
 				e.printStackTrace();
 				return false;
@@ -1427,20 +1892,19 @@ public class PagesDatabase {
 		}
 		database.beginTransaction();
 		try {
+			long threadId;
 			try {
-				upsertMeta(threadKey, time, meta);
+				threadId = upsertMeta(threadKey, time, meta);
 			} catch (IOException e) {
 				e.printStackTrace();
 				return false;
 			}
 			int[] index = {0};
 			Hasher hasher = Hasher.getInstanceSha256();
-			Expression.batchInsert(posts.size(), 10, 8,
+			Expression.batchInsert(posts.size(), 10, 6,
 					values -> database.compileStatement("INSERT OR REPLACE " +
 							"INTO " + Schema.Posts.TABLE_NAME + " (" +
-							Schema.Posts.Columns.CHAN_NAME + ", " +
-							Schema.Posts.Columns.BOARD_NAME + ", " +
-							Schema.Posts.Columns.THREAD_NUMBER + ", " +
+							Schema.Posts.Columns.THREAD_ID + ", " +
 							Schema.Posts.Columns.POST_NUMBER_MAJOR + ", " +
 							Schema.Posts.Columns.POST_NUMBER_MINOR + ", " +
 							Schema.Posts.Columns.FLAGS + ", " +
@@ -1450,16 +1914,15 @@ public class PagesDatabase {
 					(statement, start) -> {
 						int i = index[0];
 						Post post = posts.get(i);
-						statement.bindString(start + 1, threadKey.chanName);
-						statement.bindString(start + 2, threadKey.boardName);
-						statement.bindString(start + 3, threadKey.threadNumber);
-						statement.bindLong(start + 4, post.number.major);
-						statement.bindLong(start + 5, post.number.minor);
-						statement.bindLong(start + 6, post.deleted ? Schema.Posts.Flags.DELETED : 0);
-						statement.bindBlob(start + 7, data[i]);
-						statement.bindBlob(start + 8, hasher.calculate(data[i]));
+						statement.bindLong(start + 1, threadId);
+						statement.bindLong(start + 2, post.number.major);
+						statement.bindLong(start + 3, post.number.minor);
+						statement.bindLong(start + 4, post.deleted ? Schema.Posts.Flags.DELETED : 0);
+						statement.bindBlob(start + 5, data[i]);
+						statement.bindBlob(start + 6, hasher.calculate(data[i]));
 						index[0]++;
 					});
+			updatePostsQuota(threadKey);
 			database.setTransactionSuccessful();
 		} finally {
 			database.endTransaction();
@@ -3,10 +3,15 @@ package com.mishiranu.dashchan.content.database;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.util.Pair;
 import androidx.annotation.NonNull;
+import chan.text.JsonSerial;
+import chan.text.ParseException;
 import chan.util.StringUtils;
 import com.mishiranu.dashchan.content.model.PostItem;
+import com.mishiranu.dashchan.content.model.PostNumber;
 import com.mishiranu.dashchan.util.FlagUtils;
+import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
 
@@ -44,6 +49,49 @@ public class ThreadsDatabase implements CommonDatabase.Instance {
 			this.state = state;
 			this.extra = extra;
 		}
+
+		public Pair<PostNumber, Integer> decodePosition() {
+			PostNumber positionPostNumber = null;
+			int positionOffset = 0;
+			if (state != null) {
+				try (JsonSerial.Reader reader = JsonSerial.reader(state)) {
+					reader.startObject();
+					while (!reader.endStruct()) {
+						switch (reader.nextName()) {
+							case "position": {
+								reader.startObject();
+								while (!reader.endStruct()) {
+									switch (reader.nextName()) {
+										case "number": {
+											positionPostNumber = PostNumber.parseNullable(reader.nextString());
+											break;
+										}
+										case "offset": {
+											positionOffset = reader.nextInt();
+											break;
+										}
+										default: {
+											reader.skip();
+											break;
+										}
+									}
+								}
+								break;
+							}
+							default: {
+								reader.skip();
+								break;
+							}
+						}
+					}
+				} catch (ParseException e) {
+					e.printStackTrace();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			return positionPostNumber != null ? new Pair<>(positionPostNumber, positionOffset) : null;
+		}
 	}
 
 	private final CommonDatabase database;
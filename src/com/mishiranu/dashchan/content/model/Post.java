@@ -4,6 +4,7 @@ import android.net.Uri;
 import chan.text.JsonSerial;
 import chan.text.ParseException;
 import chan.util.StringUtils;
+import com.mishiranu.dashchan.util.BinarySerial;
 import com.mishiranu.dashchan.util.FlagUtils;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -565,6 +566,164 @@ public final class Post implements Comparable<Post> {
 				name, identifier, tripcode, capcode, email, attachments, icons, vote);
 	}
 
+	private interface BinaryAttachmentType {
+		int FILE = 0;
+		int EMBEDDED = 1;
+	}
+
+	private static void writeUri(BinarySerial.Writer writer, Uri uri) {
+		writer.writeBoolean(uri != null);
+		if (uri != null) {
+			// Scheme and host are written separately, so they are stored once in string table
+			String string = uri.toString();
+			int start = string.indexOf("://");
+			int index = start >= 0 ? string.indexOf('/', start + 3) : -1;
+			if (index < 0) {
+				index = start >= 0 ? string.length() : 0;
+			}
+			writer.writeString(string.substring(0, index));
+			writer.writeString(string.substring(index));
+		}
+	}
+
+	private static Uri readUri(BinarySerial.Reader reader) throws ParseException {
+		if (reader.readBoolean()) {
+			String host = reader.readString();
+			String path = reader.readString();
+			return Uri.parse(host + path);
+		} else {
+			return null;
+		}
+	}
+
+	public void serialize(BinarySerial.Writer writer) {
+		writer.writeInt(flags);
+		writer.writeLong(timestamp);
+		writer.writeString(subject);
+		writer.writeLongString(comment);
+		writer.writeLongString(commentMarkup);
+		writer.writeString(name);
+		writer.writeString(identifier);
+		writer.writeString(tripcode);
+		writer.writeString(capcode);
+		writer.writeString(email);
+		int attachmentsCount = 0;
+		for (Attachment attachment : attachments) {
+			if (attachment instanceof Attachment.File || attachment instanceof Attachment.Embedded) {
+				attachmentsCount++;
+			}
+		}
+		writer.writeInt(attachmentsCount);
+		for (Attachment attachment : attachments) {
+			if (attachment instanceof Attachment.File) {
+				Attachment.File file = (Attachment.File) attachment;
+				writer.writeInt(BinaryAttachmentType.FILE);
+				writeUri(writer, file.fileUri);
+				writeUri(writer, file.thumbnailUri);
+				writer.writeString(file.originalName);
+				writer.writeInt(file.size);
+				writer.writeInt(file.width);
+				writer.writeInt(file.height);
+				writer.writeBoolean(file.spoiler);
+			} else if (attachment instanceof Attachment.Embedded) {
+				Attachment.Embedded embedded = (Attachment.Embedded) attachment;
+				writer.writeInt(BinaryAttachmentType.EMBEDDED);
+				writeUri(writer, embedded.fileUri);
+				writeUri(writer, embedded.thumbnailUri);
+				writer.writeString(embedded.embeddedType);
+				writer.writeString(embedded.contentType != null ? embedded.contentType.toString() : "");
+				writer.writeBoolean(embedded.canDownload);
+				writer.writeString(embedded.forcedName);
+			}
+		}
+		writer.writeInt(icons.size());
+		for (Icon icon : icons) {
+			writeUri(writer, icon.uri);
+			writer.writeString(icon.title);
+		}
+		writer.writeBoolean(vote != null);
+		if (vote != null) {
+			writer.writeInt(vote.like);
+			writer.writeInt(vote.dislike);
+		}
+	}
+
+	public static Post deserialize(PostNumber number, boolean deleted, BinarySerial.Reader reader)
+			throws ParseException {
+		int flags = reader.readInt();
+		long timestamp = reader.readLong();
+		String subject = reader.readString();
+		String comment = reader.readLongString();
+		String commentMarkup = reader.readLongString();
+		String name = reader.readString();
+		String identifier = reader.readString();
+		String tripcode = reader.readString();
+		String capcode = reader.readString();
+		String email = reader.readString();
+		List<Attachment> attachments = Collections.emptyList();
+		int attachmentsCount = reader.readInt();
+		if (attachmentsCount > 0) {
+			attachments = new ArrayList<>(attachmentsCount);
+			for (int i = 0; i < attachmentsCount; i++) {
+				int type = reader.readInt();
+				switch (type) {
+					case BinaryAttachmentType.FILE: {
+						Uri fileUri = readUri(reader);
+						Uri thumbnailUri = readUri(reader);
+						String originalName = reader.readString();
+						int size = reader.readInt();
+						int width = reader.readInt();
+						int height = reader.readInt();
+						boolean spoiler = reader.readBoolean();
+						attachments.add(new Attachment.File(fileUri, thumbnailUri, originalName,
+								size, width, height, spoiler));
+						break;
+					}
+					case BinaryAttachmentType.EMBEDDED: {
+						Uri fileUri = readUri(reader);
+						Uri thumbnailUri = readUri(reader);
+						String embeddedType = reader.readString();
+						String contentTypeString = reader.readString();
+						boolean canDownload = reader.readBoolean();
+						String forcedName = reader.readString();
+						Attachment.Embedded.ContentType contentType = null;
+						try {
+							contentType = Attachment.Embedded.ContentType.valueOf(contentTypeString);
+						} catch (IllegalArgumentException e) {
+							// Ignore
+						}
+						if (Attachment.Embedded.validate(false, fileUri, embeddedType, contentType)) {
+							attachments.add(new Attachment.Embedded(fileUri, thumbnailUri,
+									embeddedType, contentType, canDownload, forcedName));
+						}
+						break;
+					}
+					default: {
+						throw new ParseException();
+					}
+				}
+			}
+		}
+		List<Icon> icons = Collections.emptyList();
+		int iconsCount = reader.readInt();
+		if (iconsCount > 0) {
+			icons = new ArrayList<>(iconsCount);
+			for (int i = 0; i < iconsCount; i++) {
+				Uri uri = readUri(reader);
+				String title = reader.readString();
+				icons.add(new Icon(uri, title));
+			}
+		}
+		Vote vote = null;
+		if (reader.readBoolean()) {
+			int like = reader.readInt();
+			int dislike = reader.readInt();
+			vote = new Vote(like, dislike);
+		}
+		return new Post(number, deleted, flags, timestamp, subject, comment, commentMarkup,
+				name, identifier, tripcode, capcode, email, attachments, icons, vote);
+	}
+
 	public static final class Builder {
 		public PostNumber number;
 		private int flags;
@@ -103,14 +103,11 @@ public class PostItem implements AttachmentItem.Master, ChanMarkup.MarkupExtra,
 	private int ordinalIndex = ORDINAL_INDEX_NONE;
 
 	private String subject;
-	private CharSequence comment;
-	private CharSequence fullName;
-	private ColorScheme.Span[] commentSpans;
-	private ColorScheme.Span[] fullNameSpans;
-	private LinkSpan[] linkSpans;
-	private LinkSuffixSpan[] linkSuffixSpans;
 	private PostDateFormatter.Holder dateTimeHolder;
-	private boolean useDefaultName;
+
+	// Comment and name can be prepared in background, so they are published as immutable objects
+	private volatile CommentData commentData;
+	private volatile FullNameData fullNameData;
 
 	private final Set<PostNumber> referencesTo;
 	private Set<PostNumber> referencesFrom;
@@ -118,6 +115,34 @@ public class PostItem implements AttachmentItem.Master, ChanMarkup.MarkupExtra,
 	private HideState hideState = HideState.UNDEFINED;
 	private String hideReason;
 
+	private static class CommentData {
+		public final CharSequence comment;
+		public final ColorScheme.Span[] commentSpans;
+		public final LinkSpan[] linkSpans;
+		public final LinkSuffixSpan[] linkSuffixSpans;
+
+		public CommentData(CharSequence comment) {
+			this.comment = comment;
+			commentSpans = ColorScheme.getSpans(comment);
+			linkSpans = comment instanceof Spanned ? ((Spanned) comment)
+					.getSpans(0, comment.length(), LinkSpan.class) : null;
+			linkSuffixSpans = comment instanceof Spanned ? ((Spanned) comment)
+					.getSpans(0, comment.length(), LinkSuffixSpan.class) : null;
+		}
+	}
+
+	private static class FullNameData {
+		public final CharSequence fullName;
+		public final ColorScheme.Span[] fullNameSpans;
+		public final boolean useDefaultName;
+
+		public FullNameData(CharSequence fullName, boolean useDefaultName) {
+			this.fullName = fullName;
+			this.useDefaultName = useDefaultName;
+			fullNameSpans = ColorScheme.getSpans(fullName);
+		}
+	}
+
 	private static class ThreadData {
 		public static class Base {
 			public final int postsCount;
@@ -295,10 +320,11 @@ public class PostItem implements AttachmentItem.Master, ChanMarkup.MarkupExtra,
 
 	// Returns whether name is default. Call this method only after getFullName.
 	public boolean isUseDefaultName() {
-		return useDefaultName;
+		FullNameData fullNameData = this.fullNameData;
+		return fullNameData != null && fullNameData.useDefaultName;
 	}
 
-	private CharSequence makeFullName(ChanConfiguration configuration) {
+	private FullNameData makeFullName(ChanConfiguration configuration) {
 		String name = post.name;
 		String identifier = post.identifier;
 		String tripcode = post.tripcode;
@@ -345,25 +371,32 @@ public class PostItem implements AttachmentItem.Master, ChanMarkup.MarkupExtra,
 		} else {
 			fullName = name;
 		}
-		this.useDefaultName = useDefaultName;
-		return fullName;
+		if (StringUtils.isEmpty(fullName)) {
+			fullName = "";
+		}
+		return new FullNameData(fullName, useDefaultName);
 	}
 
 	@NonNull
 	public CharSequence getFullName(Chan chan) {
-		if (fullName == null) {
-			CharSequence fullName = makeFullName(chan.configuration);
-			if (StringUtils.isEmpty(fullName)) {
-				fullName = "";
+		FullNameData fullNameData = this.fullNameData;
+		if (fullNameData == null) {
+			fullNameData = makeFullName(chan.configuration);
+			synchronized (this) {
+				// Keep the first published result, so text and spans always belong to the same object
+				if (this.fullNameData == null) {
+					this.fullNameData = fullNameData;
+				} else {
+					fullNameData = this.fullNameData;
+				}
 			}
-			fullNameSpans = ColorScheme.getSpans(fullName);
-			this.fullName = fullName;
 		}
-		return fullName;
+		return fullNameData.fullName;
 	}
 
 	public ColorScheme.Span[] getFullNameSpans() {
-		return fullNameSpans;
+		FullNameData fullNameData = this.fullNameData;
+		return fullNameData != null ? fullNameData.fullNameSpans : null;
 	}
 
 	public String getEmail() {
@@ -480,18 +513,20 @@ public class PostItem implements AttachmentItem.Master, ChanMarkup.MarkupExtra,
 
 	@NonNull
 	public CharSequence getComment(Chan chan) {
-		if (comment == null) {
+		CommentData commentData = this.commentData;
+		if (commentData == null) {
 			CharSequence comment = obtainComment(post.comment, chan.markup,
 					getThreadNumber(), getOriginalPostNumber(), this);
-			comment = StringUtils.reduceEmptyLines(comment);
-			commentSpans = ColorScheme.getSpans(comment);
-			linkSpans = comment instanceof Spanned ? ((Spanned) comment)
-					.getSpans(0, comment.length(), LinkSpan.class) : null;
-			linkSuffixSpans = comment instanceof Spanned ? ((Spanned) comment)
-					.getSpans(0, comment.length(), LinkSuffixSpan.class) : null;
-			this.comment = comment;
+			commentData = new CommentData(StringUtils.reduceEmptyLines(comment));
+			synchronized (this) {
+				if (this.commentData == null) {
+					this.commentData = commentData;
+				} else {
+					commentData = this.commentData;
+				}
+			}
 		}
-		return comment;
+		return commentData.comment;
 	}
 
 	@NonNull
@@ -513,7 +548,8 @@ public class PostItem implements AttachmentItem.Master, ChanMarkup.MarkupExtra,
 	}
 
 	public ColorScheme.Span[] getCommentSpans() {
-		return commentSpans;
+		CommentData commentData = this.commentData;
+		return commentData != null ? commentData.commentSpans : null;
 	}
 
 	public CharSequence getThreadCommentShort(int maxWidth, float textSize, int maxLines) {
@@ -548,12 +584,14 @@ public class PostItem implements AttachmentItem.Master, ChanMarkup.MarkupExtra,
 
 	// Must be called only after getComment.
 	public LinkSuffixSpan[] getLinkSuffixSpansAfterComment() {
-		return linkSuffixSpans;
+		CommentData commentData = this.commentData;
+		return commentData != null ? commentData.linkSuffixSpans : null;
 	}
 
 	// Must be called only after getComment.
 	public LinkSpan[] getLinkSpansAfterComment() {
-		return linkSpans;
+		CommentData commentData = this.commentData;
+		return commentData != null ? commentData.linkSpans : null;
 	}
 
 	public List<Post.Icon> getIcons() {
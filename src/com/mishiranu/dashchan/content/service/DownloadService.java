@@ -25,6 +25,7 @@ import androidx.core.app.NotificationCompat;
 
 import com.mishiranu.dashchan.C;
 import com.mishiranu.dashchan.R;
+import com.mishiranu.dashchan.content.AdvancedPreferences;
 import com.mishiranu.dashchan.content.CacheManager;
 import com.mishiranu.dashchan.content.FileProvider;
 import com.mishiranu.dashchan.content.LocaleManager;
@@ -56,7 +57,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -71,8 +71,13 @@ import chan.util.CommonUtils;
 import chan.util.DataFile;
 import chan.util.StringUtils;
 
-public class DownloadService extends BaseService implements ReadFileTask.Callback {
+public class DownloadService extends BaseService {
+	private static final int MAX_ACTIVE_TASKS = 4;
+	private static final int MAX_ACTIVE_TASKS_PER_HOST = 2;
+
 	private static final Executor SINGLE_THREAD_EXECUTOR = Executors.newSingleThreadExecutor();
+	private static final Executor DOWNLOAD_EXECUTOR = ConcurrentUtils.newThreadPool(0, MAX_ACTIVE_TASKS, 10000,
+			"DownloadService", null);
 
 	private static final String ACTION_CANCEL = "cancel";
 	private static final String ACTION_RETRY = "retry";
@@ -99,15 +104,17 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 	private final LinkedHashMap<String, TaskData> queuedTasks = new LinkedHashMap<>();
 	private final LinkedHashMap<String, TaskData> successTasks = new LinkedHashMap<>();
 	private final LinkedHashMap<String, TaskData> errorTasks = new LinkedHashMap<>();
-	private Pair<TaskData, ReadFileTask> activeTask;
+	private final LinkedHashMap<String, ActiveTask> activeTasks = new LinkedHashMap<>();
+	private final HashMap<String, ActiveTask> stoppingTasks = new HashMap<>();
 
 	private NotificationCompat.Builder builder;
 
-	private int progress;
-	private int progressMax;
 	private long lastUpdate;
+	private long downloadedBytes;
+	private long speedBytes;
+	private long speedTime;
+	private long speed;
 
-	private DataFile activeTaskDataFile = null;
 	private DataFile lastSuccessTaskDataFile = null;
 
 	private static File getSavedDownloadRetryFile() {
@@ -191,10 +198,11 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 	}
 
 	private void cleanup() {
-		if (activeTask != null) {
-			activeTask.second.cancel();
-			activeTask = null;
+		for (ActiveTask activeTask : activeTasks.values()) {
+			activeTask.cancel();
 		}
+		activeTasks.clear();
+		stoppingTasks.clear();
 		cleanupRequests();
 		for (TaskData taskData : queuedTasks.values()) {
 			if (taskData.input != null) {
@@ -205,7 +213,6 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 		successTasks.clear();
 		errorTasks.clear();
 		notificationsQueue.clear();
-		activeTaskDataFile = null;
 		lastSuccessTaskDataFile = null;
 		refreshNotification(NotificationUpdate.SYNC);
 		startStopForeground(false, null);
@@ -251,7 +258,7 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 			} else {
 				handlePrimaryRequest();
 				enqueueTasksFromRequests();
-				startNextTask();
+				startNextTasks();
 			}
 		}
 		for (Callback callback : callbacks) {
@@ -285,8 +292,8 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 			} else {
 				for (DownloadItem downloadItem : directRequest.downloadItems) {
 					enqueue(new TaskData(downloadItem.chanName, directRequest.overwrite, downloadItem.uri,
-							downloadItem.checkSha256, downloadItem.checkFingerprints, directRequest.target,
-							directRequest.path, downloadItem.name, directRequest.allowWrite));
+							downloadItem.size, downloadItem.checkSha256, downloadItem.checkFingerprints,
+							directRequest.target, directRequest.path, downloadItem.name, directRequest.allowWrite));
 				}
 			}
 		}
@@ -296,9 +303,13 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 
 	private void enqueue(TaskData taskData) {
 		String key = taskData.getKey();
-		if (activeTask != null && activeTask.first.getKey().equals(key)) {
-			activeTask.second.cancel();
-			activeTask = null;
+		ActiveTask activeTask = activeTasks.remove(key);
+		if (activeTask != null) {
+			activeTask.cancel();
+			if (activeTask.running) {
+				// Cancelled task may still be deleting its files, so the new one waits for it
+				stoppingTasks.put(key, activeTask);
+			}
 		}
 		TaskData oldTaskData = queuedTasks.remove(key);
 		if (oldTaskData != null && oldTaskData.input != null) {
@@ -309,36 +320,194 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 		queuedTasks.put(key, taskData);
 	}
 
-	private void startNextTask() {
-		if (activeTask == null && !queuedTasks.isEmpty()) {
-			Iterator<TaskData> iterator = queuedTasks.values().iterator();
-			TaskData taskData = iterator.next();
-			iterator.remove();
+	private static String getHostKey(TaskData taskData) {
+		if (taskData.uri == null) {
+			return null;
+		}
+		Chan chan = Chan.getPreferred(taskData.chanName, taskData.uri);
+		if (AdvancedPreferences.isSingleConnection(chan.name)) {
+			// HttpClient allows only one connection for the whole chan
+			return "chan:" + chan.name;
+		}
+		String host = taskData.uri.getHost();
+		return "host:" + (host != null ? host.toLowerCase(Locale.US) : chan.name);
+	}
+
+	private TaskData pollNextTask() {
+		HashMap<String, Integer> hostCounts = new HashMap<>();
+		for (ActiveTask activeTask : activeTasks.values()) {
+			if (activeTask.hostKey != null) {
+				Integer count = hostCounts.get(activeTask.hostKey);
+				hostCounts.put(activeTask.hostKey, count != null ? count + 1 : 1);
+			}
+		}
+		HashMap<String, String> hostKeys = new HashMap<>();
+		TaskData nextTaskData = null;
+		long nextWeight = 0;
+		for (TaskData taskData : queuedTasks.values()) {
+			if (stoppingTasks.containsKey(taskData.getKey())) {
+				continue;
+			}
+			String hostKey = null;
+			if (taskData.uri != null) {
+				String keyHost = taskData.chanName + ":" + taskData.uri.getHost();
+				hostKey = hostKeys.get(keyHost);
+				if (hostKey == null) {
+					hostKey = getHostKey(taskData);
+					hostKeys.put(keyHost, hostKey);
+				}
+			}
+			Integer count = hostKey != null ? hostCounts.get(hostKey) : null;
+			int limit = hostKey != null && hostKey.startsWith("chan:") ? 1 : MAX_ACTIVE_TASKS_PER_HOST;
+			if (count == null || count < limit) {
+				// Small files first, so most of the files are saved as soon as possible
+				long weight = taskData.getWeight();
+				if (nextTaskData == null || weight < nextWeight) {
+					nextTaskData = taskData;
+					nextWeight = weight;
+				}
+			}
+		}
+		if (nextTaskData != null) {
+			queuedTasks.remove(nextTaskData.getKey());
+		}
+		return nextTaskData;
+	}
+
+	private void startNextTasks() {
+		while (activeTasks.size() < MAX_ACTIVE_TASKS) {
+			TaskData taskData = pollNextTask();
+			if (taskData == null) {
+				break;
+			}
+			ActiveTask activeTask = new ActiveTask(taskData);
+			activeTasks.put(taskData.getKey(), activeTask);
+			activeTask.start();
+		}
+		if (activeTasks.isEmpty() && queuedTasks.isEmpty()) {
+			SINGLE_THREAD_EXECUTOR.execute(cachedDirectories::clear);
+		}
+	}
+
+	private class ActiveTask implements ReadFileTask.Callback {
+		public final TaskData taskData;
+		public final String hostKey;
+
+		public DataFile dataFile;
+		public ReadFileTask readFileTask;
+		public long progress;
+		public long progressMax;
+		private boolean progressStarted;
+		private boolean running;
+
+		public ActiveTask(TaskData taskData) {
+			this.taskData = taskData;
+			hostKey = getHostKey(taskData);
+		}
+
+		private boolean isActive() {
+			return activeTasks.get(taskData.getKey()) == this;
+		}
+
+		public void start() {
 			SINGLE_THREAD_EXECUTOR.execute(() -> {
-				DataFile taskDataFile = getDataFile(taskData);
-				activeTaskDataFile = taskDataFile;
+				DataFile dataFile = getDataFile(taskData);
+				ReadFileTask readFileTask = null;
+				if (taskData.input == null) {
+					Chan chan = Chan.getPreferred(taskData.chanName, taskData.uri);
+					readFileTask = ReadFileTask.createShared(this, chan, taskData.uri, dataFile,
+							taskData.overwrite, taskData.checkSha256, taskData.checkFingerprints);
+				}
+				ReadFileTask finalReadFileTask = readFileTask;
+				ConcurrentUtils.HANDLER.post(() -> onPrepared(dataFile, finalReadFileTask));
+			});
+		}
+
+		private void onPrepared(DataFile dataFile, ReadFileTask readFileTask) {
+			if (!isActive()) {
 				if (taskData.input != null) {
+					IOUtils.close(taskData.input);
+				}
+				return;
+			}
+			this.dataFile = dataFile;
+			running = true;
+			if (readFileTask != null) {
+				this.readFileTask = readFileTask;
+				readFileTask.execute(DOWNLOAD_EXECUTOR);
+			} else {
+				DOWNLOAD_EXECUTOR.execute(() -> {
 					boolean success = false;
-					try (InputStream input = taskData.input; OutputStream output = taskDataFile.openOutputStream()) {
+					try (InputStream input = taskData.input; OutputStream output = dataFile.openOutputStream()) {
 						IOUtils.copyStream(input, output);
 						success = true;
 					} catch (IOException e) {
 						e.printStackTrace();
 					}
 					boolean finalSuccess = success;
-					ConcurrentUtils.HANDLER.post(() -> onFinishDownloadingInternal(finalSuccess, new TaskData(taskData.chanName, taskData.overwrite,
-							null, taskData.target, taskData.path, taskData.name, taskData.allowWrite)));
-				} else {
-					Chan chan = Chan.getPreferred(taskData.chanName, taskData.uri);
-					ReadFileTask readFileTask = ReadFileTask.createShared(this, chan,
-							taskData.uri, taskDataFile, taskData.overwrite,
-							taskData.checkSha256, taskData.checkFingerprints);
-					activeTask = new Pair<>(taskData, readFileTask);
-					readFileTask.execute(SINGLE_THREAD_EXECUTOR);
-				}
-			});
-		} else {
-			cachedDirectories.clear();
+					ConcurrentUtils.HANDLER.post(() -> {
+						if (isActive()) {
+							onFinishDownloadingInternal(this, finalSuccess, new TaskData(taskData.chanName,
+									taskData.overwrite, null, taskData.target, taskData.path,
+									taskData.name, taskData.allowWrite));
+						} else {
+							onStopped();
+						}
+					});
+				});
+			}
+		}
+
+		public void cancel() {
+			if (readFileTask != null) {
+				readFileTask.cancel();
+			}
+		}
+
+		private void onStopped() {
+			running = false;
+			String key = taskData.getKey();
+			if (stoppingTasks.get(key) == this) {
+				stoppingTasks.remove(key);
+				startNextTasks();
+			}
+		}
+
+		@Override
+		public void onStartDownloading() {
+			progress = 0;
+			progressMax = 0;
+			refreshNotification(NotificationUpdate.NORMAL);
+		}
+
+		@Override
+		public void onFinishDownloading(boolean success, Uri uri, DataFile file, ErrorItem errorItem) {
+			if (isActive()) {
+				TaskData taskData = this.taskData.newFinishedFromCache(readFileTask.isDownloadingFromCache());
+				onFinishDownloadingInternal(this, success, taskData);
+			} else {
+				onStopped();
+			}
+		}
+
+		@Override
+		public void onCancelComplete() {
+			onStopped();
+		}
+
+		@Override
+		public void onUpdateProgress(long progress, long progressMax) {
+			if (progressStarted) {
+				downloadedBytes += Math.max(0, progress - this.progress);
+			}
+			progressStarted = true;
+			this.progress = progress;
+			this.progressMax = progressMax;
+			long t = SystemClock.elapsedRealtime();
+			if (t - lastUpdate >= 500L) {
+				lastUpdate = t;
+				refreshNotification(NotificationUpdate.NORMAL);
+			}
 		}
 	}
 
@@ -386,9 +555,7 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 
 	private HashSet<String> collectActiveKeys() {
 		HashSet<String> activeKeys = new HashSet<>(queuedTasks.keySet());
-		if (activeTask != null) {
-			activeKeys.add(activeTask.first.getKey());
-		}
+		activeKeys.addAll(activeTasks.keySet());
 		return activeKeys;
 	}
 
@@ -491,7 +658,7 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 						keys.contains(key) || activeKeys.contains(key));
 				keys.add(key);
 				finalItems.add(new DownloadItem(downloadItem.chanName, downloadItem.uri, name,
-						downloadItem.checkSha256, downloadItem.checkFingerprints));
+						downloadItem.size, downloadItem.checkSha256, downloadItem.checkFingerprints));
 			}
 			if (Thread.interrupted()) {
 				throw new InterruptedException();
@@ -620,7 +787,7 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 		}
 
 		private void retry() {
-			if (activeTask == null && queuedTasks.isEmpty()) {
+			if (activeTasks.isEmpty() && queuedTasks.isEmpty()) {
 				successTasks.clear();
 				ArrayList<TaskData> errorTasks = new ArrayList<>(DownloadService.this.errorTasks.values());
 				DownloadService.this.errorTasks.clear();
@@ -648,7 +815,7 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 						enqueue(taskData);
 					}
 				}
-				startNextTask();
+				startNextTasks();
 			}
 		}
 
@@ -772,6 +939,7 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 		public final Type type;
 		public final boolean allowHeadsUp;
 		public final int queuedTasks;
+		public final int activeTasks;
 		public final int successTasks;
 		public final int errorTasks;
 		public final boolean allowRetry;
@@ -781,16 +949,19 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 		public final String activeName;
 		public final int progress;
 		public final int progressMax;
+		public final long speed;
 		public final boolean updateImageOnly;
 		public final CountDownLatch syncLatch;
 
 		private NotificationData(Type type, boolean allowHeadsUp,
-								 int queuedTasks, int successTasks, int errorTasks, boolean allowRetry,
+								 int queuedTasks, int activeTasks, int successTasks, int errorTasks, boolean allowRetry,
 								 boolean hasNotFromCache, DataFile lastSuccessFile, boolean allowWrite,
-								 String activeName, int progress, int progressMax, boolean updateImageOnly, CountDownLatch syncLatch) {
+								 String activeName, int progress, int progressMax, long speed,
+								 boolean updateImageOnly, CountDownLatch syncLatch) {
 			this.type = type;
 			this.allowHeadsUp = allowHeadsUp;
 			this.queuedTasks = queuedTasks;
+			this.activeTasks = activeTasks;
 			this.successTasks = successTasks;
 			this.errorTasks = errorTasks;
 			this.allowRetry = allowRetry;
@@ -800,26 +971,28 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 			this.activeName = activeName;
 			this.progress = progress;
 			this.progressMax = progressMax;
+			this.speed = speed;
 			this.updateImageOnly = updateImageOnly;
 			this.syncLatch = syncLatch;
 		}
 
 		public static NotificationData updateData(Type type, boolean allowHeadsUp,
-												  int queuedTasks, int successTasks, int errorTasks, boolean allowRetry, boolean hasExternal,
-												  DataFile lastSuccessFile, boolean allowWrite, String activeName, int progress, int progressMax) {
-			return new NotificationData(type, allowHeadsUp, queuedTasks, successTasks, errorTasks,
+												  int queuedTasks, int activeTasks, int successTasks, int errorTasks,
+												  boolean allowRetry, boolean hasExternal, DataFile lastSuccessFile, boolean allowWrite,
+												  String activeName, int progress, int progressMax, long speed) {
+			return new NotificationData(type, allowHeadsUp, queuedTasks, activeTasks, successTasks, errorTasks,
 					allowRetry, hasExternal, lastSuccessFile, allowWrite,
-					activeName, progress, progressMax, false, null);
+					activeName, progress, progressMax, speed, false, null);
 		}
 
 		public static NotificationData updateImageOnly(DataFile lastSuccessFile, boolean allowWrite) {
-			return new NotificationData(null, false, 0, 0, 0, false, false,
-					lastSuccessFile, allowWrite, null, 0, 0, true, null);
+			return new NotificationData(null, false, 0, 0, 0, 0, false, false,
+					lastSuccessFile, allowWrite, null, 0, 0, 0, true, null);
 		}
 
 		public static NotificationData sync(CountDownLatch syncLatch) {
-			return new NotificationData(null, false, 0, 0, 0, false, false,
-					null, false, null, 0, 0, false, syncLatch);
+			return new NotificationData(null, false, 0, 0, 0, 0, false, false,
+					null, false, null, 0, 0, 0, false, syncLatch);
 		}
 	}
 
@@ -858,6 +1031,7 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 		public final boolean overwrite;
 		public final InputStream input;
 		public final Uri uri;
+		public final long size;
 		public final byte[] checkSha256;
 		public final ChanManager.Fingerprints checkFingerprints;
 		public final DataFile.Target target;
@@ -866,13 +1040,15 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 		public final boolean allowWrite;
 
 		private TaskData(String chanName, boolean finishedFromCache, boolean overwrite,
-						 InputStream input, Uri uri, byte[] checkSha256, ChanManager.Fingerprints checkFingerprints,
+						 InputStream input, Uri uri, long size, byte[] checkSha256,
+						 ChanManager.Fingerprints checkFingerprints,
 						 DataFile.Target target, String path, String name, boolean allowWrite) {
 			this.chanName = chanName;
 			this.finishedFromCache = finishedFromCache;
 			this.overwrite = overwrite;
 			this.input = input;
 			this.uri = uri;
+			this.size = size;
 			this.checkSha256 = checkSha256;
 			this.checkFingerprints = checkFingerprints;
 			this.target = target;
@@ -883,25 +1059,42 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 
 		public TaskData(String chanName, boolean overwrite,
 						InputStream input, DataFile.Target target, String path, String name, boolean allowWrite) {
-			this(chanName, true, overwrite, input, null, null, null, target, path, name, allowWrite);
+			this(chanName, true, overwrite, input, null, 0, null, null, target, path, name, allowWrite);
 		}
 
 		public TaskData(String chanName, boolean overwrite,
-						Uri from, byte[] checkSha256, ChanManager.Fingerprints checkFingerprints,
+						Uri from, long size, byte[] checkSha256, ChanManager.Fingerprints checkFingerprints,
 						DataFile.Target target, String path, String name, boolean allowWrite) {
-			this(chanName, false, overwrite, null, from, checkSha256, checkFingerprints,
+			this(chanName, false, overwrite, null, from, size, checkSha256, checkFingerprints,
 					target, path, name, allowWrite);
 		}
 
 		public TaskData newFinishedFromCache(boolean finishedFromCache) {
 			return this.finishedFromCache == finishedFromCache ? this : new TaskData(chanName, finishedFromCache,
-					overwrite, input, uri, checkSha256, checkFingerprints, target, path, name, allowWrite);
+					overwrite, input, uri, size, checkSha256, checkFingerprints, target, path, name, allowWrite);
 		}
 
 		public String getKey() {
 			return getTargetPathKey(target, path, name);
 		}
 
+		public long getWeight() {
+			if (input != null) {
+				return 0;
+			} else if (size > 0) {
+				return size;
+			}
+			// Guess the size from file type when it's unknown
+			String extension = StringUtils.getFileExtension(name);
+			if (C.IMAGE_EXTENSIONS.contains(extension)) {
+				return 500 * 1000;
+			} else if (C.VIDEO_EXTENSIONS.contains(extension) || C.AUDIO_EXTENSIONS.contains(extension)) {
+				return 10 * 1000 * 1000;
+			} else {
+				return 1000 * 1000;
+			}
+		}
+
 		@Override
 		public int describeContents() {
 			return 0;
@@ -917,6 +1110,7 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 			}
 			dest.writeByte((byte) (overwrite ? 1 : 0));
 			dest.writeParcelable(uri, flags);
+			dest.writeLong(size);
 			dest.writeByteArray(checkSha256);
 			dest.writeString(target.name());
 			dest.writeString(path);
@@ -929,16 +1123,17 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 			public TaskData createFromParcel(Parcel source) {
 				String chanName = source.readString();
 				boolean finishedFromCache = source.readByte() != 0;
+				ChanManager.Fingerprints checkFingerprints = source.readByte() != 0
+						? ChanManager.Fingerprints.CREATOR.createFromParcel(source) : null;
 				boolean overwrite = source.readByte() != 0;
 				Uri uri = source.readParcelable(getClass().getClassLoader());
+				long size = source.readLong();
 				byte[] checkSha256 = source.createByteArray();
-				ChanManager.Fingerprints checkFingerprints = source.readByte() != 0
-						? ChanManager.Fingerprints.CREATOR.createFromParcel(source) : null;
 				DataFile.Target target = DataFile.Target.valueOf(source.readString());
 				String path = source.readString();
 				String name = source.readString();
 				boolean allowWrite = source.readByte() != 0;
-				return new TaskData(chanName, finishedFromCache, overwrite, null, uri,
+				return new TaskData(chanName, finishedFromCache, overwrite, null, uri, size,
 						checkSha256, checkFingerprints, target, path, name, allowWrite);
 			}
 
@@ -1029,10 +1224,12 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 		switch (notificationData.type) {
 			case PROGRESS: {
 				int ready = notificationData.errorTasks + notificationData.successTasks;
-				int total = ready + notificationData.queuedTasks + 1;
+				int total = ready + notificationData.queuedTasks + Math.max(1, notificationData.activeTasks);
 				ready++;
 				contentTitle = getString(R.string.downloading_number_of_number__format, ready, total);
-				contentText = getString(R.string.file_name__format, notificationData.activeName);
+				contentText = notificationData.speed > 0 ? getString(R.string.file_name_speed__format,
+						notificationData.activeName, StringUtils.formatFileSize(notificationData.speed, false))
+						: getString(R.string.file_name__format, notificationData.activeName);
 				headsUp = false;
 				foreground = true;
 				builder.setProgress(notificationData.progressMax, notificationData.progress,
@@ -1108,7 +1305,7 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 	private enum NotificationUpdate {NORMAL, HEADS_UP, SYNC}
 
 	private void refreshNotification(NotificationUpdate notificationUpdate) {
-		boolean hasActiveTask = activeTask != null;
+		boolean hasActiveTask = !activeTasks.isEmpty();
 		boolean hasResults = !queuedTasks.isEmpty() || !successTasks.isEmpty() || !errorTasks.isEmpty();
 		boolean hasRequests = primaryRequest != null || !directRequests.isEmpty();
 		boolean needForegroundOrNotification = hasActiveTask || hasResults || hasRequests;
@@ -1142,11 +1339,22 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 
 			boolean allowHeadsUp = type == NotificationData.Type.RESULT &&
 					notificationUpdate == NotificationUpdate.HEADS_UP;
-			String activeName = hasActiveTask ? activeTask.second.getFileName() : null;
+			String activeName = null;
+			long progress = 0;
+			long progressMax = 0;
+			for (ActiveTask activeTask : activeTasks.values()) {
+				activeName = activeTask.taskData.name;
+				if (activeTask.progressMax > 0) {
+					progress += activeTask.progress;
+					progressMax += activeTask.progressMax;
+				}
+			}
+			updateSpeed(hasActiveTask);
 
 			notificationsQueue.add(NotificationData.updateData(type, allowHeadsUp,
-					queuedTasks.size(), successTasks.size(), errorTasks.size(), allowRetry, hasNotFromCache,
-					lastSuccessTaskDataFile, allowWrite, activeName, progress, progressMax));
+					queuedTasks.size(), activeTasks.size(), successTasks.size(), errorTasks.size(),
+					allowRetry, hasNotFromCache, lastSuccessTaskDataFile, allowWrite, activeName,
+					(int) (progress / 1000), (int) (progressMax / 1000), speed));
 		}
 		if (hasActiveTask) {
 			wakeLock.acquire();
@@ -1167,22 +1375,25 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 		}
 	}
 
-	@Override
-	public void onStartDownloading() {
-		progress = 0;
-		progressMax = 0;
-		refreshNotification(NotificationUpdate.NORMAL);
-	}
-
-	@Override
-	public void onFinishDownloading(boolean success, Uri uri, DataFile file, ErrorItem errorItem) {
-		TaskData taskData = activeTask.first.newFinishedFromCache(activeTask.second.isDownloadingFromCache());
-		activeTask = null;
-		onFinishDownloadingInternal(success, taskData);
+	private void updateSpeed(boolean hasActiveTask) {
+		long time = SystemClock.elapsedRealtime();
+		if (!hasActiveTask) {
+			speedTime = 0;
+			speed = 0;
+		} else if (speedTime == 0) {
+			speedTime = time;
+			speedBytes = downloadedBytes;
+		} else if (time - speedTime >= 1000) {
+			long currentSpeed = (downloadedBytes - speedBytes) * 1000 / (time - speedTime);
+			speed = speed > 0 ? (speed + currentSpeed) / 2 : currentSpeed;
+			speedTime = time;
+			speedBytes = downloadedBytes;
+		}
 	}
 
-	private void onFinishDownloadingInternal(boolean success, TaskData taskData) {
-		File file = activeTaskDataFile.getFileOrUri().first;
+	private void onFinishDownloadingInternal(ActiveTask activeTask, boolean success, TaskData taskData) {
+		activeTasks.remove(activeTask.taskData.getKey());
+		File file = activeTask.dataFile.getFileOrUri().first;
 
 		if (success) {
 			if (file != null) {
@@ -1194,36 +1405,24 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 			callback.onFinishDownloading(success, taskData.target, taskData.path, taskData.name);
 		}
 		if (success) {
-			lastSuccessTaskDataFile = activeTaskDataFile;
+			lastSuccessTaskDataFile = activeTask.dataFile;
 			successTasks.put(taskData.getKey(), taskData);
 		} else {
 			errorTasks.put(taskData.getKey(), taskData);
 		}
-		if (!queuedTasks.isEmpty()) {
+		if (!queuedTasks.isEmpty() || !activeTasks.isEmpty()) {
 			if (success && taskData.target.isExternal()) {
 				// Update image explicitly, because task type won't be changed
 				notificationsQueue.add(NotificationData.updateImageOnly(lastSuccessTaskDataFile, taskData.allowWrite));
 			}
-			startNextTask();
+			startNextTasks();
+			refreshNotification(NotificationUpdate.NORMAL);
 		} else {
-			cachedDirectories.clear();
-			activeTaskDataFile = null;
+			SINGLE_THREAD_EXECUTOR.execute(cachedDirectories::clear);
 			refreshNotification(NotificationUpdate.HEADS_UP);
 		}
 	}
 
-
-	@Override
-	public void onUpdateProgress(long progress, long progressMax) {
-		this.progress = (int) (progress / 1000);
-		this.progressMax = (int) (progressMax / 1000);
-		long t = SystemClock.elapsedRealtime();
-		if (t - lastUpdate >= 500L) {
-			lastUpdate = t;
-			refreshNotification(NotificationUpdate.NORMAL);
-		}
-	}
-
 	private interface ScanCallback {
 		void onComplete(Uri uri);
 	}
@@ -1421,7 +1620,7 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 			for (RequestItem requestItem : items) {
 				downloadItems.add(new DownloadItem(chanName, requestItem.uri, getDesiredFileName(requestItem.uri,
 						requestItem.fileName, originalName ? requestItem.originalName : null, detailName,
-						chanName, boardName, threadNumber), null, null));
+						chanName, boardName, threadNumber), requestItem.size, null, null));
 			}
 			return new DirectRequest(DataFile.Target.DOWNLOADS, path, true, downloadItems, null, allowWrite);
 		}
@@ -1469,11 +1668,17 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 		public final Uri uri;
 		public final String fileName;
 		public final String originalName;
+		public final long size;
 
-		public RequestItem(Uri uri, String fileName, String originalName) {
+		public RequestItem(Uri uri, String fileName, String originalName, long size) {
 			this.uri = uri;
 			this.fileName = fileName;
 			this.originalName = originalName;
+			this.size = size;
+		}
+
+		public RequestItem(Uri uri, String fileName, String originalName) {
+			this(uri, fileName, originalName, 0);
 		}
 	}
 
@@ -1481,18 +1686,25 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 		public final String chanName;
 		public final Uri uri;
 		public final String name;
+		public final long size;
 		public final byte[] checkSha256;
 		public final ChanManager.Fingerprints checkFingerprints;
 
-		public DownloadItem(String chanName, Uri uri, String name,
+		public DownloadItem(String chanName, Uri uri, String name, long size,
 							byte[] checkSha256, ChanManager.Fingerprints checkFingerprints) {
 			this.chanName = chanName;
 			this.uri = uri;
 			this.name = name;
+			this.size = size;
 			this.checkSha256 = checkSha256;
 			this.checkFingerprints = checkFingerprints;
 		}
 
+		public DownloadItem(String chanName, Uri uri, String name,
+							byte[] checkSha256, ChanManager.Fingerprints checkFingerprints) {
+			this(chanName, uri, name, 0, checkSha256, checkFingerprints);
+		}
+
 		@Override
 		public int describeContents() {
 			return 0;
@@ -1503,6 +1715,7 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 			dest.writeString(chanName);
 			dest.writeString(uri != null ? uri.toString() : null);
 			dest.writeString(name);
+			dest.writeLong(size);
 			dest.writeByteArray(checkSha256);
 			dest.writeByte((byte) (checkFingerprints != null ? 1 : 0));
 			if (checkFingerprints != null) {
@@ -1521,11 +1734,12 @@ public class DownloadService extends BaseService implements ReadFileTask.Callbac
 				String chanName = source.readString();
 				String uriString = source.readString();
 				String name = source.readString();
+				long size = source.readLong();
 				byte[] checkSha256 = source.createByteArray();
 				ChanManager.Fingerprints checkFingerprints = source.readByte() != 0
 						? ChanManager.Fingerprints.CREATOR.createFromParcel(source) : null;
 				return new DownloadItem(chanName, uriString != null ? Uri.parse(uriString) : null, name,
-						checkSha256, checkFingerprints);
+						size, checkSha256, checkFingerprints);
 			}
 		};
 
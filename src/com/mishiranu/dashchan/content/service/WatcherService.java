@@ -15,6 +15,7 @@ import com.mishiranu.dashchan.content.NetworkObserver;
 import com.mishiranu.dashchan.content.Preferences;
 import com.mishiranu.dashchan.content.WatcherNotifications;
 import com.mishiranu.dashchan.content.async.ExecutorTask;
+import com.mishiranu.dashchan.content.async.ReadPostsCountTask;
 import com.mishiranu.dashchan.content.async.ReadPostsTask;
 import com.mishiranu.dashchan.content.database.ChanDatabase;
 import com.mishiranu.dashchan.content.database.PagesDatabase;
@@ -22,6 +23,7 @@ import com.mishiranu.dashchan.content.model.ErrorItem;
 import com.mishiranu.dashchan.content.model.PendingUserPost;
 import com.mishiranu.dashchan.content.storage.FavoritesStorage;
 import com.mishiranu.dashchan.util.ConcurrentUtils;
+import com.mishiranu.dashchan.util.Logger;
 import com.mishiranu.dashchan.util.SharedPreferences;
 import com.mishiranu.dashchan.widget.ThemeEngine;
 import java.util.ArrayList;
@@ -480,13 +482,16 @@ public class WatcherService extends BaseService {
 			public final boolean deleted;
 			public final boolean error;
 			public final long lastUpdate;
+			public final float velocity;
 
-			public Item(ThreadKey threadKey, int newCount, boolean deleted, boolean error, long lastUpdate) {
+			public Item(ThreadKey threadKey, int newCount, boolean deleted, boolean error,
+					long lastUpdate, float velocity) {
 				this.threadKey = threadKey;
 				this.newCount = newCount;
 				this.deleted = deleted;
 				this.error = error;
 				this.lastUpdate = lastUpdate;
+				this.velocity = velocity;
 			}
 		}
 
@@ -508,7 +513,7 @@ public class WatcherService extends BaseService {
 				long now = SystemClock.elapsedRealtime();
 				long lastUpdate = Math.min(now, watcherState.time - System.currentTimeMillis() + now);
 				items.add(new Item(threadKey, watcherState.newCount,
-						watcherState.deleted, watcherState.error, lastUpdate));
+						watcherState.deleted, watcherState.error, lastUpdate, watcherState.velocity));
 			}
 			return items;
 		}
@@ -520,10 +525,10 @@ public class WatcherService extends BaseService {
 	}
 
 	private static class WatcherTask {
-		public final ReadPostsTask task;
+		public final ExecutorTask<?, ?> task;
 		public final Worker worker;
 
-		public WatcherTask(ReadPostsTask task, Worker worker) {
+		public WatcherTask(ExecutorTask<?, ?> task, Worker worker) {
 			this.task = task;
 			this.worker = worker;
 			worker.acquire();
@@ -539,7 +544,8 @@ public class WatcherService extends BaseService {
 
 	private static final Session.Callback.ConsumeReplies CONSUME_REPLIES_EMPTY = () -> {};
 
-	private class WatcherItem implements Comparable<WatcherItem>, ReadPostsTask.Callback {
+	private class WatcherItem implements Comparable<WatcherItem>, ReadPostsTask.Callback,
+			ReadPostsCountTask.Callback {
 		public final ThreadKey threadKey;
 
 		public boolean resolved;
@@ -547,6 +553,14 @@ public class WatcherService extends BaseService {
 		public boolean deleted;
 		public boolean error;
 		public long lastUpdate;
+		public float velocity = -1f;
+		public boolean bumpLimitReached;
+		private int lastPostsCount = -1;
+		private long lastPostsTime;
+		// Server count from the probe which preceded the last successful full load,
+		// stored posts count can't be used since it includes deleted posts
+		private int probedPostsCount = -1;
+		private int pendingProbedPostsCount = -1;
 
 		public WatcherTask task;
 		public WatcherState state = WatcherState.IDLE;
@@ -563,11 +577,28 @@ public class WatcherService extends BaseService {
 		}
 
 		public void createAndExecuteTask(Worker worker, boolean reload, boolean notifyBeforeStart) {
-			cancel();
+			Chan chan = Chan.get(threadKey.chanName);
 			Set<PendingUserPost> pendingUserPosts = PostingService.getPendingUserPosts(threadKey.chanName,
 					threadKey.boardName, threadKey.threadNumber);
-			ReadPostsTask task = new ReadPostsTask(this, Chan.get(threadKey.chanName),
-					threadKey.boardName, threadKey.threadNumber, reload, pendingUserPosts);
+			if (!reload && canProbePostsCount(chan, pendingUserPosts)) {
+				probesCount++;
+				executeTask(new ReadPostsCountTask(this, chan, threadKey.boardName, threadKey.threadNumber),
+						worker, false);
+			} else {
+				executeReadPostsTask(chan, worker, reload, pendingUserPosts, notifyBeforeStart, -1);
+			}
+		}
+
+		private void executeReadPostsTask(Chan chan, Worker worker, boolean reload,
+				Set<PendingUserPost> pendingUserPosts, boolean notifyBeforeStart, int probedPostsCount) {
+			fullFetchesCount++;
+			pendingProbedPostsCount = probedPostsCount;
+			executeTask(new ReadPostsTask(this, chan, threadKey.boardName, threadKey.threadNumber,
+					reload, pendingUserPosts), worker, notifyBeforeStart);
+		}
+
+		private void executeTask(ExecutorTask<?, ?> task, Worker worker, boolean notifyBeforeStart) {
+			cancel();
 			task.execute(worker.executor);
 			if (notifyBeforeStart) {
 				for (InternalSession session : getSessionConcurrentIterable(threadKey)) {
@@ -578,10 +609,53 @@ public class WatcherService extends BaseService {
 			notifyWatcherUpdate(this);
 		}
 
+		// Full thread is loaded only when posts count was changed since the last update
+		private boolean canProbePostsCount(Chan chan, Set<PendingUserPost> pendingUserPosts) {
+			if (lastPostsCount < 0 || postsCountUnsupportedChanNames.contains(chan.name) ||
+					pendingUserPosts != null && !pendingUserPosts.isEmpty()) {
+				return false;
+			}
+			HashSet<InternalSession> sessions = sessionsMap.get(threadKey);
+			return sessions == null || sessions.isEmpty();
+		}
+
 		public boolean checkInterval(long now, int interval) {
 			return lastUpdate + interval - 1000 <= now;
 		}
 
+		public int getRefreshInterval(int interval, int maxInterval) {
+			if (maxInterval <= interval || velocity < 0) {
+				return interval;
+			}
+			// Expect about one new post per refresh
+			long result = velocity > 0 ? (long) (60 * 60 * 1000 / velocity) : maxInterval;
+			if (bumpLimitReached) {
+				result *= 2;
+			}
+			return (int) Math.max(interval, Math.min(maxInterval, result));
+		}
+
+		private void updateVelocity(Integer postsCount) {
+			long now = SystemClock.elapsedRealtime();
+			long since = lastPostsTime > 0 ? lastPostsTime : lastUpdate;
+			// Null posts count means the thread wasn't modified
+			boolean known = postsCount == null || lastPostsCount >= 0;
+			if (known && since > 0 && now > since) {
+				int added = postsCount != null ? Math.max(0, postsCount - lastPostsCount) : 0;
+				float rate = added * 60f * 60f * 1000f / (now - since);
+				velocity = velocity >= 0 ? (velocity + rate) / 2f : rate;
+				float savedVelocity = velocity;
+				PagesDatabase.ThreadKey pagesThreadKey = new PagesDatabase.ThreadKey(threadKey.chanName,
+						threadKey.boardName, threadKey.threadNumber);
+				VELOCITY_EXECUTOR.execute(() -> PagesDatabase.getInstance()
+						.setWatcherVelocity(pagesThreadKey, savedVelocity));
+			}
+			if (postsCount != null) {
+				lastPostsCount = postsCount;
+			}
+			lastPostsTime = now;
+		}
+
 		@Override
 		public int compareTo(WatcherItem o) {
 			return Long.compare(lastUpdate, o.lastUpdate);
@@ -597,11 +671,17 @@ public class WatcherService extends BaseService {
 
 		@Override
 		public void onReadPostsSuccess(PagesDatabase.Cache.State cacheState,
-				List<PagesDatabase.InsertResult.Reply> replies, Integer newCount) {
+				List<PagesDatabase.InsertResult.Reply> replies, Integer newCount,
+				Integer postsCount, boolean bumpLimitReached) {
 			if (newCount != null) {
 				resolved = true;
 				this.newCount = newCount;
 			}
+			if (postsCount != null) {
+				this.bumpLimitReached = bumpLimitReached;
+			}
+			updateVelocity(postsCount);
+			probedPostsCount = pendingProbedPostsCount;
 			deleted = false;
 			error = false;
 			onTaskFinished();
@@ -637,8 +717,37 @@ public class WatcherService extends BaseService {
 			}
 		}
 
+		@Override
+		public void onReadPostsCountSuccess(Integer postsCount) {
+			if (postsCount == null || postsCount == probedPostsCount) {
+				avoidedFullFetchesCount++;
+				updateVelocity(null);
+				deleted = false;
+				error = false;
+				onTaskFinished();
+			} else {
+				executeReadPostsFallback(postsCount);
+			}
+		}
+
+		@Override
+		public void onReadPostsCountFail(boolean unsupported) {
+			if (unsupported) {
+				postsCountUnsupportedChanNames.add(threadKey.chanName);
+			}
+			executeReadPostsFallback(-1);
+		}
+
+		private void executeReadPostsFallback(int probedPostsCount) {
+			Set<PendingUserPost> pendingUserPosts = PostingService.getPendingUserPosts(threadKey.chanName,
+					threadKey.boardName, threadKey.threadNumber);
+			executeReadPostsTask(Chan.get(threadKey.chanName), task.worker, false, pendingUserPosts,
+					true, probedPostsCount);
+		}
+
 		@Override
 		public void onReadPostsRedirect(RedirectException.Target target) {
+			probedPostsCount = -1;
 			deleted = true;
 			error = false;
 			onTaskFinished();
@@ -650,6 +759,7 @@ public class WatcherService extends BaseService {
 		@Override
 		public void onReadPostsFail(ErrorItem errorItem) {
 			boolean notExists = errorItem.type == ErrorItem.Type.THREAD_NOT_EXISTS;
+			probedPostsCount = -1;
 			deleted = notExists;
 			error = !notExists;
 			onTaskFinished();
@@ -682,11 +792,16 @@ public class WatcherService extends BaseService {
 	private final Iterable<Client> workClients = new ConcurrentIterable<>(clients::keySet);
 	private final ConcurrentIterable<InternalSession> workSessions = new ConcurrentIterable<>(null);
 	private final HashSet<String> workPriorityChanNames = new HashSet<>();
+	private final HashSet<String> postsCountUnsupportedChanNames = new HashSet<>();
 
 	private int notificationColor;
 	private ResolveItemsTask resolveItemsTask;
 	private long lastRefreshAll;
 
+	private int probesCount;
+	private int avoidedFullFetchesCount;
+	private int fullFetchesCount;
+
 	@Override
 	public void onCreate() {
 		super.onCreate();
@@ -724,6 +839,10 @@ public class WatcherService extends BaseService {
 		Preferences.PREFERENCES.unregister(preferencesListener);
 		FavoritesStorage.getInstance().getObservable().unregister(favoritesObserver);
 		ConcurrentUtils.HANDLER.removeCallbacks(refreshAllRunnable);
+		if (probesCount > 0 || fullFetchesCount > 0) {
+			Logger.write(Logger.Type.DEBUG, "WatcherService:", probesCount, "probes",
+					avoidedFullFetchesCount, "avoided", fullFetchesCount, "full fetches");
+		}
 	}
 
 	private final FavoritesStorage.Observer favoritesObserver = (favoriteItem, action) -> {
@@ -793,6 +912,7 @@ public class WatcherService extends BaseService {
 				watcherItem.deleted = item.deleted;
 				watcherItem.error = item.error;
 				watcherItem.lastUpdate = item.lastUpdate;
+				watcherItem.velocity = item.velocity;
 				notifyWatcherUpdate(watcherItem);
 			}
 		}
@@ -979,6 +1099,7 @@ public class WatcherService extends BaseService {
 	private void refreshAll(String chanName, boolean forceNetwork, boolean forceNow) {
 		long now = SystemClock.elapsedRealtime();
 		int interval = getRefreshInterval(true);
+		int maxInterval = Preferences.getWatcherMaxRefreshInterval() * 60 * 1000;
 		boolean unavailable = !forceNetwork && Preferences.isWatcherWifiOnly() &&
 				!NetworkObserver.getInstance().isWifiConnected();
 		for (WatcherItem watcherItem : watcherItems.values()) {
@@ -993,7 +1114,8 @@ public class WatcherService extends BaseService {
 						}
 					} else {
 						if (watcherItem.state != WatcherState.ENQUEUED &&
-								(forceNow || watcherItem.checkInterval(now, interval))) {
+								(forceNow || watcherItem.checkInterval(now,
+								watcherItem.getRefreshInterval(interval, maxInterval)))) {
 							watcherItem.state = WatcherState.ENQUEUED;
 							notifyWatcherUpdate(watcherItem);
 							enqueuedWatcherItems.add(watcherItem);
@@ -1059,7 +1181,8 @@ public class WatcherService extends BaseService {
 	}
 
 	private final SharedPreferences.Listener preferencesListener = key -> {
-		if (Preferences.KEY_WATCHER_REFRESH_INTERVAL.equals(key)) {
+		if (Preferences.KEY_WATCHER_REFRESH_INTERVAL.equals(key) ||
+				Preferences.KEY_WATCHER_MAX_REFRESH_INTERVAL.equals(key)) {
 			ConcurrentUtils.HANDLER.removeCallbacks(refreshAllRunnable);
 			startNext();
 		} else if (Preferences.KEY_THEME.equals(key)) {
@@ -1074,6 +1197,9 @@ public class WatcherService extends BaseService {
 		}
 	}
 
+	private static final Executor VELOCITY_EXECUTOR = ConcurrentUtils.newSingleThreadPool(20000,
+			"WatcherVelocity", null);
+
 	private static final Worker WORKER_FOREGROUND = new Worker(ConcurrentUtils.PARALLEL_EXECUTOR);
 	private static final Worker WORKER_PRIORITY = new Worker("WatcherPriority", 3);
 	private static final Worker WORKER_BACKGROUND = new Worker("WatcherBackground", 3);
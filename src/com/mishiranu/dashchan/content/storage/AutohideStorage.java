@@ -4,8 +4,10 @@ import android.os.Parcel;
 import android.os.Parcelable;
 import chan.util.CommonUtils;
 import chan.util.StringUtils;
+import com.mishiranu.dashchan.text.AhoCorasick;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -34,6 +36,7 @@ public class AutohideStorage extends StorageManager.JsonOrgStorage<List<Autohide
 	}
 
 	private final ArrayList<AutohideItem> autohideItems = new ArrayList<>();
+	private Rules rules;
 
 	private AutohideStorage() {
 		super("autohide", 1000, 10000);
@@ -44,8 +47,16 @@ public class AutohideStorage extends StorageManager.JsonOrgStorage<List<Autohide
 		return autohideItems;
 	}
 
+	// Rules are obtained in background, so the list is modified only while holding the lock
+	public synchronized Rules getRules() {
+		if (rules == null) {
+			rules = new Rules(new ArrayList<>(autohideItems));
+		}
+		return rules;
+	}
+
 	@Override
-	public List<AutohideItem> onClone() {
+	public synchronized List<AutohideItem> onClone() {
 		ArrayList<AutohideItem> autohideItems = new ArrayList<>(this.autohideItems.size());
 		for (AutohideItem autohideItem : this.autohideItems) {
 			autohideItems.add(new AutohideItem(autohideItem));
@@ -55,6 +66,7 @@ public class AutohideStorage extends StorageManager.JsonOrgStorage<List<Autohide
 
 	@Override
 	public void onDeserialize(JSONObject jsonObject) {
+		ArrayList<AutohideItem> autohideItems = new ArrayList<>();
 		JSONArray jsonArray = jsonObject.optJSONArray(KEY_DATA);
 		if (jsonArray != null) {
 			for (int i = 0; i < jsonArray.length(); i++) {
@@ -87,6 +99,10 @@ public class AutohideStorage extends StorageManager.JsonOrgStorage<List<Autohide
 				}
 			}
 		}
+		synchronized (this) {
+			this.autohideItems.addAll(autohideItems);
+			rules = null;
+		}
 	}
 
 	@Override
@@ -133,20 +149,91 @@ public class AutohideStorage extends StorageManager.JsonOrgStorage<List<Autohide
 	}
 
 	public void add(AutohideItem autohideItem) {
-		autohideItems.add(autohideItem);
+		synchronized (this) {
+			autohideItems.add(autohideItem);
+			rules = null;
+		}
 		serialize();
 	}
 
 	public void update(int index, AutohideItem autohideItem) {
-		autohideItems.set(index, autohideItem);
+		synchronized (this) {
+			autohideItems.set(index, autohideItem);
+			rules = null;
+		}
 		serialize();
 	}
 
 	public void delete(int index) {
-		autohideItems.remove(index);
+		synchronized (this) {
+			autohideItems.remove(index);
+			rules = null;
+		}
 		serialize();
 	}
 
+	public static class Rules {
+		private final List<AutohideItem> autohideItems;
+		private final HashMap<String, Scope> scopes = new HashMap<>();
+
+		private Rules(List<AutohideItem> autohideItems) {
+			this.autohideItems = autohideItems;
+		}
+
+		public Scope getScope(String chanName, String boardName) {
+			String key = chanName + "/" + boardName;
+			synchronized (scopes) {
+				Scope scope = scopes.get(key);
+				if (scope == null) {
+					ArrayList<AutohideItem> scopeItems = new ArrayList<>();
+					for (AutohideItem autohideItem : autohideItems) {
+						if ((autohideItem.chanNames == null || autohideItem.chanNames.contains(chanName)) &&
+								(StringUtils.isEmpty(autohideItem.boardName) || boardName == null ||
+										autohideItem.boardName.equals(boardName))) {
+							scopeItems.add(autohideItem);
+						}
+					}
+					scope = new Scope(scopeItems);
+					scopes.put(key, scope);
+				}
+				return scope;
+			}
+		}
+	}
+
+	public static class Scope {
+		public final List<AutohideItem> autohideItems;
+		private final int[] literalIndexes;
+		private final AhoCorasick automaton;
+
+		private Scope(List<AutohideItem> autohideItems) {
+			this.autohideItems = autohideItems;
+			literalIndexes = new int[autohideItems.size()];
+			ArrayList<String> literals = new ArrayList<>();
+			for (int i = 0; i < autohideItems.size(); i++) {
+				String literal = autohideItems.get(i).getRequiredLiteral();
+				if (literal != null) {
+					literalIndexes[i] = literals.size();
+					literals.add(literal);
+				} else {
+					literalIndexes[i] = -1;
+				}
+			}
+			automaton = literals.isEmpty() ? null : new AhoCorasick(literals);
+		}
+
+		public boolean[] findCandidates(String text) {
+			// Items without required literal are always checked with the full pattern
+			boolean[] found = automaton != null ? automaton.find(text) : null;
+			boolean[] candidates = new boolean[autohideItems.size()];
+			for (int i = 0; i < candidates.length; i++) {
+				int index = literalIndexes[i];
+				candidates[i] = index < 0 || found[index];
+			}
+			return candidates;
+		}
+	}
+
 	public static class AutohideItem implements Parcelable {
 		public HashSet<String> chanNames;
 
@@ -230,6 +317,151 @@ public class AutohideStorage extends StorageManager.JsonOrgStorage<List<Autohide
 			return null;
 		}
 
+		private static final String LITERAL_UNKNOWN = new String("");
+		private String requiredLiteral = LITERAL_UNKNOWN;
+
+		private String getRequiredLiteral() {
+			if (requiredLiteral == LITERAL_UNKNOWN) {
+				requiredLiteral = extractRequiredLiteral(value);
+			}
+			return requiredLiteral;
+		}
+
+		// Returns the longest text every match must contain, or null if it can't be determined
+		private static String extractRequiredLiteral(String value) {
+			if (value.contains("(?")) {
+				// Inline flags and special groups may change matching rules
+				return null;
+			}
+			String best = null;
+			StringBuilder run = new StringBuilder();
+			int depth = 0;
+			int length = value.length();
+			int i = 0;
+			while (i < length) {
+				char c = value.charAt(i);
+				boolean literal = false;
+				char literalChar = 0;
+				switch (c) {
+					case '\\': {
+						if (i + 1 >= length) {
+							return null;
+						}
+						char e = value.charAt(i + 1);
+						if (e == 'Q') {
+							int end = value.indexOf("\\E", i + 2);
+							String quoted = end >= 0 ? value.substring(i + 2, end) : value.substring(i + 2);
+							if (depth == 0) {
+								run.append(quoted);
+							}
+							i = end >= 0 ? end + 2 : length;
+							continue;
+						} else if (Character.isLetterOrDigit(e)) {
+							if ("xuUpPck0123456789N".indexOf(e) >= 0) {
+								// Escapes with arguments are not parsed
+								return null;
+							}
+							i += 2;
+						} else {
+							literal = true;
+							literalChar = e;
+							i += 2;
+						}
+						break;
+					}
+					case '[': {
+						int j = i + 1;
+						if (j < length && value.charAt(j) == '^') {
+							j++;
+						}
+						if (j < length && value.charAt(j) == ']') {
+							j++;
+						}
+						int classDepth = 1;
+						while (j < length && classDepth > 0) {
+							char cc = value.charAt(j);
+							if (cc == '\\') {
+								j++;
+							} else if (cc == '[') {
+								classDepth++;
+							} else if (cc == ']') {
+								classDepth--;
+							}
+							j++;
+						}
+						if (classDepth > 0) {
+							return null;
+						}
+						i = j;
+						break;
+					}
+					case '(': {
+						depth++;
+						i++;
+						break;
+					}
+					case ')': {
+						depth--;
+						i++;
+						break;
+					}
+					case '|': {
+						if (depth == 0) {
+							return null;
+						}
+						i++;
+						break;
+					}
+					case '?':
+					case '*':
+					case '{': {
+						// Previous character becomes optional
+						if (depth == 0 && run.length() > 0) {
+							run.setLength(run.length() - 1);
+						}
+						if (c == '{') {
+							int end = value.indexOf('}', i);
+							if (end < 0) {
+								return null;
+							}
+							i = end + 1;
+						} else {
+							i++;
+						}
+						break;
+					}
+					case '+': {
+						i++;
+						break;
+					}
+					case '.':
+					case '^':
+					case '$': {
+						i++;
+						break;
+					}
+					default: {
+						literal = true;
+						literalChar = c;
+						i++;
+						break;
+					}
+				}
+				if (literal && depth == 0) {
+					run.append(literalChar);
+				} else if (!literal) {
+					if (best == null || run.length() > best.length()) {
+						best = run.toString();
+					}
+					run.setLength(0);
+				}
+			}
+			if (best == null || run.length() > best.length()) {
+				best = run.toString();
+			}
+			return best.isEmpty() ? null : best;
+		}
+
 		public enum ReasonSource {NAME, SUBJECT, COMMENT, FILE}
 
 		public String getReason(ReasonSource reasonSource, String text, String findResult) {
@@ -25,6 +25,12 @@ public class FavoritesStorage extends StorageManager.Storage<List<FavoritesStora
 	private static final String KEY_TITLE = "title";
 	private static final String KEY_MODIFIED_TITLE = "modifiedTitle";
 	private static final String KEY_WATCHER_ENABLED = "watcherEnabled";
+	private static final String KEY_ACTION = "action";
+	private static final String KEY_INDEX = "index";
+	private static final String KEY_ITEM = "item";
+
+	private static final String ACTION_PUT = "put";
+	private static final String ACTION_REMOVE = "remove";
 
 	private static final FavoritesStorage INSTANCE = new FavoritesStorage();
 
@@ -59,48 +65,8 @@ public class FavoritesStorage extends StorageManager.Storage<List<FavoritesStora
 					case KEY_DATA: {
 						reader.startArray();
 						while (!reader.endStruct()) {
-							String chanName = null;
-							String boardName = null;
-							String threadNumber = null;
-							String title = null;
-							boolean modifiedTitle = false;
-							boolean watcherEnabled = false;
-							reader.startObject();
-							while (!reader.endStruct()) {
-								switch (reader.nextName()) {
-									case KEY_CHAN_NAME: {
-										chanName = reader.nextString();
-										break;
-									}
-									case KEY_BOARD_NAME: {
-										boardName = reader.nextString();
-										break;
-									}
-									case KEY_THREAD_NUMBER: {
-										threadNumber = reader.nextString();
-										break;
-									}
-									case KEY_TITLE: {
-										title = reader.nextString();
-										break;
-									}
-									case KEY_MODIFIED_TITLE: {
-										modifiedTitle = reader.nextBoolean();
-										break;
-									}
-									case KEY_WATCHER_ENABLED: {
-										watcherEnabled = reader.nextBoolean();
-										break;
-									}
-									default: {
-										reader.skip();
-										break;
-									}
-								}
-							}
-							FavoriteItem favoriteItem = new FavoriteItem(chanName, boardName, threadNumber,
-									title, modifiedTitle, watcherEnabled);
-							favoriteItemsMap.put(makeKey(chanName, boardName, threadNumber), favoriteItem);
+							FavoriteItem favoriteItem = readFavoriteItem(reader);
+							favoriteItemsMap.put(makeKey(favoriteItem), favoriteItem);
 							favoriteItemsList.add(favoriteItem);
 						}
 						break;
@@ -123,30 +89,143 @@ public class FavoritesStorage extends StorageManager.Storage<List<FavoritesStora
 		writer.name(KEY_DATA);
 		writer.startArray();
 		for (FavoriteItem favoriteItem : favoriteItems) {
-			writer.startObject();
-			writer.name(KEY_CHAN_NAME);
-			writer.value(favoriteItem.chanName);
-			if (!StringUtils.isEmpty(favoriteItem.boardName)) {
-				writer.name(KEY_BOARD_NAME);
-				writer.value(favoriteItem.boardName);
+			writeFavoriteItem(writer, favoriteItem);
+		}
+		writer.endArray();
+		writer.endObject();
+		writer.flush();
+	}
+
+	private static FavoriteItem readFavoriteItem(JsonSerial.Reader reader) throws IOException, ParseException {
+		String chanName = null;
+		String boardName = null;
+		String threadNumber = null;
+		String title = null;
+		boolean modifiedTitle = false;
+		boolean watcherEnabled = false;
+		reader.startObject();
+		while (!reader.endStruct()) {
+			switch (reader.nextName()) {
+				case KEY_CHAN_NAME: {
+					chanName = reader.nextString();
+					break;
+				}
+				case KEY_BOARD_NAME: {
+					boardName = reader.nextString();
+					break;
+				}
+				case KEY_THREAD_NUMBER: {
+					threadNumber = reader.nextString();
+					break;
+				}
+				case KEY_TITLE: {
+					title = reader.nextString();
+					break;
+				}
+				case KEY_MODIFIED_TITLE: {
+					modifiedTitle = reader.nextBoolean();
+					break;
+				}
+				case KEY_WATCHER_ENABLED: {
+					watcherEnabled = reader.nextBoolean();
+					break;
+				}
+				default: {
+					reader.skip();
+					break;
+				}
 			}
-			if (!StringUtils.isEmpty(favoriteItem.threadNumber)) {
-				writer.name(KEY_THREAD_NUMBER);
-				writer.value(favoriteItem.threadNumber);
+		}
+		return new FavoriteItem(chanName, boardName, threadNumber, title, modifiedTitle, watcherEnabled);
+	}
+
+	private static void writeFavoriteItem(JsonSerial.Writer writer, FavoriteItem favoriteItem) throws IOException {
+		writer.startObject();
+		writer.name(KEY_CHAN_NAME);
+		writer.value(favoriteItem.chanName);
+		if (!StringUtils.isEmpty(favoriteItem.boardName)) {
+			writer.name(KEY_BOARD_NAME);
+			writer.value(favoriteItem.boardName);
+		}
+		if (!StringUtils.isEmpty(favoriteItem.threadNumber)) {
+			writer.name(KEY_THREAD_NUMBER);
+			writer.value(favoriteItem.threadNumber);
+		}
+		if (!StringUtils.isEmpty(favoriteItem.title)) {
+			writer.name(KEY_TITLE);
+			writer.value(favoriteItem.title);
+		}
+		writer.name(KEY_MODIFIED_TITLE);
+		writer.value(favoriteItem.modifiedTitle);
+		writer.name(KEY_WATCHER_ENABLED);
+		writer.value(favoriteItem.watcherEnabled);
+		writer.endObject();
+	}
+
+	@Override
+	public void onReadChange(byte[] change) throws IOException {
+		String action = null;
+		int index = -1;
+		FavoriteItem favoriteItem = null;
+		try (JsonSerial.Reader reader = JsonSerial.reader(change)) {
+			reader.startObject();
+			while (!reader.endStruct()) {
+				switch (reader.nextName()) {
+					case KEY_ACTION: {
+						action = reader.nextString();
+						break;
+					}
+					case KEY_INDEX: {
+						index = reader.nextInt();
+						break;
+					}
+					case KEY_ITEM: {
+						favoriteItem = readFavoriteItem(reader);
+						break;
+					}
+					default: {
+						reader.skip();
+						break;
+					}
+				}
 			}
-			if (!StringUtils.isEmpty(favoriteItem.title)) {
-				writer.name(KEY_TITLE);
-				writer.value(favoriteItem.title);
+		} catch (ParseException e) {
+			throw new IOException(e);
+		}
+		if (favoriteItem == null || action == null) {
+			throw new IOException("Invalid change");
+		}
+		String key = makeKey(favoriteItem);
+		FavoriteItem oldFavoriteItem = favoriteItemsMap.remove(key);
+		if (oldFavoriteItem != null) {
+			favoriteItemsList.remove(oldFavoriteItem);
+		}
+		if (ACTION_PUT.equals(action)) {
+			favoriteItemsMap.put(key, favoriteItem);
+			favoriteItemsList.add(Math.max(0, Math.min(index, favoriteItemsList.size())), favoriteItem);
+		}
+	}
+
+	private void serializeChange(String action, FavoriteItem favoriteItem) {
+		byte[] change;
+		try (JsonSerial.Writer writer = JsonSerial.writer()) {
+			writer.startObject();
+			writer.name(KEY_ACTION);
+			writer.value(action);
+			if (ACTION_PUT.equals(action)) {
+				writer.name(KEY_INDEX);
+				writer.value(favoriteItemsList.indexOf(favoriteItem));
 			}
-			writer.name(KEY_MODIFIED_TITLE);
-			writer.value(favoriteItem.modifiedTitle);
-			writer.name(KEY_WATCHER_ENABLED);
-			writer.value(favoriteItem.watcherEnabled);
+			writer.name(KEY_ITEM);
+			writeFavoriteItem(writer, favoriteItem);
 			writer.endObject();
+			change = writer.build();
+		} catch (IOException e) {
+			e.printStackTrace();
+			serialize();
+			return;
 		}
-		writer.endArray();
-		writer.endObject();
-		writer.flush();
+		serializeChange(change);
 	}
 
 	private final WeakObservable<Observer> observable = new WeakObservable<>();
@@ -219,7 +298,7 @@ public class FavoritesStorage extends StorageManager.Storage<List<FavoritesStora
 			if (favoriteItem.threadNumber != null && favoriteItem.watcherEnabled) {
 				notifyFavoritesUpdate(favoriteItem, Action.WATCHER_ENABLE);
 			}
-			serialize();
+			serializeChange(ACTION_PUT, favoriteItem);
 		}
 	}
 
@@ -239,7 +318,7 @@ public class FavoritesStorage extends StorageManager.Storage<List<FavoritesStora
 		if (canSortManually() && favoriteItemsList.remove(favoriteItem)) {
 			int index = favoriteItemsList.indexOf(afterFavoriteItem) + 1;
 			favoriteItemsList.add(index, favoriteItem);
-			serialize();
+			serializeChange(ACTION_PUT, favoriteItem);
 		}
 	}
 
@@ -267,7 +346,7 @@ public class FavoritesStorage extends StorageManager.Storage<List<FavoritesStora
 						sortIfNeededInternal();
 					}
 					notifyFavoritesUpdate(favoriteItem, Action.MODIFY_TITLE);
-					serialize();
+					serializeChange(ACTION_PUT, favoriteItem);
 				}
 			}
 		}
@@ -289,7 +368,7 @@ public class FavoritesStorage extends StorageManager.Storage<List<FavoritesStora
 			if (changed) {
 				notifyFavoritesUpdate(favoriteItem, favoriteItem.watcherEnabled
 						? Action.WATCHER_ENABLE : Action.WATCHER_DISABLE);
-				serialize();
+				serializeChange(ACTION_PUT, favoriteItem);
 			}
 		}
 	}
@@ -303,7 +382,7 @@ public class FavoritesStorage extends StorageManager.Storage<List<FavoritesStora
 				notifyFavoritesUpdate(favoriteItem, Action.WATCHER_DISABLE);
 			}
 			notifyFavoritesUpdate(favoriteItem, Action.REMOVE);
-			serialize();
+			serializeChange(ACTION_REMOVE, favoriteItem);
 		}
 	}
 
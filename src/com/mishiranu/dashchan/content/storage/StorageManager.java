@@ -7,9 +7,15 @@ import android.os.SystemClock;
 import android.util.Pair;
 import android.util.SparseArray;
 import com.mishiranu.dashchan.content.MainApplication;
+import com.mishiranu.dashchan.util.ConcurrentUtils;
 import com.mishiranu.dashchan.util.IOUtils;
 import com.mishiranu.dashchan.util.Logger;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -17,14 +23,23 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 public class StorageManager implements Handler.Callback, Runnable {
 	private static final StorageManager INSTANCE = new StorageManager();
 
+	private static final int JOURNAL_MAGIC = 0x534a524e;
+	private static final int JOURNAL_VERSION = 1;
+	private static final int JOURNAL_MAX_RECORD_SIZE = 1024 * 1024;
+	private static final int JOURNAL_COMPACT_MIN_RECORDS = 500;
+
 	public static StorageManager getInstance() {
 		return INSTANCE;
 	}
@@ -53,46 +68,121 @@ public class StorageManager implements Handler.Callback, Runnable {
 
 	private <Data> void performSerialize(Enqueued<Data> enqueued) {
 		synchronized (enqueued.storage.lock) {
-			File file = getFile(enqueued.storage);
-			File backupFile = getBackupFile(enqueued.storage);
-			if (file.exists()) {
-				if (!backupFile.exists()) {
-					if (!file.renameTo(backupFile)) {
-						Logger.write(Logger.Type.ERROR, "Can't create backup of", file);
-						return;
-					}
-				} else {
-					file.delete();
+			if (enqueued.sequence < enqueued.storage.snapshotSequence) {
+				// Newer snapshot is already written, it includes all older changes
+				return;
+			}
+			if (enqueued.changes != null) {
+				performAppend(enqueued.storage, enqueued.changes);
+			} else {
+				performSnapshot(enqueued);
+			}
+		}
+	}
+
+	private <Data> void performSnapshot(Enqueued<Data> enqueued) {
+		File file = getFile(enqueued.storage);
+		File backupFile = getBackupFile(enqueued.storage);
+		File journalFile = getJournalFile(enqueued.storage);
+		File journalBackupFile = getJournalBackupFile(enqueued.storage);
+		if (file.exists()) {
+			if (!backupFile.exists()) {
+				if (!file.renameTo(backupFile)) {
+					Logger.write(Logger.Type.ERROR, "Can't create backup of", file);
+					return;
+				}
+				// Journal is only valid along with the snapshot it was appended to
+				if (journalFile.exists() && !journalFile.renameTo(journalBackupFile)) {
+					journalFile.delete();
 				}
+			} else {
+				file.delete();
+				journalFile.delete();
 			}
-			boolean success = false;
+		}
+		boolean success = false;
+		FileOutputStream output = null;
+		try {
+			output = new FileOutputStream(file);
+			enqueued.storage.onWrite(enqueued.data, output);
+			output.flush();
+			output.getFD().sync();
+			success = true;
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			success &= IOUtils.close(output);
+			if (success) {
+				enqueued.storage.snapshotSequence = enqueued.sequence;
+				enqueued.storage.journalRecordsCount = 0;
+				journalFile.delete();
+				backupFile.delete();
+				journalBackupFile.delete();
+			} else if (file.exists() && !file.delete()) {
+				Logger.write(Logger.Type.ERROR, "Can't delete partially written", file);
+			}
+		}
+	}
+
+	private void performAppend(Storage<?> storage, List<byte[]> changes) {
+		File file = getFile(storage);
+		File journalFile = getJournalFile(storage);
+		boolean success = false;
+		// Changes can be appended to a completely written snapshot only
+		if (file.exists() && !getBackupFile(storage).exists()) {
+			boolean create = journalFile.length() == 0;
 			FileOutputStream output = null;
 			try {
-				output = new FileOutputStream(file);
-				enqueued.storage.onWrite(enqueued.data, output);
-				output.flush();
+				output = new FileOutputStream(journalFile, true);
+				DataOutputStream dataOutput = new DataOutputStream(new BufferedOutputStream(output));
+				if (create) {
+					dataOutput.writeInt(JOURNAL_MAGIC);
+					dataOutput.writeInt(JOURNAL_VERSION);
+				}
+				CRC32 crc = new CRC32();
+				for (byte[] change : changes) {
+					crc.reset();
+					crc.update(change);
+					dataOutput.writeInt(change.length);
+					dataOutput.write(change);
+					dataOutput.writeInt((int) crc.getValue());
+				}
+				dataOutput.flush();
 				output.getFD().sync();
 				success = true;
 			} catch (IOException e) {
 				e.printStackTrace();
 			} finally {
 				success &= IOUtils.close(output);
-				if (success) {
-					backupFile.delete();
-				} else if (file.exists() && !file.delete()) {
-					Logger.write(Logger.Type.ERROR, "Can't delete partially written", file);
-				}
 			}
 		}
+		if (success) {
+			storage.journalRecordsCount += changes.size();
+		}
+		if (!success || storage.journalRecordsCount >= JOURNAL_COMPACT_MIN_RECORDS &&
+				journalFile.length() > file.length()) {
+			// Broken tail will be dropped on replay, all changes will be written with the snapshot
+			handler.post(storage::serialize);
+		}
 	}
 
 	private static class Enqueued<Data> {
 		public final Storage<Data> storage;
+		public final int sequence;
 		public final Data data;
+		public final List<byte[]> changes;
 
 		public Enqueued(Storage<Data> storage) {
 			this.storage = storage;
-			data = storage.onClone();
+			sequence = ++storage.sequence;
+			if (storage.pendingChanges != null && !storage.pendingChanges.isEmpty()) {
+				data = null;
+				changes = storage.pendingChanges;
+			} else {
+				data = storage.onClone();
+				changes = null;
+			}
+			storage.pendingChanges = new ArrayList<>();
 		}
 	}
 
@@ -104,6 +194,12 @@ public class StorageManager implements Handler.Callback, Runnable {
 		private int identifier = 0;
 		private final Object lock = new Object();
 
+		// Null pending changes list means the whole data should be written
+		private ArrayList<byte[]> pendingChanges = new ArrayList<>();
+		private int sequence;
+		private int snapshotSequence;
+		private int journalRecordsCount;
+
 		public Storage(String name, int timeout, int maxTimeout) {
 			this.name = name;
 			this.timeout = timeout;
@@ -118,6 +214,9 @@ public class StorageManager implements Handler.Callback, Runnable {
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
+			synchronized (lock) {
+				journalRecordsCount = INSTANCE.replay(this);
+			}
 		}
 
 		public final Pair<File, File> getFilesForBackup() {
@@ -130,6 +229,15 @@ public class StorageManager implements Handler.Callback, Runnable {
 			INSTANCE.serialize(this);
 		}
 
+		// Journal may contain changes missing in the storage file
+		public final void writeBackup(OutputStream output) throws IOException {
+			onWrite(ConcurrentUtils.mainGet(this::onClone), output);
+		}
+
+		protected final void serializeChange(byte[] change) {
+			INSTANCE.serializeChange(this, change);
+		}
+
 		public final void await(boolean async) {
 			INSTANCE.await(this, async);
 		}
@@ -137,6 +245,10 @@ public class StorageManager implements Handler.Callback, Runnable {
 		public abstract Data onClone();
 		public abstract void onRead(InputStream input) throws IOException;
 		public abstract void onWrite(Data data, OutputStream output) throws IOException;
+
+		public void onReadChange(byte[] change) throws IOException {
+			throw new IOException("Changes are not supported");
+		}
 	}
 
 	public static abstract class JsonOrgStorage<Data> extends Storage<Data> {
@@ -197,22 +309,102 @@ public class StorageManager implements Handler.Callback, Runnable {
 		return getFile(storage.name + ".restore");
 	}
 
+	private File getJournalFile(Storage<?> storage) {
+		return new File(getDirectory(), storage.name + ".journal");
+	}
+
+	private File getJournalBackupFile(Storage<?> storage) {
+		return new File(getDirectory(), storage.name + ".journal.backup");
+	}
+
 	private InputStream open(Storage<?> storage) throws IOException {
 		File file = getFile(storage);
 		File backupFile = getBackupFile(storage);
+		File journalFile = getJournalFile(storage);
+		File journalBackupFile = getJournalBackupFile(storage);
 		if (backupFile.exists()) {
 			backupFile.renameTo(file);
+			if (!journalBackupFile.exists() || !journalBackupFile.renameTo(journalFile)) {
+				journalFile.delete();
+			}
 		}
+		journalBackupFile.delete();
 		File restoreFile = getRestoreFile(storage);
 		if (restoreFile.exists()) {
 			restoreFile.renameTo(file);
+			journalFile.delete();
 		}
 		return new FileInputStream(file);
 	}
 
+	private int replay(Storage<?> storage) {
+		File journalFile = getJournalFile(storage);
+		long fileLength = journalFile.length();
+		if (fileLength == 0) {
+			return 0;
+		}
+		int count = 0;
+		long offset = 0;
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(journalFile)))) {
+			if (input.readInt() != JOURNAL_MAGIC || input.readInt() != JOURNAL_VERSION) {
+				journalFile.delete();
+				return 0;
+			}
+			offset = 8;
+			CRC32 crc = new CRC32();
+			while (offset < fileLength) {
+				int length = input.readInt();
+				if (length < 0 || length > JOURNAL_MAX_RECORD_SIZE) {
+					break;
+				}
+				byte[] change = new byte[length];
+				input.readFully(change);
+				crc.reset();
+				crc.update(change);
+				if (input.readInt() != (int) crc.getValue()) {
+					break;
+				}
+				offset += length + 8;
+				count++;
+				try {
+					storage.onReadChange(change);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		} catch (EOFException e) {
+			// Record was not written completely
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if (offset < fileLength) {
+			// Drop the broken tail, so new records can be appended
+			try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+				file.setLength(offset);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return count;
+	}
+
 	private final SparseArray<Long> serializeTimes = new SparseArray<>();
 
 	private void serialize(Storage<?> storage) {
+		storage.pendingChanges = null;
+		schedule(storage);
+	}
+
+	private void serializeChange(Storage<?> storage, byte[] change) {
+		// Pending snapshot will include the change
+		if (storage.pendingChanges != null) {
+			storage.pendingChanges.add(change);
+		}
+		schedule(storage);
+	}
+
+	private void schedule(Storage<?> storage) {
 		if (storage.identifier == 0) {
 			storage.identifier = nextIdentifier++;
 		}
@@ -240,6 +432,8 @@ public class StorageManager implements Handler.Callback, Runnable {
 			if (async) {
 				enqueueSerialize(storage);
 			} else {
+				// Changes enqueued earlier may still be waiting in the queue
+				storage.pendingChanges = null;
 				performSerialize(new Enqueued<>(storage));
 			}
 		}
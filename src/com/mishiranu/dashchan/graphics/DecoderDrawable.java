@@ -4,6 +4,7 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.BitmapRegionDecoder;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
@@ -13,26 +14,42 @@ import androidx.annotation.NonNull;
 import com.mishiranu.dashchan.C;
 import com.mishiranu.dashchan.content.async.ExecutorTask;
 import com.mishiranu.dashchan.content.model.FileHolder;
+import com.mishiranu.dashchan.util.BitmapPool;
 import com.mishiranu.dashchan.util.ConcurrentUtils;
 import com.mishiranu.dashchan.util.GraphicsUtils;
-import com.mishiranu.dashchan.util.LruCache;
+import com.mishiranu.dashchan.util.WeightedLruCache;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.concurrent.Executor;
 
 public class DecoderDrawable extends BaseDrawable {
-	private static final Executor EXECUTOR = ConcurrentUtils.newSingleThreadPool(20000, "DecoderDrawable", null);
+	private static final int DECODERS_COUNT = 2;
+	private static final Executor EXECUTOR = ConcurrentUtils.newThreadPool(0, DECODERS_COUNT, 20000,
+			"DecoderDrawable", null);
 	private static final Bitmap NULL_BITMAP = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
 
 	private static final int FRAGMENT_SIZE = 512;
+	private static final int FRAGMENT_BYTES = FRAGMENT_SIZE * FRAGMENT_SIZE * 4;
 	private static final int MIN_MAX_ENTRIES = 16;
+	private static final int POOL_ENTRIES = 4;
 
 	private final Bitmap scaledBitmap;
-	private final BitmapRegionDecoder decoder;
+	private final FileHolder fileHolder;
+
+	// Each decoder can decode only one region at a time, so a few instances are used in parallel
+	private final ArrayList<BitmapRegionDecoder> decoders = new ArrayList<>();
+	private int decodersCount;
+	private int decodersLimit = DECODERS_COUNT;
 
 	private final LinkedHashMap<Integer, DecodeTask> tasks = new LinkedHashMap<>();
-	private final LruCache<Integer, Bitmap> fragments = new LruCache<>(MIN_MAX_ENTRIES, (k, v) -> v.recycle());
+	private final BitmapPool bitmapPool = new BitmapPool((long) POOL_ENTRIES * FRAGMENT_BYTES);
+	private final WeightedLruCache<Integer, Bitmap> fragments = new WeightedLruCache<>
+			((long) MIN_MAX_ENTRIES * FRAGMENT_BYTES, DecoderDrawable::getFragmentBytes,
+			(k, v) -> releaseFragment(v));
+	private final HashSet<Integer> requestedKeys = new HashSet<>();
 
 	private final int width;
 	private final int height;
@@ -41,23 +58,42 @@ public class DecoderDrawable extends BaseDrawable {
 
 	private final Rect rect = new Rect();
 	private final Rect dstRect = new Rect();
+	private final Rect prefetchRect = new Rect();
 	private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
 
+	private int lastCenterX;
+	private int lastCenterY;
+	private int lastScale;
+	private int directionX;
+	private int directionY;
+
 	private boolean enabled = true;
-	private boolean recycled = false;
+	private volatile boolean recycled = false;
 
 	public DecoderDrawable(Bitmap scaledBitmap, FileHolder fileHolder) throws IOException {
 		this.scaledBitmap = scaledBitmap;
+		this.fileHolder = fileHolder;
 		if (!fileHolder.isImageRegionDecoderSupported()) {
 			throw new IOException("Decoder drawable is not supported");
 		}
-		decoder = BitmapRegionDecoder.newInstance(fileHolder.openInputStream(), false);
+		decoders.add(BitmapRegionDecoder.newInstance(fileHolder.openInputStream(), false));
+		decodersCount = 1;
 		width = fileHolder.getImageWidth();
 		height = fileHolder.getImageHeight();
 		rotation = fileHolder.getImageRotation();
 		gammaCorrection = fileHolder.getImageGammaCorrectionForSkia();
 	}
 
+	private static long getFragmentBytes(Bitmap fragment) {
+		return fragment != NULL_BITMAP ? BitmapPool.getBitmapBytes(fragment) : 0;
+	}
+
+	private void releaseFragment(Bitmap fragment) {
+		if (fragment != NULL_BITMAP) {
+			bitmapPool.release(fragment);
+		}
+	}
+
 	@Override
 	public void draw(@NonNull Canvas canvas) {
 		Rect bounds = getBounds();
@@ -99,7 +135,9 @@ public class DecoderDrawable extends BaseDrawable {
 			drawScaled = true;
 		}
 		int size = FRAGMENT_SIZE * scale;
+		requestedKeys.clear();
 		if (enabled && !drawScaled) {
+			boolean visibleReady = true;
 			for (int y = 0; y < height; y += size) {
 				for (int x = 0; x < width; x += size) {
 					if (rect.intersects(x, y, x + size, y + size)) {
@@ -107,6 +145,7 @@ public class DecoderDrawable extends BaseDrawable {
 						Bitmap fragment = fragments.get(key);
 						boolean drawScaledFragment = false;
 						if (fragment != null) {
+							requestedKeys.add(key);
 							if (fragment != NULL_BITMAP) {
 								dstRect.set(x, y, x + scale * fragment.getWidth(), y + scale * fragment.getHeight());
 								canvas.drawBitmap(fragment, null, dstRect, paint);
@@ -114,13 +153,9 @@ public class DecoderDrawable extends BaseDrawable {
 								drawScaledFragment = true;
 							}
 						} else {
-							DecodeTask task = tasks.get(key);
-							if (task == null) {
-								task = new DecodeTask(key, x, y, scale);
-								task.execute(EXECUTOR);
-								tasks.put(key, task);
-							}
+							requestFragment(key, x, y, scale);
 							drawScaledFragment = true;
+							visibleReady = false;
 						}
 						if (drawScaledFragment) {
 							canvas.save();
@@ -133,22 +168,90 @@ public class DecoderDrawable extends BaseDrawable {
 					}
 				}
 			}
+			maxEntries += prefetch(scale, visibleReady);
 		} else {
 			dstRect.set(0, 0, width, height);
 			canvas.drawBitmap(scaledBitmap, null, dstRect, paint);
 		}
 		maxEntries = Math.max(MIN_MAX_ENTRIES, maxEntries);
-		fragments.setMaxEntries(maxEntries);
-		int cancel = tasks.size() - maxEntries;
-		if (cancel > 0) {
-			Iterator<DecodeTask> iterator = tasks.values().iterator();
-			while (iterator.hasNext() && cancel-- > 0) {
-				iterator.next().cancel();
+		fragments.setMaxWeight((long) maxEntries * FRAGMENT_BYTES);
+		// Cancel requests which are neither visible nor prefetched anymore
+		Iterator<DecodeTask> iterator = tasks.values().iterator();
+		while (iterator.hasNext()) {
+			DecodeTask task = iterator.next();
+			if (!requestedKeys.contains(task.key)) {
+				task.cancel();
 				iterator.remove();
 			}
 		}
 	}
 
+	private boolean requestFragment(int key, int x, int y, int scale) {
+		requestedKeys.add(key);
+		if (fragments.containsKey(key)) {
+			return true;
+		}
+		if (!tasks.containsKey(key)) {
+			DecodeTask task = new DecodeTask(key, x, y, scale);
+			task.execute(EXECUTOR);
+			tasks.put(key, task);
+		}
+		return false;
+	}
+
+	private int prefetchFragments(Rect prefetchRect, Rect exclude, int scale) {
+		int count = 0;
+		int size = FRAGMENT_SIZE * scale;
+		int startX = Math.max(prefetchRect.left / size * size, 0);
+		int startY = Math.max(prefetchRect.top / size * size, 0);
+		for (int y = startY; y < height && y < prefetchRect.bottom; y += size) {
+			for (int x = startX; x < width && x < prefetchRect.right; x += size) {
+				if (exclude == null || !exclude.intersects(x, y, x + size, y + size)) {
+					requestFragment(calculateKey(x, y, scale), x, y, scale);
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private int prefetch(int scale, boolean visibleReady) {
+		Rect rect = this.rect;
+		int centerX = rect.centerX();
+		int centerY = rect.centerY();
+		if (scale == lastScale) {
+			// Keep the last direction, so fragments are prefetched while fling slows down
+			if (centerX != lastCenterX || centerY != lastCenterY) {
+				directionX = Integer.signum(centerX - lastCenterX);
+				directionY = Integer.signum(centerY - lastCenterY);
+			}
+		} else {
+			directionX = 0;
+			directionY = 0;
+		}
+		lastCenterX = centerX;
+		lastCenterY = centerY;
+		lastScale = scale;
+
+		int count = 0;
+		int size = FRAGMENT_SIZE * scale;
+		if (directionX != 0 || directionY != 0) {
+			Rect prefetchRect = this.prefetchRect;
+			prefetchRect.set(rect);
+			prefetchRect.offset(directionX * size, directionY * size);
+			prefetchRect.union(rect);
+			count += prefetchFragments(prefetchRect, rect, scale);
+		}
+		if (visibleReady && scale > 1) {
+			// Prepare the center of the next zoom level only when visible fragments are ready
+			Rect prefetchRect = this.prefetchRect;
+			prefetchRect.set(rect);
+			prefetchRect.inset(rect.width() / 4, rect.height() / 4);
+			count += prefetchFragments(prefetchRect, null, scale / 2);
+		}
+		return count;
+	}
+
 	@Override
 	public int getIntrinsicWidth() {
 		return width;
@@ -168,10 +271,8 @@ public class DecoderDrawable extends BaseDrawable {
 			task.cancel();
 		}
 		tasks.clear();
-		for (Bitmap fragment : fragments.values()) {
-			fragment.recycle();
-		}
 		fragments.clear();
+		bitmapPool.clear();
 	}
 
 	public void setEnabled(boolean enabled) {
@@ -191,8 +292,12 @@ public class DecoderDrawable extends BaseDrawable {
 		if (!recycled) {
 			recycled = true;
 			clear();
-			synchronized (this) {
-				decoder.recycle();
+			synchronized (decoders) {
+				for (BitmapRegionDecoder decoder : decoders) {
+					decoder.recycle();
+				}
+				decoders.clear();
+				decoders.notifyAll();
 			}
 		}
 		if (recycleScaled) {
@@ -204,6 +309,46 @@ public class DecoderDrawable extends BaseDrawable {
 		return x << 18 | y << 4 | scale;
 	}
 
+	private BitmapRegionDecoder obtainDecoder() throws IOException, InterruptedException {
+		synchronized (decoders) {
+			while (true) {
+				if (recycled) {
+					return null;
+				}
+				if (!decoders.isEmpty()) {
+					return decoders.remove(decoders.size() - 1);
+				}
+				if (decodersCount < decodersLimit) {
+					decodersCount++;
+					break;
+				}
+				decoders.wait();
+			}
+		}
+		try {
+			return BitmapRegionDecoder.newInstance(fileHolder.openInputStream(), false);
+		} catch (IOException | RuntimeException e) {
+			synchronized (decoders) {
+				// Don't try to create more decoders, but keep existing ones working
+				decodersCount--;
+				decodersLimit = Math.max(decodersCount, 1);
+				decoders.notifyAll();
+			}
+			throw e;
+		}
+	}
+
+	private void releaseDecoder(BitmapRegionDecoder decoder) {
+		synchronized (decoders) {
+			if (recycled) {
+				decoder.recycle();
+			} else {
+				decoders.add(decoder);
+				decoders.notifyAll();
+			}
+		}
+	}
+
 	private class DecodeTask extends ExecutorTask<Void, Bitmap> {
 		private final int key;
 		private final Rect rect;
@@ -230,19 +375,33 @@ public class DecoderDrawable extends BaseDrawable {
 				rect.set((int) rectF.left, (int) rectF.top, (int) rectF.right, (int) rectF.bottom);
 			}
 			options.inSampleSize = scale;
+			options.inMutable = true;
 		}
 
 		@Override
 		protected Bitmap run() {
 			try {
-				synchronized (DecoderDrawable.this) {
-					Bitmap bitmap = decoder.decodeRegion(rect, options);
-					bitmap = GraphicsUtils.applyRotation(bitmap, rotation);
-					if (gammaCorrection != null) {
-						bitmap = GraphicsUtils.applyGammaCorrection(bitmap, gammaCorrection);
+				BitmapRegionDecoder decoder = obtainDecoder();
+				if (decoder == null || isCancelled()) {
+					if (decoder != null) {
+						releaseDecoder(decoder);
 					}
-					return bitmap;
+					return null;
 				}
+				Bitmap bitmap;
+				try {
+					bitmap = decodeRegion(decoder);
+				} finally {
+					releaseDecoder(decoder);
+				}
+				bitmap = GraphicsUtils.applyRotation(bitmap, rotation);
+				if (gammaCorrection != null) {
+					bitmap = GraphicsUtils.applyGammaCorrection(bitmap, gammaCorrection);
+				}
+				return bitmap;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
 			} catch (Throwable t) {
 				error = true;
 				t.printStackTrace();
@@ -250,6 +409,33 @@ public class DecoderDrawable extends BaseDrawable {
 			}
 		}
 
+		private Bitmap decodeRegion(BitmapRegionDecoder decoder) {
+			Bitmap inBitmap = null;
+			int scale = options.inSampleSize;
+			// Decoded size is known exactly only when region is divisible by sample size
+			if (BitmapPool.isSupported() && rect.width() % scale == 0 && rect.height() % scale == 0) {
+				inBitmap = bitmapPool.obtainExact(rect.width() / scale, rect.height() / scale,
+						Bitmap.Config.ARGB_8888);
+				if (inBitmap != null) {
+					inBitmap.eraseColor(Color.TRANSPARENT);
+				}
+			}
+			options.inBitmap = inBitmap;
+			Bitmap bitmap;
+			try {
+				bitmap = decoder.decodeRegion(rect, options);
+			} catch (IllegalArgumentException e) {
+				// Decoded region doesn't fit the reused bitmap
+				bitmap = null;
+			}
+			if (bitmap == null && inBitmap != null) {
+				bitmapPool.release(inBitmap);
+				options.inBitmap = null;
+				bitmap = decoder.decodeRegion(rect, options);
+			}
+			return bitmap;
+		}
+
 		@SuppressWarnings("deprecation")
 		public void cancel() {
 			super.cancel();
@@ -261,7 +447,7 @@ public class DecoderDrawable extends BaseDrawable {
 		@Override
 		protected void onCancel(Bitmap bitmap) {
 			if (bitmap != null) {
-				bitmap.recycle();
+				releaseFragment(bitmap);
 			}
 		}
 
@@ -0,0 +1,128 @@
+package com.mishiranu.dashchan.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+public class AhoCorasick {
+	private final char[][] keys;
+	private final int[][] children;
+	private final int[] fail;
+	private final int[][] outputs;
+	private final int wordsCount;
+
+	public AhoCorasick(List<String> words) {
+		ArrayList<HashMap<Character, Integer>> trie = new ArrayList<>();
+		ArrayList<ArrayList<Integer>> trieOutputs = new ArrayList<>();
+		trie.add(new HashMap<>());
+		trieOutputs.add(new ArrayList<>());
+		for (int i = 0; i < words.size(); i++) {
+			String word = fold(words.get(i));
+			int state = 0;
+			for (int j = 0; j < word.length(); j++) {
+				char c = word.charAt(j);
+				Integer next = trie.get(state).get(c);
+				if (next == null) {
+					next = trie.size();
+					trie.get(state).put(c, next);
+					trie.add(new HashMap<>());
+					trieOutputs.add(new ArrayList<>());
+				}
+				state = next;
+			}
+			trieOutputs.get(state).add(i);
+		}
+
+		int count = trie.size();
+		keys = new char[count][];
+		children = new int[count][];
+		fail = new int[count];
+		outputs = new int[count][];
+		wordsCount = words.size();
+		for (int i = 0; i < count; i++) {
+			HashMap<Character, Integer> map = trie.get(i);
+			char[] stateKeys = new char[map.size()];
+			int index = 0;
+			for (char c : map.keySet()) {
+				stateKeys[index++] = c;
+			}
+			Arrays.sort(stateKeys);
+			int[] stateChildren = new int[stateKeys.length];
+			for (int j = 0; j < stateKeys.length; j++) {
+				stateChildren[j] = map.get(stateKeys[j]);
+			}
+			keys[i] = stateKeys;
+			children[i] = stateChildren;
+		}
+
+		// Breadth-first traversal guarantees fail states are processed before their dependants
+		int[] queue = new int[count];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = 0;
+		while (head < tail) {
+			int state = queue[head++];
+			ArrayList<Integer> stateOutputs = trieOutputs.get(state);
+			if (state != 0 && !trieOutputs.get(fail[state]).isEmpty()) {
+				stateOutputs.addAll(trieOutputs.get(fail[state]));
+			}
+			for (int j = 0; j < keys[state].length; j++) {
+				char c = keys[state][j];
+				int child = children[state][j];
+				if (state == 0) {
+					fail[child] = 0;
+				} else {
+					int f = fail[state];
+					int next;
+					while ((next = getChild(f, c)) < 0 && f != 0) {
+						f = fail[f];
+					}
+					fail[child] = next >= 0 ? next : 0;
+				}
+				queue[tail++] = child;
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			ArrayList<Integer> stateOutputs = trieOutputs.get(i);
+			int[] array = new int[stateOutputs.size()];
+			for (int j = 0; j < array.length; j++) {
+				array[j] = stateOutputs.get(j);
+			}
+			outputs[i] = array;
+		}
+	}
+
+	public static String fold(CharSequence text) {
+		// Pattern.CASE_INSENSITIVE is Unicode-aware on Android, so both sides are folded with full case mapping,
+		// which also expands characters like "ß" to "ss"
+		return text.toString().toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+	}
+
+	private int getChild(int state, char c) {
+		int index = Arrays.binarySearch(keys[state], c);
+		return index >= 0 ? children[state][index] : -1;
+	}
+
+	public boolean[] find(CharSequence text) {
+		boolean[] found = new boolean[wordsCount];
+		if (wordsCount == 0) {
+			return found;
+		}
+		String folded = fold(text);
+		int state = 0;
+		for (int i = 0, length = folded.length(); i < length; i++) {
+			char c = folded.charAt(i);
+			int next;
+			while ((next = getChild(state, c)) < 0 && state != 0) {
+				state = fail[state];
+			}
+			state = next >= 0 ? next : 0;
+			for (int word : outputs[state]) {
+				found[word] = true;
+			}
+		}
+		return found;
+	}
+}
@@ -1,12 +1,29 @@
 package com.mishiranu.dashchan.text;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Locale;
+import java.util.Random;
 import java.util.Set;
 
 public class SimilarTextEstimator {
 	private static final int MIN_WORDS_COUNT = 1;
 
+	// 32 bands of 2 rows make posts with 40% similar words candidates with 99% probability
+	private static final int BANDS_COUNT = 32;
+	private static final int BAND_ROWS = 2;
+	private static final int SIGNATURE_SIZE = BANDS_COUNT * BAND_ROWS;
+	private static final int[] SEEDS = new int[SIGNATURE_SIZE];
+
+	static {
+		Random random = new Random(0x5eed);
+		for (int i = 0; i < SEEDS.length; i++) {
+			SEEDS[i] = random.nextInt();
+		}
+	}
+
 	private final int maxLength;
 	private final boolean removePostLinks;
 
@@ -46,60 +63,67 @@ public class SimilarTextEstimator {
 			text = text.substring(0, maxLength);
 		}
 		text = text.toLowerCase(Locale.getDefault());
-		StringBuilder builder = new StringBuilder(text);
-		if (removePostLinks) {
-			int index = 0;
-			while (true) {
-				index = builder.indexOf(">>", index);
-				if (index == -1) {
-					break;
+		// Split words in a single pass, post links are skipped and don't split words
+		StringBuilder word = new StringBuilder();
+		for (int i = 0, length = text.length(); i <= length; i++) {
+			char c = i < length ? text.charAt(i) : ' ';
+			if (removePostLinks && c == '>' && i + 2 < length && text.charAt(i + 1) == '>' &&
+					Character.isDigit(text.charAt(i + 2))) {
+				i += 2;
+				while (i + 1 < length && Character.isDigit(text.charAt(i + 1))) {
+					i++;
 				}
-				int charCount = 0;
-				for (int i = index + 2; i < builder.length(); i++) {
-					if (Character.isDigit(builder.charAt(i))) {
-						charCount++;
-					} else {
-						break;
-					}
-				}
-				if (charCount > 0) {
-					builder.delete(index, index + 2 + charCount);
-					index++;
-				} else {
-					index += 2;
+				continue;
+			}
+			if (Character.isLetterOrDigit(c)) {
+				word.append(c);
+			} else if (word.length() > 0) {
+				if (words == null) {
+					words = new HashSet<>();
 				}
+				words.add(word.toString());
+				word.setLength(0);
+				count++;
 			}
 		}
-		// Remove not letter characters
-		for (int i = 0; i < builder.length(); i++) {
-			char c = builder.charAt(i);
-			if (c != ' ' && !Character.isLetterOrDigit(c)) {
-				builder.setCharAt(i, ' ');
-			}
+		return count >= MIN_WORDS_COUNT ? new WordsData<>(words, count) : null;
+	}
+
+	public <E> WordsData<E> findSimilar(Index<E> index, WordsData<E> wordsData) {
+		if (wordsData == null) {
+			return null;
 		}
-		// Fast String.split(" +")
-		boolean inWord = false;
-		int wordStart = 0;
-		for (int i = 0, length = builder.length(); i <= length; i++) {
-			char c = i < length ? builder.charAt(i) : ' ';
-			if (inWord) {
-				if (c == ' ') {
-					inWord = false;
-					String word = builder.substring(wordStart, i);
-					if (words == null) {
-						words = new HashSet<>();
+		// Only exemplars sharing at least one band with the signature are compared precisely
+		int[] signature = wordsData.getSignature();
+		int foundId = -1;
+		for (int band = 0; band < BANDS_COUNT; band++) {
+			ArrayList<Integer> ids = index.buckets.get(getBucketKey(signature, band));
+			if (ids != null) {
+				for (int id : ids) {
+					if ((foundId < 0 || id < foundId) && checkSimiliar(wordsData, index.items.get(id))) {
+						foundId = id;
 					}
-					words.add(word);
-					count++;
-				}
-			} else {
-				if (c != ' ') {
-					inWord = true;
-					wordStart = i;
 				}
 			}
 		}
-		return count >= MIN_WORDS_COUNT ? new WordsData<>(words, count) : null;
+		return foundId >= 0 ? index.items.get(foundId) : null;
+	}
+
+	private static int mix(int value) {
+		value ^= value >>> 16;
+		value *= 0x85ebca6b;
+		value ^= value >>> 13;
+		value *= 0xc2b2ae35;
+		value ^= value >>> 16;
+		return value;
+	}
+
+	private static long getBucketKey(int[] signature, int band) {
+		int hash = 1;
+		for (int i = 0; i < BAND_ROWS; i++) {
+			hash = 31 * hash + signature[band * BAND_ROWS + i];
+		}
+		return (long) band << 32 | hash & 0xffffffffL;
 	}
 
 	public static class WordsData<E> {
@@ -107,9 +131,56 @@ public class SimilarTextEstimator {
 		public final int count;
 		public E extra;
 
+		private int[] signature;
+
 		public WordsData(Set<String> words, int count) {
 			this.words = words;
 			this.count = count;
 		}
+
+		private int[] getSignature() {
+			if (signature == null) {
+				// MinHash signature: similar word sets have equal minimums with probability of their similarity
+				int[] signature = new int[SIGNATURE_SIZE];
+				Arrays.fill(signature, Integer.MAX_VALUE);
+				if (words != null) {
+					for (String word : words) {
+						int hash = word.hashCode();
+						for (int i = 0; i < SIGNATURE_SIZE; i++) {
+							int value = mix(hash ^ SEEDS[i]);
+							if (value < signature[i]) {
+								signature[i] = value;
+							}
+						}
+					}
+				}
+				this.signature = signature;
+			}
+			return signature;
+		}
+	}
+
+	public static class Index<E> {
+		private final ArrayList<WordsData<E>> items = new ArrayList<>();
+		private final HashMap<Long, ArrayList<Integer>> buckets = new HashMap<>();
+
+		public void add(WordsData<E> wordsData) {
+			int id = items.size();
+			items.add(wordsData);
+			int[] signature = wordsData.getSignature();
+			for (int band = 0; band < BANDS_COUNT; band++) {
+				long key = getBucketKey(signature, band);
+				ArrayList<Integer> ids = buckets.get(key);
+				if (ids == null) {
+					ids = new ArrayList<>(1);
+					buckets.put(key, ids);
+				}
+				ids.add(id);
+			}
+		}
+
+		public int size() {
+			return items.size();
+		}
 	}
 }
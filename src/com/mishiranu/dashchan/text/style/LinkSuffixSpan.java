@@ -27,6 +27,10 @@ public class LinkSuffixSpan extends ReplacementSpan implements ColorScheme.Span
 		return FlagUtils.get(this.suffix, suffix);
 	}
 
+	public int getSuffix() {
+		return suffix;
+	}
+
 	public void setSuffix(int suffix, boolean present) {
 		this.suffix = FlagUtils.set(this.suffix, suffix, present);
 	}
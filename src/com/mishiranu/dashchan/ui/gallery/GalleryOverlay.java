@@ -473,7 +473,7 @@ public class GalleryOverlay extends DialogFragment implements GalleryDialog.Call
 				}
 			}
 			requestItems.add(new DownloadService.RequestItem(galleryItem.getFileUri(chan),
-					galleryItem.getFileName(chan), galleryItem.originalName));
+					galleryItem.getFileName(chan), galleryItem.originalName, galleryItem.size));
 		}
 		if (requestItems.size() > 0) {
 			DownloadService.Binder binder = ((FragmentHandler) requireActivity()).getDownloadBinder();
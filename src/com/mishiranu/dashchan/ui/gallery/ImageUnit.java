@@ -31,23 +31,35 @@ import com.mishiranu.dashchan.widget.PhotoView;
 import com.mishiranu.dashchan.widget.SummaryLayout;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.Executor;
 
 public class ImageUnit {
+	private static final int PREFETCH_COUNT_WIFI = 3;
+	private static final int PREFETCH_COUNT_MOBILE = 1;
+
 	private final PagerInstance instance;
 
-	private ReadFileTask readFileTask;
-	private ReadBitmapCallback readBitmapCallback;
+	private final HashMap<GalleryItem, ReadBitmapCallback> readBitmapCallbacks = new HashMap<>();
+	private final HashSet<GalleryItem> prefetchFailedItems = new HashSet<>();
 
 	public ImageUnit(PagerInstance instance) {
 		this.instance = instance;
 	}
 
 	public void interrupt(boolean force) {
-		if (force && readFileTask != null) {
-			readFileTask.cancel();
-			readFileTask = null;
-			readBitmapCallback = null;
+		if (force) {
+			ArrayList<ReadBitmapCallback> callbacks = new ArrayList<>(readBitmapCallbacks.values());
+			readBitmapCallbacks.clear();
+			prefetchFailedItems.clear();
+			for (ReadBitmapCallback callback : callbacks) {
+				callback.readFileTask.cancel();
+			}
 		}
 		interruptHolder(instance.leftHolder);
 		interruptHolder(instance.currentHolder);
@@ -87,48 +99,149 @@ public class ImageUnit {
 			((DecodeBitmapTask) holder.decodeBitmapTask).cancel();
 			holder.progressBar.setVisible(false, true);
 		}
-		DecodeBitmapTask decodeBitmapTask = new DecodeBitmapTask(file, fileHolder);
+		DecodeBitmapTask decodeBitmapTask = new DecodeBitmapTask(holder, file, fileHolder);
 		decodeBitmapTask.execute(EXECUTOR);
 		holder.decodeBitmapTask = decodeBitmapTask;
-		PagerInstance.ViewHolder nextHolder = instance.scrollingLeft ? instance.leftHolder : instance.rightHolder;
-		if (nextHolder != null && Preferences.getLoadNearestImage()
-				.isNetworkAvailable(NetworkObserver.getInstance())) {
-			GalleryItem nextGalleryItem = nextHolder.galleryItem;
-			Chan chan = Chan.get(instance.galleryInstance.chanName);
-			if (nextGalleryItem.isImage(chan)) {
-				Uri nextUri = nextGalleryItem.getFileUri(chan);
-				File nextCachedFile = CacheManager.getInstance().getMediaFile(nextUri, true);
-				if (nextCachedFile != null && !nextCachedFile.exists()) {
-					loadImage(nextUri, nextCachedFile, nextHolder);
-				}
-			}
-		}
+		prefetch();
 	}
 
 	private void loadImage(Uri uri, File cachedFile, PagerInstance.ViewHolder holder) {
 		if (attachReadBitmapCallback(holder)) {
 			return;
 		}
-		if (readFileTask != null) {
-			readFileTask.cancel();
-		}
-		readBitmapCallback = new ReadBitmapCallback(holder.galleryItem);
 		Chan chan = Chan.getPreferred(instance.galleryInstance.chanName, uri);
-		readFileTask = ReadFileTask.createCachedMediaFile(readBitmapCallback, chan, uri, cachedFile);
-		readFileTask.execute(ConcurrentUtils.PARALLEL_EXECUTOR);
+		cancelPrefetch(getPrefetchItems(chan, holder.galleryItem));
+		startDownloading(chan, uri, cachedFile, holder.galleryItem);
+	}
+
+	private void startDownloading(Chan chan, Uri uri, File cachedFile, GalleryItem galleryItem) {
+		ReadBitmapCallback readBitmapCallback = new ReadBitmapCallback(galleryItem);
+		readBitmapCallback.readFileTask = ReadFileTask.createCachedMediaFile(readBitmapCallback,
+				chan, uri, cachedFile);
+		readBitmapCallbacks.put(galleryItem, readBitmapCallback);
+		readBitmapCallback.readFileTask.execute(ConcurrentUtils.PARALLEL_EXECUTOR);
 	}
 
 	private boolean attachReadBitmapCallback(PagerInstance.ViewHolder holder) {
-		if (readBitmapCallback != null && readBitmapCallback.isHolder(holder)) {
+		ReadBitmapCallback readBitmapCallback = holder != null ? readBitmapCallbacks.get(holder.galleryItem) : null;
+		if (readBitmapCallback != null) {
 			readBitmapCallback.attachDownloading();
 			return true;
 		}
 		return false;
 	}
 
+	private List<GalleryItem> getPrefetchItems(Chan chan, GalleryItem galleryItem) {
+		NetworkObserver networkObserver = NetworkObserver.getInstance();
+		if (!Preferences.getLoadNearestImage().isNetworkAvailable(networkObserver)) {
+			return Collections.emptyList();
+		}
+		List<GalleryItem> galleryItems = instance.galleryInstance.galleryItems;
+		int index = galleryItems.indexOf(galleryItem);
+		if (index < 0) {
+			return Collections.emptyList();
+		}
+		boolean wifi = networkObserver.isWifiConnected();
+		int count = wifi ? PREFETCH_COUNT_WIFI : PREFETCH_COUNT_MOBILE;
+		int direction = instance.scrollingLeft ? -1 : 1;
+		ArrayList<GalleryItem> prefetchItems = new ArrayList<>(count + 1);
+		for (int i = 1; i <= count; i++) {
+			addPrefetchItem(prefetchItems, chan, galleryItems, index + direction * i);
+		}
+		if (wifi) {
+			addPrefetchItem(prefetchItems, chan, galleryItems, index - direction);
+		}
+		return prefetchItems;
+	}
+
+	private static void addPrefetchItem(List<GalleryItem> prefetchItems, Chan chan,
+			List<GalleryItem> galleryItems, int index) {
+		if (index >= 0 && index < galleryItems.size()) {
+			GalleryItem galleryItem = galleryItems.get(index);
+			if (galleryItem.isImage(chan)) {
+				prefetchItems.add(galleryItem);
+			}
+		}
+	}
+
+	private void cancelPrefetch(List<GalleryItem> prefetchItems) {
+		ArrayList<ReadBitmapCallback> callbacks = null;
+		Iterator<ReadBitmapCallback> iterator = readBitmapCallbacks.values().iterator();
+		while (iterator.hasNext()) {
+			ReadBitmapCallback readBitmapCallback = iterator.next();
+			if (!readBitmapCallback.isCurrentHolder() && !prefetchItems.contains(readBitmapCallback.galleryItem)) {
+				iterator.remove();
+				if (callbacks == null) {
+					callbacks = new ArrayList<>();
+				}
+				callbacks.add(readBitmapCallback);
+			}
+		}
+		if (callbacks != null) {
+			for (ReadBitmapCallback readBitmapCallback : callbacks) {
+				readBitmapCallback.readFileTask.cancel();
+			}
+		}
+	}
+
+	public void prefetch() {
+		PagerInstance.ViewHolder holder = instance.currentHolder;
+		if (holder == null || holder.galleryItem == null) {
+			return;
+		}
+		Chan chan = Chan.get(instance.galleryInstance.chanName);
+		if (!holder.galleryItem.isImage(chan)) {
+			return;
+		}
+		List<GalleryItem> prefetchItems = getPrefetchItems(chan, holder.galleryItem);
+		cancelPrefetch(prefetchItems);
+		// Download files one by one after the current one, so they don't compete for bandwidth
+		if (!readBitmapCallbacks.isEmpty()) {
+			return;
+		}
+		CacheManager cacheManager = CacheManager.getInstance();
+		for (GalleryItem galleryItem : prefetchItems) {
+			if (!prefetchFailedItems.contains(galleryItem)) {
+				Uri uri = galleryItem.getFileUri(chan);
+				File cachedFile = cacheManager.getMediaFile(uri, true);
+				if (cachedFile != null && !cachedFile.exists()) {
+					startDownloading(Chan.getPreferred(instance.galleryInstance.chanName, uri),
+							uri, cachedFile, galleryItem);
+					return;
+				}
+			}
+		}
+		if (!prefetchItems.isEmpty() && holder.loadState == PagerInstance.LoadState.COMPLETE) {
+			preDecodeNext(chan);
+		}
+	}
+
+	private void preDecodeNext(Chan chan) {
+		PagerInstance.ViewHolder holder = instance.scrollingLeft ? instance.leftHolder : instance.rightHolder;
+		if (holder == null || holder.galleryItem == null || holder.decodeBitmapTask != null ||
+				holder.loadState != PagerInstance.LoadState.PREVIEW_OR_LOADING || !holder.galleryItem.isImage(chan)) {
+			return;
+		}
+		File file = CacheManager.getInstance().getMediaFile(holder.galleryItem.getFileUri(chan), true);
+		if (file == null || !file.exists()) {
+			return;
+		}
+		FileHolder fileHolder = FileHolder.obtain(file);
+		FileHolder.ImageType imageType = fileHolder.getImageType();
+		// Animated images are not kept by side views, so only static images are worth decoding
+		if (imageType == FileHolder.ImageType.IMAGE_JPEG || imageType == FileHolder.ImageType.IMAGE_WEBP ||
+				imageType == FileHolder.ImageType.IMAGE_BMP) {
+			DecodeBitmapTask decodeBitmapTask = new DecodeBitmapTask(holder, file, fileHolder);
+			decodeBitmapTask.execute(EXECUTOR);
+			holder.decodeBitmapTask = decodeBitmapTask;
+		}
+	}
+
 	private class ReadBitmapCallback implements ReadFileTask.FileCallback {
 		private final GalleryItem galleryItem;
 
+		public ReadFileTask readFileTask;
+
 		public ReadBitmapCallback(GalleryItem galleryItem) {
 			this.galleryItem = galleryItem;
 		}
@@ -164,8 +277,10 @@ public class ImageUnit {
 
 		@Override
 		public void onFinishDownloading(boolean success, Uri uri, File file, ErrorItem errorItem) {
-			readFileTask = null;
-			readBitmapCallback = null;
+			if (readBitmapCallbacks.get(galleryItem) != this) {
+				return;
+			}
+			readBitmapCallbacks.remove(galleryItem);
 			if (isCurrentHolder()) {
 				instance.currentHolder.progressBar.setVisible(false, false);
 				if (success) {
@@ -173,6 +288,11 @@ public class ImageUnit {
 				} else {
 					instance.callback.showError(instance.currentHolder, errorItem.toString());
 				}
+			} else {
+				if (!success) {
+					prefetchFailedItems.add(galleryItem);
+				}
+				prefetch();
 			}
 		}
 
@@ -241,6 +361,7 @@ public class ImageUnit {
 	}
 
 	private class DecodeBitmapTask extends ExecutorTask<Void, Void> {
+		private final PagerInstance.ViewHolder holder;
 		private final File file;
 		private final FileHolder fileHolder;
 		private final PhotoView photoView;
@@ -251,14 +372,15 @@ public class ImageUnit {
 		private GifDecoder gifDecoder;
 		private int errorMessageId;
 
-		public DecodeBitmapTask(File file, FileHolder fileHolder) {
+		public DecodeBitmapTask(PagerInstance.ViewHolder holder, File file, FileHolder fileHolder) {
+			this.holder = holder;
 			this.file = file;
 			this.fileHolder = fileHolder;
-			photoView = instance.currentHolder.photoView;
-			if (fileHolder.getImageWidth() >= 2048 && fileHolder.getImageHeight() >= 2048
-					|| fileHolder.getImageType() == FileHolder.ImageType.IMAGE_SVG) {
-				instance.currentHolder.progressBar.setVisible(true, false);
-				instance.currentHolder.progressBar.setIndeterminate(true);
+			photoView = holder.photoView;
+			if (holder == instance.currentHolder && (fileHolder.getImageWidth() >= 2048 &&
+					fileHolder.getImageHeight() >= 2048 || fileHolder.getImageType() == FileHolder.ImageType.IMAGE_SVG)) {
+				holder.progressBar.setVisible(true, false);
+				holder.progressBar.setIndeterminate(true);
 			}
 		}
 
@@ -312,7 +434,7 @@ public class ImageUnit {
 
 		@Override
 		protected void onComplete(Void result) {
-			PagerInstance.ViewHolder holder = instance.currentHolder;
+			boolean current = holder == instance.currentHolder;
 			holder.decodeBitmapTask = null;
 			holder.progressBar.setVisible(false, false);
 			if (bitmap != null || decoderDrawable != null || animatedPngDecoder != null || gifDecoder != null) {
@@ -341,12 +463,15 @@ public class ImageUnit {
 					height = bitmap.getHeight();
 					setPhotoViewImage(holder, holder.simpleBitmapDrawable, bitmap.hasAlpha());
 				}
-				if (holder.mediaSummary.updateDimensions(width, height)) {
+				if (holder.mediaSummary.updateDimensions(width, height) && current) {
 					instance.galleryInstance.callback.updateTitle();
 				}
 				holder.loadState = PagerInstance.LoadState.COMPLETE;
-				instance.galleryInstance.callback.invalidateOptionsMenu();
-			} else {
+				if (current) {
+					instance.galleryInstance.callback.invalidateOptionsMenu();
+					prefetch();
+				}
+			} else if (current) {
 				instance.callback.showError(holder, instance.galleryInstance.context.getString(errorMessageId));
 			}
 		}
@@ -577,6 +577,7 @@ public class PagerUnit implements PagerInstance.Callback {
 			} else {
 				galleryInstance.callback.invalidateOptionsMenu();
 				galleryInstance.callback.modifySystemUiVisibility(GalleryInstance.Flags.LOCKED_ERROR, false);
+				imageUnit.prefetch();
 			}
 			galleryInstance.callback.updateTitle();
 			if (galleryItem.postNumber != null && resumed && !galleryInstance.callback.isGalleryMode()) {
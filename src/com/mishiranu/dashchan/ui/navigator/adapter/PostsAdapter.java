@@ -5,9 +5,6 @@ import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.net.Uri;
-import android.os.Handler;
-import android.os.Looper;
-import android.os.Message;
 import android.os.SystemClock;
 import android.view.View;
 import android.view.ViewGroup;
@@ -31,6 +28,7 @@ import com.mishiranu.dashchan.util.ResourceUtils;
 import com.mishiranu.dashchan.widget.ClickableToast;
 import com.mishiranu.dashchan.widget.CommentTextView;
 import com.mishiranu.dashchan.widget.DividerItemDecoration;
+import com.mishiranu.dashchan.widget.PrecomputedTextCache;
 import com.mishiranu.dashchan.widget.SimpleViewHolder;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -39,6 +37,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 public class PostsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 		implements CommentTextView.LinkListener, UiManager.PostsProvider, HidePerformer.PostsProvider {
@@ -60,9 +59,16 @@ public class PostsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 
 	private static final String PAYLOAD_INVALIDATE_COMMENT = "invalidateComment";
 
+	private static final int PRELOAD_THREADS_COUNT = 2;
+	private static final int PRELOAD_LAYOUTS_COUNT = 50;
+	private static final Executor PRELOAD_EXECUTOR = ConcurrentUtils.newThreadPool(0, PRELOAD_THREADS_COUNT,
+			3000, "PostsAdapterPreload", null);
+
 	private final UiManager uiManager;
 	private final UiManager.ConfigurationSet configurationSet;
 	private final UiManager.DemandSet demandSet = new UiManager.DemandSet();
+	private final PrecomputedTextCache precomputedTextCache = PrecomputedTextCache.isSupported()
+			? new PrecomputedTextCache() : null;
 	private final GalleryItem.Set gallerySet = new GalleryItem.Set(true);
 	private final CommentTextView.RecyclerKeeper recyclerKeeper;
 	private final RecyclerView recyclerView;
@@ -74,6 +80,7 @@ public class PostsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 
 	private int bumpLimitOrdinalIndex = PostItem.ORDINAL_INDEX_NONE;
 	private boolean selection = false;
+	private Preload preload;
 
 	public PostsAdapter(Callback callback, String chanName, UiManager uiManager, Replyable replyable,
 			UiManager.PostStateProvider postStateProvider, FragmentManager fragmentManager, RecyclerView recyclerView,
@@ -87,6 +94,7 @@ public class PostsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 		super.registerAdapterDataObserver(recyclerKeeper);
 		this.postItemsMap = postItemsMap;
 		this.hiddenPosts = hiddenPosts;
+		demandSet.precomputedTextCache = precomputedTextCache;
 		postNumbers.addAll(postItemsMap.keySet());
 		Collections.sort(postNumbers);
 		preloadPosts(0);
@@ -150,6 +158,10 @@ public class PostsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 				demandSet.lastInList = position == getItemCount() - 1;
 				if (payloads.isEmpty() || payloads.contains(SimpleViewHolder.EMPTY_PAYLOAD)) {
 					uiManager.view().bindPostView(holder, postItem, configurationSet, demandSet);
+					if (precomputedTextCache != null && precomputedTextCache.consumeParamsChanged()) {
+						// Text parameters are known only after the first bind
+						preloadPosts(position);
+					}
 				} else {
 					if (payloads.contains(PAYLOAD_INVALIDATE_COMMENT)) {
 						uiManager.view().bindPostViewInvalidateComment(holder);
@@ -426,7 +438,16 @@ public class PostsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 	}
 
 	public void cancelPreloading() {
-		preloadHandler.removeMessages(0);
+		if (preload != null) {
+			preload.cancelled = true;
+			preload = null;
+		}
+	}
+
+	public void clearPrecomputedText() {
+		if (precomputedTextCache != null) {
+			precomputedTextCache.clear();
+		}
 	}
 
 	private static class PreloadIterator implements Iterator<PostItem> {
@@ -472,31 +493,86 @@ public class PostsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 	public void preloadPosts(int from) {
 		if (from >= 0 && from < getItemCount()) {
 			cancelPreloading();
-			// Preload to both sides
-			Iterator<PostItem> ascending = new PostsIterator(true, from);
-			Iterator<PostItem> descending = new PostsIterator(false, from);
-			preloadHandler.obtainMessage(0, 0, 0, new PreloadIterator(ascending, descending)).sendToTarget();
+			// Preload to both sides, nearest posts first
+			PreloadIterator iterator = new PreloadIterator(new PostsIterator(true, from),
+					new PostsIterator(false, from));
+			ArrayList<PostItem> postItems = new ArrayList<>(getItemCount());
+			while (iterator.hasNext()) {
+				postItems.add(iterator.next());
+			}
+			preload = new Preload(Chan.get(configurationSet.chanName), postItems);
+			for (int i = 0; i < PRELOAD_THREADS_COUNT; i++) {
+				PRELOAD_EXECUTOR.execute(preload);
+			}
 		}
 	}
 
-	private final Handler preloadHandler = new Handler(Looper.getMainLooper(), new PreloadCallback());
+	private class Preload implements Runnable {
+		private final Chan chan;
+		private final List<PostItem> postItems;
+		private int index;
 
-	private class PreloadCallback implements Handler.Callback {
-		@Override
-		public boolean handleMessage(Message msg) {
+		public volatile boolean cancelled;
+
+		public Preload(Chan chan, List<PostItem> postItems) {
+			this.chan = chan;
+			this.postItems = postItems;
+		}
+
+		private ArrayList<PostItem> prepareChunk() {
 			// Take only 8ms per frame for preloading in main thread
-			PreloadIterator iterator = (PreloadIterator) msg.obj;
-			Chan chan = Chan.get(configurationSet.chanName);
+			ArrayList<PostItem> chunk = new ArrayList<>();
 			long time = SystemClock.elapsedRealtime();
-			while (SystemClock.elapsedRealtime() - time < ConcurrentUtils.HALF_FRAME_TIME_MS && iterator.hasNext()) {
-				PostItem postItem = iterator.next();
-				configurationSet.postStateProvider.isHiddenResolve(postItem);
+			while (!cancelled && index < postItems.size() &&
+					SystemClock.elapsedRealtime() - time < ConcurrentUtils.HALF_FRAME_TIME_MS) {
+				PostItem postItem = postItems.get(index++);
+				postItem.getFullName(chan);
 				postItem.getComment(chan);
+				chunk.add(postItem);
 			}
-			if (iterator.hasNext()) {
-				msg.getTarget().obtainMessage(0, 0, 0, iterator).sendToTarget();
+			return chunk;
+		}
+
+		@Override
+		public void run() {
+			// Markup and configuration belong to extensions and must be called in main thread,
+			// text layouts and autohide checks are prepared in background
+			while (!cancelled) {
+				int[] start = {0};
+				ArrayList<PostItem> chunk = ConcurrentUtils.mainGet(() -> {
+					start[0] = index;
+					return prepareChunk();
+				});
+				if (chunk.isEmpty()) {
+					break;
+				}
+				for (int i = 0; i < chunk.size() && !cancelled; i++) {
+					PostItem postItem = chunk.get(i);
+					if (precomputedTextCache != null && start[0] + i < PRELOAD_LAYOUTS_COUNT &&
+							precomputedTextCache.isReady()) {
+						precomputedTextCache.precompute(postItem, postItem.getSubject(), postItem.getComment(chan));
+					}
+					if (postItem.getHideState() == PostItem.HideState.UNDEFINED) {
+						configurationSet.postStateProvider.preloadHidden(chan, postItem);
+					}
+				}
+				if (!cancelled) {
+					publish(chunk);
+				}
 			}
-			return true;
+		}
+
+		private void publish(List<PostItem> postItems) {
+			ConcurrentUtils.HANDLER.post(() -> {
+				for (PostItem postItem : postItems) {
+					if (cancelled) {
+						break;
+					}
+					if (postItemsMap.get(postItem.getPostNumber()) == postItem) {
+						configurationSet.postStateProvider.isHiddenResolve(postItem);
+					}
+				}
+			});
 		}
 	}
 
@@ -7,6 +7,7 @@ import androidx.fragment.app.FragmentManager;
 import androidx.lifecycle.ViewModel;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.RecyclerView;
+import chan.content.Chan;
 import chan.content.ChanLocator;
 import com.mishiranu.dashchan.content.model.AttachmentItem;
 import com.mishiranu.dashchan.content.model.GalleryItem;
@@ -20,6 +21,7 @@ import com.mishiranu.dashchan.ui.posting.Replyable;
 import com.mishiranu.dashchan.util.ListViewUtils;
 import com.mishiranu.dashchan.util.WeakObservable;
 import com.mishiranu.dashchan.widget.CommentTextView;
+import com.mishiranu.dashchan.widget.PrecomputedTextCache;
 import com.mishiranu.dashchan.widget.ThemeEngine;
 import java.lang.ref.WeakReference;
 import java.util.Collection;
@@ -122,6 +124,9 @@ public class UiManager {
 			return postItem.getHideState().hidden;
 		}
 
+		// Called from background thread
+		default void preloadHidden(Chan chan, PostItem postItem) {}
+
 		default boolean isUserPost(PostNumber postNumber) {
 			return false;
 		}
@@ -166,6 +171,7 @@ public class UiManager {
 		public Selection selection = Selection.DISABLED;
 		public boolean showOpenThreadButton = false;
 		public Collection<String> highlightText = Collections.emptyList();
+		public PrecomputedTextCache precomputedTextCache;
 	}
 
 	public static class ConfigurationSet {
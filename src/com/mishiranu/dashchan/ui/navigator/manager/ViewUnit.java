@@ -57,6 +57,7 @@ import com.mishiranu.dashchan.widget.CardView;
 import com.mishiranu.dashchan.widget.CommentTextView;
 import com.mishiranu.dashchan.widget.LinebreakLayout;
 import com.mishiranu.dashchan.widget.PostLinearLayout;
+import com.mishiranu.dashchan.widget.PrecomputedTextCache;
 import com.mishiranu.dashchan.widget.ThemeEngine;
 import com.mishiranu.dashchan.widget.ThreadDescriptionView;
 import java.lang.ref.WeakReference;
@@ -438,8 +439,12 @@ public class ViewUnit {
 			}
 		}
 		holder.comment.setSpoilersEnabled(!Preferences.isShowSpoilers());
+		PrecomputedTextCache precomputedTextCache = demandSet.precomputedTextCache;
+		if (precomputedTextCache != null) {
+			precomputedTextCache.updateParams(holder.comment);
+		}
 		holder.comment.setSubjectAndComment(makeHighlightedText(demandSet.highlightText, subject),
-				makeHighlightedText(demandSet.highlightText, comment));
+				makeHighlightedText(demandSet.highlightText, comment), precomputedTextCache, postItem);
 		holder.comment.setVisibility(subject.length() > 0 || comment.length() > 0 ? View.VISIBLE : View.GONE);
 		holder.comment.bindSelectionPaddingView(demandSet.lastInList ? holder.textSelectionPadding : null);
 
@@ -32,6 +32,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.mishiranu.dashchan.C;
 import com.mishiranu.dashchan.R;
 import com.mishiranu.dashchan.content.HidePerformer;
+import com.mishiranu.dashchan.content.PostsSearchIndex;
 import com.mishiranu.dashchan.content.Preferences;
 import com.mishiranu.dashchan.content.WatcherNotifications;
 import com.mishiranu.dashchan.content.async.CallbackProxy;
@@ -102,6 +103,7 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 		public PagesDatabase.Cache.State cacheState;
 		public boolean initialExtract = true;
 		public boolean eraseExtract;
+		public boolean partialExtract;
 		public final HashMap<PostNumber, PostItem> postItems = new HashMap<>();
 		public final PostItem.HideState.Map<PostNumber> hiddenPosts = new PostItem.HideState.Map<>();
 		public final HashSet<PostNumber> userPosts = new HashSet<>();
@@ -113,6 +115,7 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 		public Uri archivedThreadUri;
 		public int uniquePosters;
 
+		public final PostsSearchIndex searchIndex = new PostsSearchIndex();
 		public List<PostNumber> searchPostNumbers = Collections.emptyList();
 		public boolean searching = false;
 		public int searchLastIndex;
@@ -129,6 +132,7 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 				dialogsState.dropState();
 				dialogsState = null;
 			}
+			searchIndex.clear();
 		}
 	}
 
@@ -311,6 +315,14 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 			return postItem.getHideState().hidden;
 		}
 
+		@Override
+		public void preloadHidden(Chan chan, PostItem postItem) {
+			HidePerformer hidePerformer = PostsPage.this.hidePerformer;
+			if (hidePerformer != null) {
+				hidePerformer.preloadHidden(chan, postItem);
+			}
+		}
+
 		@Override
 		public boolean isUserPost(PostNumber postNumber) {
 			RetainableExtra retainableExtra = getRetainableExtra(RetainableExtra.FACTORY);
@@ -468,7 +480,8 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 			switchError(initRequest.errorItem);
 		} else {
 			boolean extract = true;
-			if (retainableExtra.cache != null && retainableExtra.postItems.size() > 0) {
+			if ((retainableExtra.cache != null || retainableExtra.partialExtract) &&
+					retainableExtra.postItems.size() > 0) {
 				extract = false;
 				onExtractPostsCompleteInternal(true, null);
 				String searchSubmitQuery = getInitSearch().submitQuery;
@@ -541,6 +554,7 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 			selectionMode = null;
 		}
 		getAdapter().cancelPreloading();
+		getAdapter().clearPrecomputedText();
 		getUiManager().dialog().closeDialogs(getAdapter().getConfigurationSet().stackInstance);
 		getUiManager().observable().unregister(this);
 		if (searchWorker != null) {
@@ -1065,11 +1079,11 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 		if (adapter.getItemCount() == 0) {
 			return true;
 		}
-		List<PostItem> postItems = adapter.copyItems();
 		if (searchWorker != null) {
 			searchWorker.cancel();
 		}
-		searchWorker = new SearchWorker(postStateProvider, getChan(), postItems, query,
+		RetainableExtra retainableExtra = getRetainableExtra(RetainableExtra.FACTORY);
+		searchWorker = new SearchWorker(postStateProvider, adapter, retainableExtra.searchIndex, query,
 				lastEditedPostNumbers, lastNewPostNumbers, this::onSearchResult);
 		setCustomSearchView(searchProcessView);
 		return false;
@@ -1272,49 +1286,6 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 				page.chanName, page.boardName, page.threadNumber, false, null, true, extra);
 	}
 
-	private Pair<PostNumber, Integer> decodeThreadState(byte[] state) {
-		PostNumber positionPostNumber = null;
-		int positionOffset = 0;
-		if (state != null) {
-			try (JsonSerial.Reader reader = JsonSerial.reader(state)) {
-				reader.startObject();
-				while (!reader.endStruct()) {
-					switch (reader.nextName()) {
-						case "position": {
-							reader.startObject();
-							while (!reader.endStruct()) {
-								switch (reader.nextName()) {
-									case "number": {
-										positionPostNumber = PostNumber.parseNullable(reader.nextString());
-										break;
-									}
-									case "offset": {
-										positionOffset = reader.nextInt();
-										break;
-									}
-									default: {
-										reader.skip();
-										break;
-									}
-								}
-							}
-							break;
-						}
-						default: {
-							reader.skip();
-							break;
-						}
-					}
-				}
-			} catch (ParseException e) {
-				e.printStackTrace();
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			}
-		}
-		return positionPostNumber != null ? new Pair<>(positionPostNumber, positionOffset) : null;
-	}
-
 	private final Runnable storePositionRunnable = () -> {
 		ListPosition listPosition = ListPosition.obtain(getRecyclerView(), null);
 		byte[] state = null;
@@ -1383,8 +1354,10 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 			readViewModel.notifyEraseStarted();
 		}
 		ExtractViewModel extractViewModel = getViewModel(ExtractViewModel.class);
+		ParcelableExtra parcelableExtra = getParcelableExtra(ParcelableExtra.FACTORY);
 		ExtractPostsTask task = new ExtractPostsTask(extractViewModel.callback, retainableExtra.cache,
-				getChan(), page.boardName, page.threadNumber, retainableExtra.initialExtract, cleanup);
+				getChan(), page.boardName, page.threadNumber, retainableExtra.initialExtract,
+				parcelableExtra.scrollToPostNumber, cleanup);
 		task.execute(ConcurrentUtils.PARALLEL_EXECUTOR);
 		extractViewModel.attach(task);
 	}
@@ -1519,6 +1492,37 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 
 	private final LastToast lastToast = new LastToast();
 
+	@Override
+	public void onExtractPostsPartial(ExtractPostsTask.Result result) {
+		RetainableExtra retainableExtra = getRetainableExtra(RetainableExtra.FACTORY);
+		PaddedRecyclerView recyclerView = getRecyclerView();
+		PostsAdapter adapter = getAdapter();
+		if (adapter.getItemCount() > 0) {
+			// Partial results only speed up the first layout
+			return;
+		}
+		retainableExtra.partialExtract = true;
+		if (result.flags != null) {
+			retainableExtra.hiddenPosts.clear();
+			retainableExtra.hiddenPosts.addAll(result.flags.hiddenPosts);
+			retainableExtra.userPosts.clear();
+			retainableExtra.userPosts.addAll(result.flags.userPosts);
+		}
+		adapter.insertItems(result.postItems, Collections.emptyList());
+		ListPosition listPositionFromState = null;
+		if (result.stateExtra != null) {
+			listPositionFromState = transformPairToListPosition(result.stateExtra.decodePosition());
+			retainableExtra.threadExtra = result.stateExtra.extra;
+			decodeThreadExtra();
+		}
+		notifyAllAdaptersChanged();
+		recyclerView.getPullable().cancelBusyState();
+		switchList();
+		recyclerView.getPullable().startBusyState(PullableWrapper.Side.BOTTOM);
+		showScaleAnimation();
+		onExtractPostsCompleteInternal(true, listPositionFromState);
+	}
+
 	@Override
 	public void onExtractPostsComplete(ExtractPostsTask.Result result, boolean cancelled) {
 		Page page = getPage();
@@ -1539,6 +1543,7 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 		retainableExtra.initialExtract = false;
 		boolean erase = retainableExtra.eraseExtract;
 		retainableExtra.eraseExtract = false;
+		retainableExtra.partialExtract = false;
 		boolean wasEmpty = adapter.getItemCount() == 0;
 
 		if (result != null) {
@@ -1573,6 +1578,7 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 					keepPositionPair = transformListPositionToPair(listPosition);
 				}
 				adapter.insertItems(result.postItems, result.removedPosts);
+				retainableExtra.searchIndex.update(getChan(), result.postItems.values(), result.removedPosts);
 				updateAdapters = true;
 			}
 			if (result.flags != null) {
@@ -1582,7 +1588,7 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 				retainableExtra.userPosts.addAll(result.flags.userPosts);
 			}
 			if (result.stateExtra != null) {
-				listPositionFromState = transformPairToListPosition(decodeThreadState(result.stateExtra.state));
+				listPositionFromState = transformPairToListPosition(result.stateExtra.decodePosition());
 				retainableExtra.threadExtra = result.stateExtra.extra;
 				decodeThreadExtra();
 			}
@@ -1975,59 +1981,62 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 		}
 	}
 
-	private static class SearchWorker implements Runnable {
+	private static class SearchWorker implements Runnable, PostsSearchIndex.Callback {
 		public interface Callback {
 			void onResult(List<PostNumber> foundPostNumbers, Set<String> queries);
 		}
 
 		private final UiManager.PostStateProvider postStateProvider;
-		private final Chan chan;
-		private final List<PostItem> postItems;
+		private final UiManager.PostsProvider postsProvider;
 		private final Set<PostNumber> editedPostNumbers;
 		private final Set<PostNumber> newPostNumbers;
 		private final Callback callback;
 
 		private final SearchHelper helper;
 		private final Set<String> queries;
-		private final HashSet<String> fileNames = new HashSet<>();
+		private final PostsSearchIndex.Query query;
 		private final ArrayList<PostNumber> foundPostNumbers = new ArrayList<>();
 
+		private List<PostNumber> candidatePostNumbers;
 		private int start = 0;
 
-		public SearchWorker(UiManager.PostStateProvider postStateProvider, Chan chan, List<PostItem> postItems,
-				String query, Set<PostNumber> editedPostNumbers, Set<PostNumber> newPostNumbers, Callback callback) {
+		public SearchWorker(UiManager.PostStateProvider postStateProvider, UiManager.PostsProvider postsProvider,
+				PostsSearchIndex searchIndex, String query, Set<PostNumber> editedPostNumbers,
+				Set<PostNumber> newPostNumbers, Callback callback) {
 			this.postStateProvider = postStateProvider;
-			this.chan = chan;
-			this.postItems = postItems;
+			this.postsProvider = postsProvider;
 			this.newPostNumbers = newPostNumbers;
 			this.editedPostNumbers = editedPostNumbers;
 			this.callback = callback;
 			helper = new SearchHelper(Preferences.isAdvancedSearch());
 			helper.setFlags("m", "r", "a", "d", "e", "n", "op");
 			queries = helper.handleQueries(Locale.getDefault(), query);
-			ConcurrentUtils.HANDLER.post(this);
+			this.query = searchIndex.search(helper.getIncluded(), helper.getExcluded(), this);
+		}
+
+		@Override
+		public void onSearchComplete(List<PostNumber> postNumbers) {
+			candidatePostNumbers = postNumbers;
+			run();
 		}
 
 		@Override
 		public void run() {
+			// Text is matched by search index, only post states are checked here
 			long time = SystemClock.elapsedRealtime();
-			Locale locale = Locale.getDefault();
-			HashSet<String> fileNames = this.fileNames;
-			OUTER: while (true) {
+			while (true) {
 				if (SystemClock.elapsedRealtime() - time >= ConcurrentUtils.HALF_FRAME_TIME_MS) {
 					ConcurrentUtils.HANDLER.post(this);
 					break;
 				}
 				int index = start++;
-				if (index >= postItems.size()) {
-					Collections.sort(foundPostNumbers);
+				if (index >= candidatePostNumbers.size()) {
 					callback.onResult(foundPostNumbers, queries);
 					break;
 				}
-				PostItem postItem = postItems.get(index);
-				if (!postStateProvider.isHiddenResolve(postItem)) {
+				PostItem postItem = postsProvider.findPostItem(candidatePostNumbers.get(index));
+				if (postItem != null && !postStateProvider.isHiddenResolve(postItem)) {
 					PostNumber postNumber = postItem.getPostNumber();
-					String comment = postItem.getComment(chan).toString().toLowerCase(locale);
 					boolean userPost = postStateProvider.isUserPost(postNumber);
 					boolean reply = false;
 					for (PostNumber referenceTo : postItem.getReferencesTo()) {
@@ -2041,56 +2050,8 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 					boolean edited = editedPostNumbers.contains(postNumber);
 					boolean newPost = newPostNumbers.contains(postNumber);
 					boolean originalPoster = postItem.isOriginalPoster();
-					if (!helper.checkFlags("m", userPost, "r", reply, "a", hasAttachments, "d", deleted, "e", edited,
+					if (helper.checkFlags("m", userPost, "r", reply, "a", hasAttachments, "d", deleted, "e", edited,
 							"n", newPost, "op", originalPoster)) {
-						continue;
-					}
-					for (String lowQuery : helper.getExcluded()) {
-						if (comment.contains(lowQuery)) {
-							continue OUTER;
-						}
-					}
-					String subject = postItem.getSubject().toLowerCase(locale);
-					String name = postItem.getFullName(chan).toString().toLowerCase(locale);
-					fileNames.clear();
-					List<AttachmentItem> attachmentItems = postItem.getAttachmentItems();
-					if (attachmentItems != null) {
-						for (AttachmentItem attachmentItem : attachmentItems) {
-							String fileName = attachmentItem.getFileName(chan);
-							if (!StringUtils.isEmpty(fileName)) {
-								fileNames.add(fileName.toLowerCase(locale));
-								String originalName = attachmentItem.getOriginalName();
-								if (!StringUtils.isEmpty(originalName)) {
-									fileNames.add(originalName.toLowerCase(locale));
-								}
-							}
-						}
-					}
-					boolean found = false;
-					if (helper.hasIncluded()) {
-						QUERIES: for (String lowQuery : helper.getIncluded()) {
-							if (comment.contains(lowQuery)) {
-								found = true;
-								break;
-							} else if (subject.contains(lowQuery)) {
-								found = true;
-								break;
-							} else if (name.contains(lowQuery)) {
-								found = true;
-								break;
-							} else {
-								for (String fileName : fileNames) {
-									if (fileName.contains(lowQuery)) {
-										found = true;
-										break QUERIES;
-									}
-								}
-							}
-						}
-					} else {
-						found = true;
-					}
-					if (found) {
 						foundPostNumbers.add(postNumber);
 					}
 				}
@@ -2098,6 +2059,7 @@ public class PostsPage extends ListPage implements PostsAdapter.Callback, Favori
 		}
 
 		public void cancel() {
+			query.cancel();
 			ConcurrentUtils.HANDLER.removeCallbacks(this);
 		}
 	}
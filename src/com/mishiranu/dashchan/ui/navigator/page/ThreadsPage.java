@@ -5,6 +5,7 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Rect;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.util.Pair;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -26,6 +27,7 @@ import chan.util.StringUtils;
 import com.mishiranu.dashchan.R;
 import com.mishiranu.dashchan.content.HidePerformer;
 import com.mishiranu.dashchan.content.Preferences;
+import com.mishiranu.dashchan.content.async.CallbackProxy;
 import com.mishiranu.dashchan.content.async.ReadThreadsTask;
 import com.mishiranu.dashchan.content.async.TaskViewModel;
 import com.mishiranu.dashchan.content.database.CommonDatabase;
@@ -80,7 +82,55 @@ public class ThreadsPage extends ListPage implements ThreadsAdapter.Callback,
 
 	public static class ReadViewModel extends TaskViewModel.Proxy<ReadThreadsTask, ReadThreadsTask.Callback> {}
 
+	// Next page is requested when this fraction of the last loaded page is scrolled
+	private static final float PREFETCH_PAGE_FRACTION = 0.5f;
+	// Prefetched page is considered outdated after this time
+	private static final int PREFETCH_MAX_AGE = 30000;
+
+	private static class Prefetch {
+		public final int pageNumber;
+		public final boolean append;
+		public final ReadThreadsTask.Callback callback = CallbackProxy
+				.create(ReadThreadsTask.Callback.class, this::handleResult);
+
+		public ReadThreadsTask task;
+		private ReadThreadsTask.Callback target;
+		private CallbackProxy<ReadThreadsTask.Callback> result;
+		private long resultTime;
+		private boolean success;
+
+		public Prefetch(int pageNumber, boolean append) {
+			this.pageNumber = pageNumber;
+			this.append = append;
+		}
+
+		private void handleResult(CallbackProxy<ReadThreadsTask.Callback> result) {
+			resultTime = SystemClock.elapsedRealtime();
+			success = "onReadThreadsSuccess".equals(result.getMethodName());
+			if (target != null) {
+				result.invoke(target);
+			} else {
+				this.result = result;
+			}
+		}
+
+		public boolean isReusable() {
+			// Failed or outdated results must not be shown, the page is requested again instead
+			return resultTime == 0 || success && SystemClock.elapsedRealtime() - resultTime <= PREFETCH_MAX_AGE;
+		}
+
+		public void setTarget(ReadThreadsTask.Callback target) {
+			this.target = target;
+			if (result != null) {
+				CallbackProxy<ReadThreadsTask.Callback> result = this.result;
+				this.result = null;
+				result.invoke(target);
+			}
+		}
+	}
+
 	private HidePerformer hidePerformer;
+	private Prefetch prefetch;
 
 	private final UiManager.PostStateProvider postStateProvider = new UiManager.PostStateProvider() {
 		@Override
@@ -136,6 +186,14 @@ public class ThreadsPage extends ListPage implements ThreadsAdapter.Callback,
 		});
 		recyclerView.addItemDecoration(new DividerItemDecoration(recyclerView.getContext(), adapter::configureDivider));
 		recyclerView.getPullable().setPullSides(PullableWrapper.Side.BOTH);
+		recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+			@Override
+			public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+				if (dy > 0) {
+					prefetchNextPage();
+				}
+			}
+		});
 		uiManager.observable().register(this);
 		layoutManager.setSpanCount(adapter.setThreadsView(Preferences.getThreadsView()));
 		adapter.setCatalogSort(Preferences.getCatalogSort());
@@ -306,6 +364,7 @@ public class ThreadsPage extends ListPage implements ThreadsAdapter.Callback,
 
 	@Override
 	protected void onDestroy() {
+		cancelPrefetch();
 		getUiManager().dialog().closeDialogs(getAdapter().getConfigurationSet().stackInstance);
 		getUiManager().observable().unregister(this);
 		FavoritesStorage.getInstance().getObservable().unregister(this);
@@ -714,6 +773,39 @@ public class ThreadsPage extends ListPage implements ThreadsAdapter.Callback,
 		return loadThreadsPage(pageNumber, append, !getAdapter().isRealEmpty());
 	}
 
+	private void prefetchNextPage() {
+		RetainableExtra retainableExtra = getRetainableExtra(RetainableExtra.FACTORY);
+		ReadViewModel readViewModel = getViewModel(ReadViewModel.class);
+		if (prefetch != null || readViewModel.getTask() != null || retainableExtra.cachedPostItems.isEmpty() ||
+				retainableExtra.startPageNumber == PAGE_NUMBER_CATALOG) {
+			return;
+		}
+		int pageNumber = retainableExtra.startPageNumber + retainableExtra.cachedPostItems.size();
+		if (pageNumber >= Math.max(getChan().configuration.getPagesCount(getPage().boardName), 1)) {
+			return;
+		}
+		ThreadsAdapter adapter = getAdapter();
+		GridLayoutManager layoutManager = (GridLayoutManager) getRecyclerView().getLayoutManager();
+		int pageSize = retainableExtra.cachedPostItems.get(retainableExtra.cachedPostItems.size() - 1).size();
+		int threshold = adapter.getItemCount() - (int) (pageSize * (1f - PREFETCH_PAGE_FRACTION));
+		if (layoutManager.findLastVisibleItemPosition() + 1 >= threshold) {
+			// Same page and mode are computed by refreshThreads for the next page
+			boolean append = !Preferences.isPageByPage();
+			Prefetch prefetch = new Prefetch(pageNumber, append);
+			prefetch.task = new ReadThreadsTask(prefetch.callback, getChan(), getPage().boardName,
+					pageNumber, null, append, false);
+			prefetch.task.execute(ConcurrentUtils.PARALLEL_EXECUTOR);
+			this.prefetch = prefetch;
+		}
+	}
+
+	private void cancelPrefetch() {
+		if (prefetch != null) {
+			prefetch.task.cancel();
+			prefetch = null;
+		}
+	}
+
 	private boolean loadThreadsPage(int pageNumber, boolean append, boolean showPull) {
 		Page page = getPage();
 		Chan chan = getChan();
@@ -727,11 +819,24 @@ public class ThreadsPage extends ListPage implements ThreadsAdapter.Callback,
 			return false;
 		} else {
 			RetainableExtra retainableExtra = getRetainableExtra(RetainableExtra.FACTORY);
-			HttpValidator validator = !append && retainableExtra.cachedPostItems.size() == 1
-					&& retainableExtra.startPageNumber == pageNumber ? retainableExtra.validator : null;
-			ReadThreadsTask task = new ReadThreadsTask(readViewModel.callback,
-					chan, page.boardName, pageNumber, validator, append);
-			task.execute(ConcurrentUtils.PARALLEL_EXECUTOR);
+			Prefetch prefetch = this.prefetch;
+			this.prefetch = null;
+			if (prefetch != null && (prefetch.pageNumber != pageNumber || prefetch.append != append ||
+					!prefetch.isReusable())) {
+				prefetch.task.cancel();
+				prefetch = null;
+			}
+			ReadThreadsTask task;
+			if (prefetch != null) {
+				task = prefetch.task;
+			} else {
+				HttpValidator validator = !append && retainableExtra.cachedPostItems.size() == 1
+						&& retainableExtra.startPageNumber == pageNumber ? retainableExtra.validator : null;
+				boolean loadSnapshot = !append && getAdapter().isRealEmpty();
+				task = new ReadThreadsTask(readViewModel.callback,
+						chan, page.boardName, pageNumber, validator, append, loadSnapshot);
+				task.execute(ConcurrentUtils.PARALLEL_EXECUTOR);
+			}
 			readViewModel.attach(task);
 			if (showPull) {
 				recyclerView.getPullable().startBusyState(PullableWrapper.Side.TOP);
@@ -740,10 +845,23 @@ public class ThreadsPage extends ListPage implements ThreadsAdapter.Callback,
 				recyclerView.getPullable().startBusyState(PullableWrapper.Side.BOTH);
 				switchProgress();
 			}
+			if (prefetch != null) {
+				// Result might be already received, so it must be delivered after busy state is set
+				prefetch.setTarget(readViewModel.callback);
+			}
 			return true;
 		}
 	}
 
+	@Override
+	public void onReadThreadsSnapshot(List<PostItem> postItems, int pageNumber,
+			int boardSpeed, HttpValidator validator, PostItem.HideState.Map<String> hiddenThreads) {
+		if (getAdapter().isRealEmpty()) {
+			onReadThreadsSuccess(postItems, pageNumber, boardSpeed, false, false, validator, hiddenThreads);
+			getRecyclerView().getPullable().startBusyState(PullableWrapper.Side.TOP);
+		}
+	}
+
 	@Override
 	public void onReadThreadsSuccess(List<PostItem> postItems, int pageNumber,
 			int boardSpeed, boolean append, boolean checkModified, HttpValidator validator,
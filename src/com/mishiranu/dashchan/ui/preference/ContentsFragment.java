@@ -71,6 +71,11 @@ public class ContentsFragment extends PreferenceFragment {
 				new Pair<>(Preferences.DISABLED_WATCHER_REFRESH_INTERVAL, R.string.disabled),
 				Preferences.MIN_WATCHER_REFRESH_INTERVAL, Preferences.MAX_WATCHER_REFRESH_INTERVAL,
 				Preferences.STEP_WATCHER_REFRESH_INTERVAL);
+		addSeek(Preferences.KEY_WATCHER_MAX_REFRESH_INTERVAL, Preferences.DEFAULT_WATCHER_MAX_REFRESH_INTERVAL,
+				R.string.slow_down_inactive_threads, R.string.at_least_every_number_min__format,
+				new Pair<>(Preferences.DISABLED_WATCHER_MAX_REFRESH_INTERVAL, R.string.disabled),
+				Preferences.MIN_WATCHER_MAX_REFRESH_INTERVAL, Preferences.MAX_WATCHER_MAX_REFRESH_INTERVAL,
+				Preferences.STEP_WATCHER_MAX_REFRESH_INTERVAL);
 		addCheck(true, Preferences.KEY_WATCHER_WIFI_ONLY, Preferences.DEFAULT_WATCHER_WIFI_ONLY, R.string.wifi_only, 0);
 		replyNotifications = addCheck(false, "reply_notifications", false,
 				R.string.reply_notifications, R.string.reply_notifications__format);
@@ -88,7 +93,7 @@ public class ContentsFragment extends PreferenceFragment {
 
 		addHeader(R.string.additional);
 		clearCachePreference = addButton(getString(R.string.clear_cache),
-				p -> StringUtils.formatFileSizeMegabytes(PagesDatabase.getInstance().getSize()));
+				p -> StringUtils.formatFileSizeMegabytes(PagesDatabase.getSize()));
 		clearCachePreference.setOnClickListener(p -> {
 			ClearCacheDialog dialog = new ClearCacheDialog();
 			dialog.show(getChildFragmentManager(), ClearCacheDialog.class.getName());
@@ -96,6 +96,8 @@ public class MediaFragment extends PreferenceFragment implements FragmentHandler
 				R.string.detailed_file_name, R.string.detailed_file_name__summary);
 		addCheck(true, Preferences.KEY_DOWNLOAD_ORIGINAL_NAME, Preferences.DEFAULT_DOWNLOAD_ORIGINAL_NAME,
 				R.string.original_file_name, R.string.original_file_name__summary);
+		addCheck(true, Preferences.KEY_DOWNLOAD_SEGMENTED, Preferences.DEFAULT_DOWNLOAD_SEGMENTED,
+				R.string.segmented_download, R.string.segmented_download__summary);
 		if (C.USE_SAF) {
 			downloadUriTreePreference = addButton(getString(R.string.download_directory),
 					p -> DataFile.obtain(DataFile.Target.DOWNLOADS, null).getName());
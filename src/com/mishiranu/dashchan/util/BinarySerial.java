@@ -0,0 +1,232 @@
+package com.mishiranu.dashchan.util;
+
+import chan.text.ParseException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class BinarySerial {
+	// First byte is never zero in JSON data, so formats can be distinguished
+	private static final int MAGIC = 0x00;
+	private static final int VERSION = 1;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int COMPRESS_MIN_LENGTH = 256;
+	private static final int COMPRESSION_NONE = 0;
+	private static final int COMPRESSION_DEFLATE = 1;
+
+	public static boolean isBinary(byte[] data) {
+		return data != null && data.length >= 2 && data[0] == MAGIC;
+	}
+
+	public static class Writer {
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		private final HashMap<String, Integer> stringIndexes = new HashMap<>();
+		private final ArrayList<String> strings = new ArrayList<>();
+
+		private static void writeVarLong(ByteArrayOutputStream output, long value) {
+			while ((value & ~0x7fL) != 0) {
+				output.write((int) (value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			output.write((int) value);
+		}
+
+		private static void writeBytes(ByteArrayOutputStream output, byte[] bytes, int length) {
+			writeVarLong(output, length);
+			output.write(bytes, 0, length);
+		}
+
+		public void writeInt(int value) {
+			writeLong(value);
+		}
+
+		public void writeLong(long value) {
+			// Zigzag encoding keeps small negative values short
+			writeVarLong(body, (value << 1) ^ (value >> 63));
+		}
+
+		public void writeBoolean(boolean value) {
+			body.write(value ? 1 : 0);
+		}
+
+		public void writeString(String value) {
+			// Repeated strings are stored once in string table
+			Integer index = stringIndexes.get(value);
+			if (index == null) {
+				index = strings.size();
+				strings.add(value);
+				stringIndexes.put(value, index);
+			}
+			writeVarLong(body, index);
+		}
+
+		public void writeLongString(String value) {
+			byte[] bytes = value.getBytes(UTF_8);
+			if (bytes.length >= COMPRESS_MIN_LENGTH) {
+				Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+				try {
+					deflater.setInput(bytes);
+					deflater.finish();
+					byte[] buffer = new byte[bytes.length];
+					int length = 0;
+					while (!deflater.finished() && length < buffer.length) {
+						length += deflater.deflate(buffer, length, buffer.length - length);
+					}
+					if (deflater.finished() && length < bytes.length) {
+						body.write(COMPRESSION_DEFLATE);
+						writeVarLong(body, bytes.length);
+						writeBytes(body, buffer, length);
+						return;
+					}
+				} finally {
+					deflater.end();
+				}
+			}
+			body.write(COMPRESSION_NONE);
+			writeBytes(body, bytes, bytes.length);
+		}
+
+		public byte[] build() {
+			ByteArrayOutputStream output = new ByteArrayOutputStream(body.size() + 16 * strings.size() + 8);
+			output.write(MAGIC);
+			output.write(VERSION);
+			writeVarLong(output, strings.size());
+			for (String string : strings) {
+				byte[] bytes = string.getBytes(UTF_8);
+				writeBytes(output, bytes, bytes.length);
+			}
+			try {
+				body.writeTo(output);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return output.toByteArray();
+		}
+	}
+
+	public static class Reader {
+		private final byte[] data;
+		private final String[] strings;
+		private int position;
+
+		public Reader(byte[] data) throws ParseException {
+			this.data = data;
+			if (!isBinary(data)) {
+				throw new ParseException();
+			}
+			int version = data[1] & 0xff;
+			if (version != VERSION) {
+				throw new ParseException();
+			}
+			position = 2;
+			int count = readLength();
+			strings = new String[count];
+			for (int i = 0; i < count; i++) {
+				int length = readLength();
+				strings[i] = new String(data, position, length, UTF_8);
+				position += length;
+			}
+		}
+
+		private long readVarLong() throws ParseException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				if (position >= data.length) {
+					throw new ParseException();
+				}
+				int b = data[position++];
+				value |= (long) (b & 0x7f) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new ParseException();
+		}
+
+		private int readLength() throws ParseException {
+			long length = readVarLong();
+			if (length < 0 || length > data.length - position) {
+				throw new ParseException();
+			}
+			return (int) length;
+		}
+
+		public int readInt() throws ParseException {
+			return (int) readLong();
+		}
+
+		public long readLong() throws ParseException {
+			long value = readVarLong();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		public boolean readBoolean() throws ParseException {
+			if (position >= data.length) {
+				throw new ParseException();
+			}
+			return data[position++] != 0;
+		}
+
+		public String readString() throws ParseException {
+			long index = readVarLong();
+			if (index < 0 || index >= strings.length) {
+				throw new ParseException();
+			}
+			return strings[(int) index];
+		}
+
+		public String readLongString() throws ParseException {
+			if (position >= data.length) {
+				throw new ParseException();
+			}
+			int compression = data[position++];
+			switch (compression) {
+				case COMPRESSION_NONE: {
+					int length = readLength();
+					String value = new String(data, position, length, UTF_8);
+					position += length;
+					return value;
+				}
+				case COMPRESSION_DEFLATE: {
+					long originalLength = readVarLong();
+					int length = readLength();
+					if (originalLength < 0 || originalLength > Integer.MAX_VALUE) {
+						throw new ParseException();
+					}
+					byte[] bytes = new byte[(int) originalLength];
+					Inflater inflater = new Inflater();
+					try {
+						inflater.setInput(data, position, length);
+						int count = 0;
+						while (count < bytes.length) {
+							int read = inflater.inflate(bytes, count, bytes.length - count);
+							if (read <= 0 && (inflater.finished() || inflater.needsInput())) {
+								break;
+							}
+							count += read;
+						}
+						if (count != bytes.length) {
+							throw new ParseException();
+						}
+					} catch (DataFormatException e) {
+						throw new ParseException(e);
+					} finally {
+						inflater.end();
+					}
+					position += length;
+					return new String(bytes, UTF_8);
+				}
+				default: {
+					throw new ParseException();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package com.mishiranu.dashchan.util;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import com.mishiranu.dashchan.C;
+import java.util.ArrayList;
+
+public class BitmapPool {
+	private final ArrayList<Bitmap> bitmaps = new ArrayList<>();
+	private final long maxBytes;
+	private long bytes;
+
+	private int reuseCount;
+	private int allocateCount;
+
+	public BitmapPool(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public static boolean isSupported() {
+		// Bitmaps of any size can be reused since KitKat only
+		return C.API_KITKAT;
+	}
+
+	public static int getBitmapBytes(Bitmap bitmap) {
+		return C.API_KITKAT ? bitmap.getAllocationByteCount() : bitmap.getByteCount();
+	}
+
+	@TargetApi(Build.VERSION_CODES.KITKAT)
+	public synchronized Bitmap obtain(int width, int height, Bitmap.Config config) {
+		if (!isSupported()) {
+			return null;
+		}
+		int requiredBytes = width * height * getBytesPerPixel(config);
+		Bitmap result = null;
+		int resultIndex = -1;
+		for (int i = 0; i < bitmaps.size(); i++) {
+			Bitmap bitmap = bitmaps.get(i);
+			int bitmapBytes = bitmap.getAllocationByteCount();
+			if (bitmapBytes >= requiredBytes && (result == null ||
+					bitmapBytes < result.getAllocationByteCount())) {
+				result = bitmap;
+				resultIndex = i;
+			}
+		}
+		if (result != null) {
+			bitmaps.remove(resultIndex);
+			bytes -= result.getAllocationByteCount();
+			reuseCount++;
+		} else {
+			allocateCount++;
+		}
+		return result;
+	}
+
+	// BitmapRegionDecoder doesn't reconfigure reused bitmaps, so their size should match exactly
+	public synchronized Bitmap obtainExact(int width, int height, Bitmap.Config config) {
+		if (!isSupported()) {
+			return null;
+		}
+		for (int i = 0; i < bitmaps.size(); i++) {
+			Bitmap bitmap = bitmaps.get(i);
+			if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+				bitmaps.remove(i);
+				bytes -= getBitmapBytes(bitmap);
+				reuseCount++;
+				return bitmap;
+			}
+		}
+		allocateCount++;
+		return null;
+	}
+
+	public synchronized void release(Bitmap bitmap) {
+		if (bitmap == null || bitmap.isRecycled()) {
+			return;
+		}
+		if (!isSupported() || !bitmap.isMutable()) {
+			bitmap.recycle();
+			return;
+		}
+		int bitmapBytes = getBitmapBytes(bitmap);
+		if (bitmapBytes > maxBytes) {
+			bitmap.recycle();
+			return;
+		}
+		while (bytes + bitmapBytes > maxBytes && !bitmaps.isEmpty()) {
+			Bitmap oldBitmap = bitmaps.remove(0);
+			bytes -= getBitmapBytes(oldBitmap);
+			oldBitmap.recycle();
+		}
+		bitmaps.add(bitmap);
+		bytes += bitmapBytes;
+	}
+
+	public synchronized void clear() {
+		for (Bitmap bitmap : bitmaps) {
+			bitmap.recycle();
+		}
+		bitmaps.clear();
+		bytes = 0;
+	}
+
+	public synchronized int getReuseCount() {
+		return reuseCount;
+	}
+
+	public synchronized int getAllocateCount() {
+		return allocateCount;
+	}
+
+	public Bitmap decodeByteArray(byte[] bytes, BitmapFactory.Options options) {
+		Bitmap inBitmap = null;
+		if (isSupported() && options.outWidth > 0 && options.outHeight > 0) {
+			int sampleSize = Math.max(options.inSampleSize, 1);
+			int width = (options.outWidth + sampleSize - 1) / sampleSize;
+			int height = (options.outHeight + sampleSize - 1) / sampleSize;
+			Bitmap.Config config = options.inPreferredConfig != null
+					? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+			inBitmap = obtain(width, height, config);
+			options.inMutable = true;
+		}
+		options.inBitmap = inBitmap;
+		Bitmap bitmap;
+		try {
+			bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+		} catch (IllegalArgumentException e) {
+			// Decoded image doesn't fit the reused bitmap
+			bitmap = null;
+		}
+		if (bitmap == null && inBitmap != null) {
+			release(inBitmap);
+			options.inBitmap = null;
+			bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+		}
+		return bitmap;
+	}
+
+	private static int getBytesPerPixel(Bitmap.Config config) {
+		if (config == Bitmap.Config.ALPHA_8) {
+			return 1;
+		} else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+			return 2;
+		} else {
+			return 4;
+		}
+	}
+}
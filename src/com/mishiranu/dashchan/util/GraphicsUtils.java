@@ -178,9 +178,21 @@ public class GraphicsUtils {
 		}
 	}
 
+	public static int getThumbnailSize(Resources resources) {
+		return (int) (72f * ResourceUtils.obtainDensity(resources));
+	}
+
 	public static Bitmap reduceThumbnailSize(Resources resources, Bitmap bitmap) {
-		int newSize = (int) (72f * ResourceUtils.obtainDensity(resources));
-		return reduceBitmapSize(bitmap, newSize, true);
+		return reduceBitmapSize(bitmap, getThumbnailSize(resources), true);
+	}
+
+	public static int calculateSampleSize(int width, int height, int newSize) {
+		int size = Math.min(width, height);
+		int sampleSize = 1;
+		while (size / (sampleSize * 2) >= newSize) {
+			sampleSize *= 2;
+		}
+		return sampleSize;
 	}
 
 	public static Bitmap reduceBitmapSize(Bitmap bitmap, int newSize, boolean recycleOld) {
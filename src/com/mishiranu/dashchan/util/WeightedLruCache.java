@@ -0,0 +1,117 @@
+package com.mishiranu.dashchan.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class WeightedLruCache<K, V> {
+	private final LinkedHashMap<K, V> map = new LinkedHashMap<>(0, 0.75f, true);
+	private final Weigher<? super V> weigher;
+	private final LruCache.RemoveCallback<? super K, ? super V> callback;
+
+	private long maxWeight;
+	private long weight;
+
+	private int hitCount;
+	private int missCount;
+	private int evictionCount;
+
+	public WeightedLruCache(long maxWeight, Weigher<? super V> weigher) {
+		this(maxWeight, weigher, null);
+	}
+
+	public WeightedLruCache(long maxWeight, Weigher<? super V> weigher,
+			LruCache.RemoveCallback<? super K, ? super V> callback) {
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+		this.callback = callback;
+	}
+
+	public V get(K key) {
+		V value = map.get(key);
+		if (value != null) {
+			hitCount++;
+		} else {
+			missCount++;
+		}
+		return value;
+	}
+
+	public boolean containsKey(K key) {
+		return map.containsKey(key);
+	}
+
+	public V put(K key, V value) {
+		V oldValue = map.put(key, value);
+		weight += weigher.getWeight(value);
+		if (oldValue != null) {
+			weight -= weigher.getWeight(oldValue);
+			if (callback != null && oldValue != value) {
+				callback.onRemoveEntry(key, oldValue);
+			}
+		}
+		trimToWeight(maxWeight);
+		return oldValue;
+	}
+
+	public V remove(K key) {
+		V value = map.remove(key);
+		if (value != null) {
+			weight -= weigher.getWeight(value);
+			if (callback != null) {
+				callback.onRemoveEntry(key, value);
+			}
+		}
+		return value;
+	}
+
+	public void clear() {
+		trimToWeight(-1);
+	}
+
+	public void trimToWeight(long maxWeight) {
+		Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+		while (weight > maxWeight && iterator.hasNext()) {
+			Map.Entry<K, V> entry = iterator.next();
+			iterator.remove();
+			weight -= weigher.getWeight(entry.getValue());
+			evictionCount++;
+			if (callback != null) {
+				callback.onRemoveEntry(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	public void setMaxWeight(long maxWeight) {
+		this.maxWeight = maxWeight;
+		trimToWeight(maxWeight);
+	}
+
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	public long getWeight() {
+		return weight;
+	}
+
+	public int size() {
+		return map.size();
+	}
+
+	public int getHitCount() {
+		return hitCount;
+	}
+
+	public int getMissCount() {
+		return missCount;
+	}
+
+	public int getEvictionCount() {
+		return evictionCount;
+	}
+
+	public interface Weigher<V> {
+		long getWeight(V value);
+	}
+}
@@ -255,9 +255,12 @@ public class CommentTextView extends TextView {
 	}
 
 	public void setSubjectAndComment(CharSequence subject, CharSequence comment) {
-		boolean hasSubject = !StringUtils.isEmpty(subject);
-		boolean hasComment = !StringUtils.isEmpty(comment);
-		if (hasComment && comment instanceof Spanned) {
+		setSubjectAndComment(subject, comment, null, null);
+	}
+
+	public void setSubjectAndComment(CharSequence subject, CharSequence comment,
+			PrecomputedTextCache precomputedTextCache, Object key) {
+		if (!StringUtils.isEmpty(comment) && comment instanceof Spanned) {
 			SpoilerSpan[] spoilerSpans = ((Spanned) comment).getSpans(0, comment.length(), SpoilerSpan.class);
 			if (spoilerSpans != null) {
 				boolean enabled = spoilersEnabled;
@@ -266,6 +269,20 @@ public class CommentTextView extends TextView {
 				}
 			}
 		}
+		if (precomputedTextCache != null && PrecomputedTextCache.isSupported() &&
+				(subject == null || subject instanceof String)) {
+			CharSequence text = precomputedTextCache.get(key, (String) subject, comment, getTextMetricsParams());
+			if (text != null) {
+				setText(text);
+				return;
+			}
+		}
+		setText(buildText(subject, comment));
+	}
+
+	static CharSequence buildText(CharSequence subject, CharSequence comment) {
+		boolean hasSubject = !StringUtils.isEmpty(subject);
+		boolean hasComment = !StringUtils.isEmpty(comment);
 		if (hasSubject) {
 			SpannableStringBuilder spannable = new SpannableStringBuilder();
 			spannable.append(subject);
@@ -277,11 +294,11 @@ public class CommentTextView extends TextView {
 				spannable.setSpan(new RelativeSizeSpan(0.75f), length, length + 2, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
 				spannable.append(comment);
 			}
-			setText(spannable);
+			return spannable;
 		} else if (hasComment) {
-			setText(comment);
+			return comment;
 		} else {
-			setText(null);
+			return null;
 		}
 	}
 
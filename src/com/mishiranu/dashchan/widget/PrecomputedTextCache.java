@@ -0,0 +1,141 @@
+package com.mishiranu.dashchan.widget;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.text.PrecomputedText;
+import android.text.Spanned;
+import chan.util.StringUtils;
+import com.mishiranu.dashchan.C;
+import com.mishiranu.dashchan.text.style.LinkSuffixSpan;
+import com.mishiranu.dashchan.util.Logger;
+import com.mishiranu.dashchan.util.WeightedLruCache;
+import java.util.Arrays;
+
+@TargetApi(Build.VERSION_CODES.P)
+public class PrecomputedTextCache {
+	// Weight is measured in characters
+	private static final long MAX_WEIGHT = 1000000;
+
+	private static class Entry {
+		public final String subject;
+		public final CharSequence comment;
+		public final int[] suffixes;
+		public final PrecomputedText text;
+
+		public Entry(String subject, CharSequence comment, int[] suffixes, PrecomputedText text) {
+			this.subject = subject;
+			this.comment = comment;
+			this.suffixes = suffixes;
+			this.text = text;
+		}
+	}
+
+	private final WeightedLruCache<Object, Entry> cache = new WeightedLruCache<>(MAX_WEIGHT,
+			entry -> entry.text.length());
+	private volatile PrecomputedText.Params params;
+	private boolean paramsChanged;
+
+	private int hitCount;
+	private int missCount;
+
+	public static boolean isSupported() {
+		// TextView can't use precomputed layouts before Pie
+		return C.API_PIE;
+	}
+
+	public void updateParams(CommentTextView textView) {
+		if (isSupported()) {
+			PrecomputedText.Params params = textView.getTextMetricsParams();
+			if (!params.equals(this.params)) {
+				this.params = params;
+				synchronized (cache) {
+					cache.clear();
+				}
+				paramsChanged = true;
+			}
+		}
+	}
+
+	// Returns true once after new text parameters were applied, so layouts can be precomputed again
+	public boolean consumeParamsChanged() {
+		boolean paramsChanged = this.paramsChanged;
+		this.paramsChanged = false;
+		return paramsChanged;
+	}
+
+	public boolean isReady() {
+		return params != null;
+	}
+
+	// LinkSuffixSpan is the only replacement span which size can be changed after creation
+	private static int[] getSuffixes(CharSequence comment) {
+		if (comment instanceof Spanned) {
+			LinkSuffixSpan[] spans = ((Spanned) comment).getSpans(0, comment.length(), LinkSuffixSpan.class);
+			if (spans != null && spans.length > 0) {
+				int[] suffixes = new int[spans.length];
+				for (int i = 0; i < spans.length; i++) {
+					suffixes[i] = spans[i].getSuffix();
+				}
+				return suffixes;
+			}
+		}
+		return null;
+	}
+
+	// May be called from any thread
+	public void precompute(Object key, String subject, CharSequence comment) {
+		PrecomputedText.Params params = this.params;
+		if (params == null) {
+			return;
+		}
+		synchronized (cache) {
+			Entry entry = cache.containsKey(key) ? cache.get(key) : null;
+			if (entry != null && entry.comment == comment && StringUtils.equals(entry.subject, subject)) {
+				return;
+			}
+		}
+		CharSequence text = CommentTextView.buildText(subject, comment);
+		if (text == null) {
+			return;
+		}
+		int[] suffixes = getSuffixes(comment);
+		PrecomputedText precomputedText = PrecomputedText.create(text, params);
+		if (!Arrays.equals(suffixes, getSuffixes(comment))) {
+			// Suffixes were changed during computation
+			return;
+		}
+		synchronized (cache) {
+			if (params == this.params) {
+				cache.put(key, new Entry(subject, comment, suffixes, precomputedText));
+			}
+		}
+	}
+
+	public PrecomputedText get(Object key, String subject, CharSequence comment,
+			PrecomputedText.Params params) {
+		synchronized (cache) {
+			Entry entry = cache.get(key);
+			if (entry != null) {
+				if (entry.comment == comment && StringUtils.equals(entry.subject, subject) &&
+						entry.text.getParams().equals(params) && Arrays.equals(entry.suffixes, getSuffixes(comment))) {
+					hitCount++;
+					return entry.text;
+				}
+				cache.remove(key);
+			}
+			missCount++;
+			return null;
+		}
+	}
+
+	public void clear() {
+		synchronized (cache) {
+			if (hitCount > 0 || missCount > 0) {
+				Logger.write(Logger.Type.DEBUG, "PrecomputedTextCache:", cache.size(), "layouts",
+						cache.getWeight() + "/" + cache.getMaxWeight(), "chars", hitCount, "hits",
+						missCount, "misses", cache.getEvictionCount(), "evictions");
+			}
+			cache.clear();
+		}
+	}
+}